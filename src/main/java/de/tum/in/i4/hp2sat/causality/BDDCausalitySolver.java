@@ -0,0 +1,119 @@
+package de.tum.in.i4.hp2sat.causality;
+
+import de.tum.in.i4.hp2sat.causality.CausalitySolverStatistics.Phase;
+import org.logicng.datastructures.Tristate;
+import org.logicng.formulas.Formula;
+import org.logicng.formulas.FormulaFactory;
+import org.logicng.formulas.Literal;
+import org.logicng.formulas.Variable;
+import org.logicng.util.Pair;
+
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Checks causality using the {@link BDDEncoding} of a causal model. As the BDD is compiled only once per causal model,
+ * this is intended for many checks on the same model, e.g. {@link CausalitySolver#getAllCauses}. The computed W is
+ * always of minimum size.
+ */
+class BDDCausalitySolver extends CausalitySolver {
+    /**
+     * Overrides {@link CausalitySolver#solve(CausalModel, Set, Formula, Set, SolvingStrategy)}.
+     *
+     * @param causalModel     the underlying causel model
+     * @param context         the context
+     * @param phi             the phi
+     * @param cause           the cause
+     * @param solvingStrategy the applied solving strategy
+     * @return for each AC, true if fulfilled, false else
+     */
+    @Override
+    CausalitySolverResult solve(CausalModel causalModel, Set<Literal> context, Formula phi, Set<Literal> cause,
+                                SolvingStrategy solvingStrategy) {
+        startStatistics(solvingStrategy);
+        FormulaFactory f = causalModel.getFormulaFactory();
+        Set<Literal> evaluation = evaluateActualWorld(causalModel, context);
+        Pair<Boolean, Boolean> ac1Tuple = fulfillsAC1(evaluation, phi, cause);
+        boolean ac1 = ac1Tuple.first() && ac1Tuple.second();
+        Set<Literal> w = null;
+        // ACs that cannot be decided within the budget remain unknown
+        Tristate ac2 = Tristate.UNDEF;
+        Tristate ac3 = Tristate.UNDEF;
+        try {
+            BDDEncoding encoding = getBDDEncoding(causalModel);
+            w = fulfillsAC2(encoding, phi, cause, context, evaluation, f);
+            ac2 = Tristate.fromBool(w != null);
+            ac3 = Tristate.fromBool(fulfillsAC3(encoding, phi, cause, context, evaluation, ac1Tuple.first(), f));
+        } catch (BudgetExhaustedException e) {
+            // nothing to do; the ACs decided so far are kept
+        }
+        CausalitySolverResult causalitySolverResult = new CausalitySolverResult(ac1, ac2, ac3, cause, w);
+        if (w != null) {
+            causalitySolverResult.setWSizeLowerBound(w.size());
+        }
+        return finishStatistics(causalitySolverResult);
+    }
+
+    /**
+     * Checks if AC2 is fulfilled.
+     *
+     * @param encoding   the BDD of the underlying causal model
+     * @param phi        the phi
+     * @param cause      the cause for which we check AC2
+     * @param context    the context
+     * @param evaluation the original evaluation of variables
+     * @param f          a formula factory
+     * @return returns a minimal W if AC2 fulfilled, else null
+     */
+    private Set<Literal> fulfillsAC2(BDDEncoding encoding, Formula phi, Set<Literal> cause, Set<Literal> context,
+                                     Set<Literal> evaluation, FormulaFactory f) {
+        checkBudget();
+        long start = System.nanoTime();
+        Set<Variable> wVariables = encoding.findMinimalW(context, f.not(phi), cause, budget);
+        stop(Phase.BDD_OPERATIONS, start);
+        if (wVariables == null) {
+            return null;
+        }
+        return evaluation.stream().filter(l -> wVariables.contains(l.variable())).collect(Collectors.toSet());
+    }
+
+    /**
+     * Checks if AC3 is fulfilled.
+     *
+     * @param encoding    the BDD of the underlying causal model
+     * @param phi         the phi
+     * @param cause       the cause for which we check AC3
+     * @param context     the context
+     * @param evaluation  the original evaluation of variables
+     * @param phiOccurred true if phi holds in the actual world
+     * @param f           a formula factory
+     * @return true if AC3 fulfilled, else false
+     */
+    private boolean fulfillsAC3(BDDEncoding encoding, Formula phi, Set<Literal> cause, Set<Literal> context,
+                                Set<Literal> evaluation, boolean phiOccurred, FormulaFactory f) {
+        // if the cause has a size of one, i.e. a singleton-cause, then AC3 is fulfilled automatically
+        if (cause.size() > 1 && phiOccurred) {
+            checkBudget();
+            long start = System.nanoTime();
+            boolean hasSmallerCause = encoding.hasSmallerCause(context, f.not(phi), cause, evaluation,
+                    budget);
+            stop(Phase.BDD_OPERATIONS, start);
+            return !hasSmallerCause;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the BDD of the causal model and measures the time needed to compile it if this has not been done yet.
+     *
+     * @param causalModel the causal model
+     * @return the BDD of the causal model
+     */
+    private BDDEncoding getBDDEncoding(CausalModel causalModel) {
+        checkBudget();
+        long start = System.nanoTime();
+        BDDEncoding encoding = causalModel.getBDDEncoding();
+        stop(Phase.ENCODING, start);
+        return encoding;
+    }
+}
@@ -0,0 +1,588 @@
+package de.tum.in.i4.hp2sat.causality;
+
+import org.logicng.bdds.BDDFactory;
+import org.logicng.bdds.jbuddy.BDDKernel;
+import org.logicng.datastructures.Assignment;
+import org.logicng.datastructures.Substitution;
+import org.logicng.formulas.Formula;
+import org.logicng.formulas.FormulaFactory;
+import org.logicng.formulas.Literal;
+import org.logicng.formulas.Variable;
+import org.logicng.util.Pair;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static de.tum.in.i4.hp2sat.causality.PrecompiledSATEncoding.ACTUAL_VALUE_PREFIX;
+import static de.tum.in.i4.hp2sat.causality.PrecompiledSATEncoding.SELECTOR_PREFIX;
+import static de.tum.in.i4.hp2sat.causality.SATCausalitySolver.W_INDICATOR_PREFIX;
+
+/**
+ * BDDs of the relaxed equations of a causal model. For a given context, each endogenous variable V with formula F_V
+ * and original value v is represented by S_V OR (V &lt;=&gt; F_V) OR (w_V AND V = v), where S_V is a selector that
+ * frees V from both its original value and its equation and w_V indicates that V is in W. The BDD is independent of
+ * the cause and phi and is therefore compiled only once per causal model and context.
+ * <p>
+ * A query restricts the BDD by the selectors and conjoins it with the BDD of the negated phi. Whether AC2 holds is then
+ * a check for the constant false, a minimal W is a path to true that sets the fewest indicators to true, and AC3 is
+ * decided by a single conjunction. The variables are ordered topologically by a depth-first search and each variable is
+ * placed directly after its selector and indicator; this keeps the BDDs small for models of small treewidth. For other
+ * models, the BDDs might grow exponentially.
+ * <p>
+ * The BDD factory of LogicNG is not thread-safe; hence, all queries are synchronized. The kernel of LogicNG cannot
+ * release referenced nodes. Results that are only inspected are therefore not referenced and are reclaimed by the
+ * next garbage collection of the kernel, but operands of further operations and the compiled BDDs have to be. To
+ * bound the memory of long-lived models, at most {@link #MAX_CONTEXTS} compiled contexts are kept, and the kernel is
+ * replaced by a new one once it holds more than a given number of nodes; the BDDs are then compiled again on demand.
+ */
+class BDDEncoding {
+    /**
+     * The maximum number of nodes in use after which the kernel is replaced by a new one.
+     */
+    static final int NODE_LIMIT = 1 << 22;
+    /**
+     * The maximum number of contexts whose BDDs are kept; the least recently used one is dropped first.
+     */
+    static final int MAX_CONTEXTS = 64;
+
+    private final CausalModel causalModel;
+    private final FormulaFactory f;
+    private final int nodeLimit;
+    private BDDFactory bddFactory;
+    private BDDKernel kernel;
+    private final List<Variable> variableOrder; // the index of a variable in the list is its index in the BDD
+    private final Map<Variable, Integer> variableIndices;
+    private final Map<Variable, Variable> actualValues; // endogenous variable -> copy in the actual world
+    private final Substitution actualWorld;
+    private final Map<Variable, Variable> selectors; // endogenous variable -> selector
+    private final Map<Variable, Variable> indicators; // endogenous variable -> indicator for W
+    private final Map<Variable, Variable> indicatedVariables; // indicator for W -> endogenous variable
+    private final List<Equation> equationsOrdered; // the equations in the order of their variables in the BDD
+    private final Map<Set<Literal>, Integer> relations; // context -> BDD of the relaxed equations
+    private Integer actualWorldAllContexts; // BDD of the actual world for all contexts
+    private Integer relationAllContexts; // BDD of the actual world and the relaxed equations for all contexts
+
+    /**
+     * Creates the BDD factory for the given causal model. The BDDs are compiled upon the first query for a context.
+     *
+     * @param causalModel the causal model
+     */
+    BDDEncoding(CausalModel causalModel) {
+        this(causalModel, NODE_LIMIT);
+    }
+
+    /**
+     * @param causalModel the causal model
+     * @param nodeLimit   the maximum number of nodes in use after which the kernel is replaced by a new one
+     */
+    BDDEncoding(CausalModel causalModel, int nodeLimit) {
+        this.causalModel = causalModel;
+        this.nodeLimit = nodeLimit;
+        this.f = causalModel.getFormulaFactory();
+        this.variableOrder = new ArrayList<>();
+        this.actualValues = new HashMap<>();
+        this.actualWorld = new Substitution();
+        this.selectors = new LinkedHashMap<>();
+        this.indicators = new LinkedHashMap<>();
+        this.indicatedVariables = new HashMap<>();
+        this.relations = new LinkedHashMap<Set<Literal>, Integer>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Set<Literal>, Integer> eldest) {
+                // the nodes of the dropped BDD are released when the kernel is replaced
+                return size() > MAX_CONTEXTS;
+            }
+        };
+        this.equationsOrdered = orderEquations(causalModel);
+        Set<Variable> exogenousVariables = new HashSet<>();
+        for (Equation equation : equationsOrdered) {
+            Variable variable = equation.getVariable();
+            // each exogenous variable is placed directly before the first equation that refers to it
+            equation.getFormula().variables().stream()
+                    .filter(v -> causalModel.getExogenousVariables().contains(v) && exogenousVariables.add(v))
+                    .sorted().forEach(variableOrder::add);
+            Variable actualValue = f.variable(ACTUAL_VALUE_PREFIX + variable.name());
+            actualValues.put(variable, actualValue);
+            actualWorld.addMapping(variable, actualValue);
+            variableOrder.add(actualValue);
+            Variable selector = f.variable(SELECTOR_PREFIX + variable.name());
+            Variable indicator = f.variable(W_INDICATOR_PREFIX + variable.name());
+            selectors.put(variable, selector);
+            indicators.put(variable, indicator);
+            indicatedVariables.put(indicator, variable);
+            variableOrder.add(selector);
+            variableOrder.add(indicator);
+            variableOrder.add(variable);
+        }
+        causalModel.getExogenousVariables().stream().filter(exogenousVariables::add).sorted()
+                .forEach(variableOrder::add);
+        this.variableIndices = new HashMap<>();
+        for (int i = 0; i < variableOrder.size(); i++) {
+            variableIndices.put(variableOrder.get(i), i);
+        }
+
+        createKernel();
+    }
+
+    /**
+     * Creates a new, empty kernel and drops all BDDs of the previous one.
+     */
+    private void createKernel() {
+        int nodeSize = Math.max(10000, 100 * variableOrder.size());
+        this.bddFactory = new BDDFactory(nodeSize, nodeSize / 10, f);
+        this.bddFactory.setVariableOrder(variableOrder);
+        this.kernel = bddFactory.underlyingKernel();
+        this.relations.clear();
+        this.actualWorldAllContexts = null;
+        this.relationAllContexts = null;
+    }
+
+    /**
+     * Replaces the kernel if it holds more nodes than the limit. Must only be called at the beginning of a query, as
+     * all BDDs obtained so far become invalid.
+     */
+    private void limitNodes() {
+        BDDKernel.BDDStatistics statistics = kernel.statistics();
+        if (statistics.nodesize() - statistics.freenum() > nodeLimit) {
+            createKernel();
+        }
+    }
+
+    /**
+     * @return the number of nodes of the kernel that are in use, including unreferenced ones that have not been
+     * reclaimed yet
+     */
+    synchronized int getUsedNodeCount() {
+        BDDKernel.BDDStatistics statistics = kernel.statistics();
+        return statistics.nodesize() - statistics.freenum();
+    }
+
+    /**
+     * Searches a minimal W such that not(phi) holds if the cause is set to its negated value.
+     *
+     * @param context the context
+     * @param notPhi  the negated phi
+     * @param cause   the cause
+     * @param budget  the budget; null if unlimited
+     * @return the variables in a W of minimum size or null if there is no W
+     * @throws BudgetExhaustedException thrown if the budget is exhausted while compiling the BDD for the context
+     */
+    synchronized Set<Variable> findMinimalW(Set<Literal> context, Formula notPhi, Set<Literal> cause, Budget budget) {
+        limitNodes();
+        Set<Variable> causeVariables = cause.stream().map(Literal::variable).collect(Collectors.toSet());
+        List<Literal> units = createUnits(causeVariables);
+        cause.forEach(l -> units.add(l.negate()));
+        // only traversed; hence, it is not referenced
+        int bdd = query(context, units, notPhi, budget);
+        if (bdd == BDDKernel.BDD_FALSE) {
+            return null;
+        }
+
+        // a shortest path to true where each edge that sets an indicator to true has a length of 1
+        Map<Integer, Integer> distances = new HashMap<>();
+        Set<Variable> w = new HashSet<>();
+        while (bdd != BDDKernel.BDD_TRUE) {
+            Variable variable = variableOrder.get(kernel.bddVar(bdd));
+            int low = kernel.bddLow(bdd);
+            int high = kernel.bddHigh(bdd);
+            if (distance(low, distances) <= distance(high, distances) + (isIndicator(variable) ? 1 : 0)) {
+                bdd = low;
+            } else {
+                if (isIndicator(variable)) {
+                    w.add(indicatedVariables.get(variable));
+                }
+                bdd = high;
+            }
+        }
+        return w;
+    }
+
+    /**
+     * Checks whether a non-empty strict subset of the cause that occurred in the actual world already suffices to
+     * satisfy not(phi). In terms of {@link SATCausalitySolver}, this is the case if there is a satisfying assignment
+     * in which the cause variables are free and in which only such a subset of the cause variables neither follows
+     * its equation nor keeps its original value.
+     *
+     * @param context    the context
+     * @param notPhi     the negated phi
+     * @param cause      the cause
+     * @param evaluation the original evaluation of variables
+     * @param budget     the budget; null if unlimited
+     * @return true if there is such a subset, i.e. if AC3 is not fulfilled
+     * @throws BudgetExhaustedException thrown if the budget is exhausted while compiling the BDD for the context
+     */
+    synchronized boolean hasSmallerCause(Set<Literal> context, Formula notPhi, Set<Literal> cause,
+                                         Set<Literal> evaluation, Budget budget) {
+        limitNodes();
+        Set<Variable> causeVariables = cause.stream().map(Literal::variable).collect(Collectors.toSet());
+        Assignment contextAssignment = new Assignment(context);
+        List<Formula> required = new ArrayList<>();
+        List<Formula> formulas = new ArrayList<>();
+        formulas.add(notPhi);
+        for (Literal literal : cause) {
+            Variable variable = literal.variable();
+            Literal originalValue = evaluation.contains(variable) ? variable : variable.negate();
+            Formula formula = causalModel.getVariableEquationMap().get(variable).getFormula()
+                    .restrict(contextAssignment);
+            // a cause variable is required if it neither follows its equation nor keeps its original value
+            Formula isRequired = f.and(originalValue.negate(), f.not(f.equivalence(variable, formula)));
+            required.add(isRequired);
+            if (!evaluation.contains(literal)) {
+                // the subset needs to fulfill AC1
+                formulas.add(f.not(isRequired));
+            }
+        }
+        formulas.add(f.or(required));
+        formulas.add(f.not(f.and(required)));
+        return query(context, createUnits(causeVariables), f.and(formulas), budget) != BDDKernel.BDD_FALSE;
+    }
+
+    /**
+     * Computes for each size k the probability that the cause is an actual cause with a minimal W of size k, given
+     * independent probabilities of the exogenous variables. Instead of enumerating the contexts, the set of contexts
+     * in which the cause is an actual cause with a W of size at most k is compiled into a BDD over the exogenous
+     * variables, whose probability is then obtained by weighted model counting in time linear in its size.
+     *
+     * @param phi    the phi
+     * @param cause  the cause
+     * @param priors for each exogenous variable, the probability that it is true
+     * @return for each size k of a minimal W, the probability of the contexts in which the cause is an actual cause
+     * with such a W; sizes of probability zero are omitted
+     */
+    synchronized Map<Integer, Double> computeWSizeDistribution(Formula phi, Set<Literal> cause,
+                                                               Map<Variable, Double> priors) {
+        limitNodes();
+        Set<Variable> causeVariables = cause.stream().map(Literal::variable).collect(Collectors.toSet());
+        Formula notPhi = f.not(phi);
+        List<Variable> endogenousVariables = new ArrayList<>(selectors.keySet());
+        int relation = getRelationAllContexts();
+        List<Variable> nonExogenousVariables = variableOrder.stream()
+                .filter(v -> !causalModel.getExogenousVariables().contains(v)).collect(Collectors.toList());
+        int nonExogenousCube = build(f.and(nonExogenousVariables));
+        int actualValueCube = build(f.and(actualValues.values()));
+
+        // AC1: phi and the cause hold in the actual world
+        int ac1 = kernel.addRef(kernel.exists(and(getActualWorldAllContexts(),
+                build(f.and(phi, f.and(cause)).substitute(actualWorld))), actualValueCube));
+
+        // AC3: no strict subset of the cause that occurred in the actual world suffices to satisfy not(phi)
+        List<Literal> units = createUnits(causeVariables);
+        int ac3 = BDDKernel.BDD_TRUE;
+        if (cause.size() > 1) {
+            List<Formula> required = new ArrayList<>();
+            List<Formula> formulas = new ArrayList<>();
+            formulas.add(notPhi);
+            for (Literal literal : cause) {
+                Variable variable = literal.variable();
+                Formula isRequired = f.and(f.not(f.equivalence(variable, actualValues.get(variable))),
+                        f.not(f.equivalence(variable, causalModel.getVariableEquationMap().get(variable)
+                                .getFormula())));
+                required.add(isRequired);
+                // the subset needs to fulfill AC1
+                formulas.add(f.or(f.not(isRequired), literal.substitute(actualWorld)));
+            }
+            formulas.add(f.or(required));
+            formulas.add(f.not(f.and(required)));
+            int hasSmallerCause = kernel.addRef(kernel.exists(kernel.addRef(query(relation, units,
+                    f.and(formulas))), nonExogenousCube));
+            ac3 = kernel.addRef(kernel.not(hasSmallerCause));
+        }
+
+        // AC2: setting the cause to its negated value and W to its original value satisfies not(phi)
+        cause.forEach(l -> units.add(l.negate()));
+        int ac2 = kernel.addRef(query(relation, units, notPhi));
+        int isCause = and(and(ac1, ac3), kernel.addRef(kernel.exists(ac2, nonExogenousCube)));
+
+        // the cause is an actual cause with a W of size at most k if it is one with a W of at most k indicators
+        List<Variable> wIndicators = endogenousVariables.stream().filter(v -> !causeVariables.contains(v))
+                .map(indicators::get).collect(Collectors.toList());
+        Map<Integer, Double> distribution = new LinkedHashMap<>();
+        List<Integer> atMost = createAtMost(wIndicators);
+        Map<Integer, Double> probabilities = new HashMap<>();
+        double previousProbability = 0;
+        for (int k = 0; k < atMost.size(); k++) {
+            // referenced, as the cached probabilities of its nodes are reused in the next iteration
+            int isCauseK = and(and(ac1, ac3),
+                    kernel.addRef(kernel.exists(and(ac2, atMost.get(k)), nonExogenousCube)));
+            double probability = probability(isCauseK, priors, probabilities);
+            if (probability > previousProbability) {
+                distribution.put(k, probability - previousProbability);
+                previousProbability = probability;
+            }
+            if (isCauseK == isCause) {
+                break;
+            }
+        }
+        return distribution;
+    }
+
+    /**
+     * @param context the context
+     * @return the number of nodes of the BDD of the relaxed equations for the given context
+     */
+    synchronized int getNodeCount(Set<Literal> context) {
+        limitNodes();
+        return kernel.nodeCount(getRelation(context, null));
+    }
+
+    /**
+     * Returns the BDD of the relaxed equations for the given context and compiles it if necessary.
+     *
+     * @param context the context
+     * @param budget  the budget; null if unlimited
+     * @return the BDD
+     * @throws BudgetExhaustedException thrown if the budget is exhausted during the compilation
+     */
+    private int getRelation(Set<Literal> context, Budget budget) {
+        Integer relation = relations.get(context);
+        if (relation == null) {
+            Set<Literal> evaluation = causalModel.getEvaluationCache().evaluate(context);
+            Assignment contextAssignment = new Assignment(context);
+            List<Integer> bdds = new ArrayList<>(equationsOrdered.size());
+            for (Equation equation : equationsOrdered) {
+                checkBudget(budget);
+                Variable variable = equation.getVariable();
+                Literal originalValue = evaluation.contains(variable) ? variable : variable.negate();
+                // S_V OR (V <=> F_V) OR (w_V AND V = v)
+                bdds.add(build(f.or(selectors.get(variable),
+                        f.equivalence(variable, equation.getFormula().restrict(contextAssignment)),
+                        f.and(indicators.get(variable), originalValue))));
+            }
+            relation = conjoin(bdds, budget);
+            relations.put(new HashSet<>(context), relation);
+        }
+        return relation;
+    }
+
+    /**
+     * Returns the BDD of the actual world and the relaxed equations for all contexts and compiles it if necessary. In
+     * contrast to the BDDs for a single context, it contains the exogenous variables and a copy V' of each endogenous
+     * variable V that represents its value in the actual world, i.e. V' &lt;=&gt; F_V', and the relaxed equation
+     * S_V OR (V &lt;=&gt; F_V) OR (w_V AND (V &lt;=&gt; V')).
+     *
+     * @return the BDD
+     */
+    private int getRelationAllContexts() {
+        if (relationAllContexts == null) {
+            List<Integer> bdds = new ArrayList<>(equationsOrdered.size());
+            for (Equation equation : equationsOrdered) {
+                Variable variable = equation.getVariable();
+                bdds.add(build(f.or(selectors.get(variable), f.equivalence(variable, equation.getFormula()),
+                        f.and(indicators.get(variable), f.equivalence(variable, actualValues.get(variable))))));
+            }
+            relationAllContexts = and(getActualWorldAllContexts(), conjoin(bdds, null));
+        }
+        return relationAllContexts;
+    }
+
+    /**
+     * Returns the BDD of the actual world for all contexts, i.e. of V' &lt;=&gt; F_V' for each endogenous variable V,
+     * and compiles it if necessary.
+     *
+     * @return the BDD
+     */
+    private int getActualWorldAllContexts() {
+        if (actualWorldAllContexts == null) {
+            List<Integer> bdds = new ArrayList<>(equationsOrdered.size());
+            for (Equation equation : equationsOrdered) {
+                bdds.add(build(f.equivalence(actualValues.get(equation.getVariable()),
+                        equation.getFormula().substitute(actualWorld))));
+            }
+            actualWorldAllContexts = conjoin(bdds, null);
+        }
+        return actualWorldAllContexts;
+    }
+
+    /**
+     * Creates for each k from 0 to the number of given variables the BDD that is true iff at most k of the variables
+     * are true. The BDDs are built bottom-up in the order of the variables in the BDD.
+     *
+     * @param variables the variables
+     * @return the BDDs; the k-th BDD is the one for at most k variables
+     */
+    private List<Integer> createAtMost(List<Variable> variables) {
+        List<Integer> indices = variables.stream().map(variableIndices::get).sorted().collect(Collectors.toList());
+        // atMost[k] for the variables processed so far, i.e. for none at the beginning
+        int[] atMost = new int[indices.size() + 1];
+        Arrays.fill(atMost, BDDKernel.BDD_TRUE);
+        for (int i = indices.size() - 1; i >= 0; i--) {
+            int index = indices.get(i);
+            for (int k = atMost.length - 1; k >= 0; k--) {
+                int whenTrue = k == 0 ? BDDKernel.BDD_FALSE : kernel.and(kernel.ithVar(index), atMost[k - 1]);
+                int whenFalse = kernel.addRef(kernel.and(kernel.nithVar(index), atMost[k]));
+                atMost[k] = kernel.addRef(kernel.or(kernel.addRef(whenTrue), whenFalse));
+            }
+        }
+        return Arrays.stream(atMost).boxed().collect(Collectors.toList());
+    }
+
+    /**
+     * Computes the probability of a BDD over the exogenous variables by weighted model counting.
+     *
+     * @param bdd           the BDD
+     * @param priors        for each exogenous variable, the probability that it is true
+     * @param probabilities the already computed probabilities of BDDs
+     * @return the probability that the BDD is true
+     */
+    private double probability(int bdd, Map<Variable, Double> priors, Map<Integer, Double> probabilities) {
+        if (bdd == BDDKernel.BDD_TRUE) {
+            return 1;
+        } else if (bdd == BDDKernel.BDD_FALSE) {
+            return 0;
+        }
+        Double probability = probabilities.get(bdd);
+        if (probability == null) {
+            double prior = priors.get(variableOrder.get(kernel.bddVar(bdd)));
+            probability = (1 - prior) * probability(kernel.bddLow(bdd), priors, probabilities)
+                    + prior * probability(kernel.bddHigh(bdd), priors, probabilities);
+            probabilities.put(bdd, probability);
+        }
+        return probability;
+    }
+
+    /**
+     * Conjoins neighbouring BDDs pairwise until a single one is left. As the kernel does not allow to release
+     * intermediate results, this keeps the number of nodes that are created along the way much smaller than
+     * conjoining the BDDs one by one.
+     *
+     * @param bdds   the BDDs
+     * @param budget the budget, which is checked before each conjunction; null if unlimited
+     * @return the conjunction of all BDDs
+     * @throws BudgetExhaustedException thrown if the budget is exhausted
+     */
+    private int conjoin(List<Integer> bdds, Budget budget) {
+        while (bdds.size() > 1) {
+            List<Integer> conjunctions = new ArrayList<>((bdds.size() + 1) / 2);
+            for (int i = 0; i + 1 < bdds.size(); i += 2) {
+                checkBudget(budget);
+                conjunctions.add(and(bdds.get(i), bdds.get(i + 1)));
+            }
+            if (bdds.size() % 2 == 1) {
+                conjunctions.add(bdds.get(bdds.size() - 1));
+            }
+            bdds = conjunctions;
+        }
+        return bdds.isEmpty() ? BDDKernel.BDD_TRUE : bdds.get(0);
+    }
+
+    /**
+     * Orders the equations of a causal model by a depth-first search that starts at the variables no other equation
+     * refers to. Each equation is placed after the equations of the variables it refers to, i.e. the order is
+     * topological, and the equations of a subtree are placed next to each other. Hence, few variables need to be
+     * remembered at each level of the BDD.
+     *
+     * @param causalModel the causal model
+     * @return the ordered equations
+     */
+    private static List<Equation> orderEquations(CausalModel causalModel) {
+        Map<Variable, Equation> variableEquationMap = causalModel.getVariableEquationMap();
+        Set<Variable> readVariables = new HashSet<>();
+        causalModel.getEquationsSorted().forEach(e -> readVariables.addAll(e.getFormula().variables()));
+        List<Equation> equationsOrdered = new ArrayList<>(variableEquationMap.size());
+        Set<Variable> visited = new HashSet<>();
+        for (Equation root : causalModel.getEquationsSorted()) {
+            if (readVariables.contains(root.getVariable())) {
+                continue;
+            }
+            // iterative post-order traversal such that deep models do not overflow the stack
+            Deque<Pair<Equation, Iterator<Variable>>> stack = new ArrayDeque<>();
+            stack.push(new Pair<>(root, root.getFormula().variables().iterator()));
+            visited.add(root.getVariable());
+            while (!stack.isEmpty()) {
+                Iterator<Variable> children = stack.peek().second();
+                if (children.hasNext()) {
+                    Equation child = variableEquationMap.get(children.next());
+                    if (child != null && visited.add(child.getVariable())) {
+                        stack.push(new Pair<>(child, child.getFormula().variables().iterator()));
+                    }
+                } else {
+                    equationsOrdered.add(stack.pop().first());
+                }
+            }
+        }
+        return equationsOrdered;
+    }
+
+    private static void checkBudget(Budget budget) {
+        if (budget != null && budget.isExhausted()) {
+            throw new BudgetExhaustedException();
+        }
+    }
+
+    private List<Literal> createUnits(Set<Variable> freeVariables) {
+        List<Literal> units = new ArrayList<>();
+        selectors.forEach((v, s) -> units.add(freeVariables.contains(v) ? s : s.negate()));
+        // the free variables are never part of W
+        freeVariables.forEach(v -> units.add(indicators.get(v).negate()));
+        return units;
+    }
+
+    /**
+     * Restricts the BDD of the relaxed equations by the given units and conjoins it with the given formula.
+     *
+     * @param context the context
+     * @param units   the literals of endogenous variables, selectors and indicators that must hold
+     * @param formula the formula that must hold
+     * @param budget  the budget; null if unlimited
+     * @return the resulting BDD, which is not referenced
+     */
+    private int query(Set<Literal> context, List<Literal> units, Formula formula, Budget budget) {
+        List<Literal> assignment = new ArrayList<>(context);
+        assignment.addAll(units);
+        return query(getRelation(context, budget), units, formula.restrict(new Assignment(assignment)));
+    }
+
+    /**
+     * Restricts the given BDD by the given units and conjoins it with the given formula.
+     *
+     * @param relation the BDD of the relaxed equations
+     * @param units    the literals of endogenous variables, selectors and indicators that must hold
+     * @param formula  the formula that must hold
+     * @return the resulting BDD, which is not referenced; reference it before using it as operand
+     */
+    private int query(int relation, List<Literal> units, Formula formula) {
+        int restricted = kernel.addRef(kernel.restrict(relation, build(f.and(units))));
+        return kernel.and(restricted, build(formula.restrict(new Assignment(units))));
+    }
+
+    private int distance(int bdd, Map<Integer, Integer> distances) {
+        if (bdd == BDDKernel.BDD_TRUE) {
+            return 0;
+        } else if (bdd == BDDKernel.BDD_FALSE) {
+            return Integer.MAX_VALUE / 2;
+        }
+        Integer distance = distances.get(bdd);
+        if (distance == null) {
+            Variable variable = variableOrder.get(kernel.bddVar(bdd));
+            int low = distance(kernel.bddLow(bdd), distances);
+            int high = distance(kernel.bddHigh(bdd), distances) + (isIndicator(variable) ? 1 : 0);
+            distance = Math.min(low, high);
+            distances.put(bdd, distance);
+        }
+        return distance;
+    }
+
+    private boolean isIndicator(Variable variable) {
+        return indicatedVariables.containsKey(variable);
+    }
+
+    private int build(Formula formula) {
+        return bddFactory.build(formula).index();
+    }
+
+    /*
+     * The kernel might collect unreferenced nodes during each operation, including the operands of the operation.
+     * Like the BDD factory of LogicNG, we therefore reference all results that are used as operands. */
+    private int and(int bdd1, int bdd2) {
+        return kernel.addRef(kernel.and(bdd1, bdd2));
+    }
+}
@@ -0,0 +1,99 @@
+package de.tum.in.i4.hp2sat.causality;
+
+import org.logicng.formulas.Literal;
+
+import java.util.Set;
+
+/**
+ * An estimate of the degree of blame of a cause computed from sampled contexts. See
+ * {@link CausalModel#estimateBlame}.
+ */
+public class BlameEstimate {
+    private final Set<Literal> cause;
+    private final int samples;
+    private final double blame;
+    private final double halfWidth;
+    private final double probability;
+    private final boolean converged;
+
+    /**
+     * @param cause       the cause
+     * @param samples     the number of checked contexts
+     * @param blame       the mean degree of responsibility of each part of the cause over the checked contexts
+     * @param halfWidth   the half width of the confidence interval of the blame
+     * @param probability the fraction of checked contexts in which the cause is an actual cause
+     * @param converged   whether the sampling stopped because the confidence interval was tight enough
+     */
+    BlameEstimate(Set<Literal> cause, int samples, double blame, double halfWidth, double probability,
+                  boolean converged) {
+        this.cause = cause;
+        this.samples = samples;
+        this.blame = blame;
+        this.halfWidth = halfWidth;
+        this.probability = probability;
+        this.converged = converged;
+    }
+
+    public Set<Literal> getCause() {
+        return cause;
+    }
+
+    /**
+     * @return the number of sampled contexts the estimate is based on
+     */
+    public int getSamples() {
+        return samples;
+    }
+
+    /**
+     * @return the estimated degree of blame of each part of the cause
+     */
+    public double getBlame() {
+        return blame;
+    }
+
+    public double getHalfWidth() {
+        return halfWidth;
+    }
+
+    /**
+     * @return the lower bound of the confidence interval of the blame
+     */
+    public double getLowerBound() {
+        return Math.max(0, blame - halfWidth);
+    }
+
+    /**
+     * @return the upper bound of the confidence interval of the blame
+     */
+    public double getUpperBound() {
+        return Math.min(1, blame + halfWidth);
+    }
+
+    /**
+     * @return the estimated probability that the cause is an actual cause
+     */
+    public double getProbability() {
+        return probability;
+    }
+
+    /**
+     * @return true if the sampling stopped because the confidence interval was tight enough; false if it stopped due
+     * to the maximum number of samples or the budget
+     */
+    public boolean isConverged() {
+        return converged;
+    }
+
+    @Override
+    public String toString() {
+        return "BlameEstimate{" +
+                "cause=" + cause +
+                ", blame=" + blame +
+                ", halfWidth=" + halfWidth +
+                ", probability=" + probability +
+                ", samples=" + samples +
+                ", converged=" + converged +
+                '}';
+    }
+}
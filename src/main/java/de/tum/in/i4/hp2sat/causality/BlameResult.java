@@ -0,0 +1,69 @@
+package de.tum.in.i4.hp2sat.causality;
+
+import org.logicng.formulas.Literal;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The degree of blame of a cause, i.e. its expected degree of responsibility over a probability distribution of the
+ * contexts. See {@link CausalModel#computeBlame}.
+ */
+public class BlameResult {
+    private final Set<Literal> cause;
+    private final Map<Integer, Double> wSizeDistribution;
+
+    /**
+     * @param cause             the cause
+     * @param wSizeDistribution for each size of a minimal W, the probability that the cause is an actual cause with
+     *                          such a W
+     */
+    BlameResult(Set<Literal> cause, Map<Integer, Double> wSizeDistribution) {
+        this.cause = cause;
+        this.wSizeDistribution = Collections.unmodifiableMap(wSizeDistribution);
+    }
+
+    /**
+     * @return the probability that the cause is an actual cause, i.e. that AC1-AC3 are fulfilled
+     */
+    public double getProbability() {
+        return wSizeDistribution.values().stream().mapToDouble(Double::doubleValue).sum();
+    }
+
+    /**
+     * Computes the degree of blame, i.e. the expected value of {@link CausalitySolverResult#getResponsibility()} for a
+     * minimal W.
+     *
+     * @return the degree of blame of each part of the cause as map
+     */
+    public Map<Literal, Double> getBlame() {
+        double blame = wSizeDistribution.entrySet().stream()
+                .mapToDouble(e -> e.getValue() / (cause.size() + e.getKey())).sum();
+        Map<Literal, Double> blames = new HashMap<>();
+        cause.forEach(l -> blames.put(l, blame));
+        return blames;
+    }
+
+    /**
+     * @return for each size of a minimal W, the probability of the contexts in which the cause is an actual cause with
+     * such a W; sizes of probability zero are omitted
+     */
+    public Map<Integer, Double> getWSizeDistribution() {
+        return wSizeDistribution;
+    }
+
+    public Set<Literal> getCause() {
+        return cause;
+    }
+
+    @Override
+    public String toString() {
+        return "BlameResult{" +
+                "cause=" + cause +
+                ", probability=" + getProbability() +
+                ", wSizeDistribution=" + wSizeDistribution +
+                '}';
+    }
+}
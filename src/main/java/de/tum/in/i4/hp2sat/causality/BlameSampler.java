@@ -0,0 +1,203 @@
+package de.tum.in.i4.hp2sat.causality;
+
+import de.tum.in.i4.hp2sat.exceptions.InvalidCausalModelException;
+import de.tum.in.i4.hp2sat.exceptions.InvalidCauseException;
+import de.tum.in.i4.hp2sat.exceptions.InvalidContextException;
+import de.tum.in.i4.hp2sat.exceptions.InvalidPhiException;
+import org.logicng.formulas.Formula;
+import org.logicng.formulas.FormulaFactory;
+import org.logicng.formulas.Literal;
+import org.logicng.formulas.Variable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Estimates the degree of blame of a cause by checking contexts that are sampled from independent probabilities of the
+ * exogenous variables. The contexts are distributed over a thread pool. As formula factories are not thread-safe, each
+ * thread works on its own copy of the causal model, whose encodings are reused for all contexts the thread checks.
+ */
+class BlameSampler {
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private final CausalModel causalModel;
+    private final Map<Variable, Double> priors;
+    private final Sampling sampling;
+    private final List<Variable> exogenousVariables;
+    private final double z;
+    private final AtomicLong nextSample = new AtomicLong();
+    private volatile boolean stopped = false;
+
+    // the statistics of the checked samples; guarded by this
+    private int samples = 0;
+    private int causes = 0;
+    private double sum = 0;
+    private double sumOfSquares = 0;
+    private boolean converged = false;
+
+    /**
+     * @param causalModel the causal model
+     * @param priors      for each exogenous variable, the probability that it is true
+     * @param sampling    the configuration of the sampling
+     */
+    BlameSampler(CausalModel causalModel, Map<Variable, Double> priors, Sampling sampling) {
+        this.causalModel = causalModel;
+        this.priors = priors;
+        this.sampling = sampling;
+        // a fixed order such that the sampled contexts only depend on the seed
+        this.exogenousVariables = causalModel.getExogenousVariables().stream()
+                .sorted(Comparator.comparing(Variable::name)).collect(Collectors.toList());
+        this.z = quantile(1 - (1 - sampling.getConfidence()) / 2);
+    }
+
+    /**
+     * Estimates the degree of blame. Assumes that phi and the cause are valid for the causal model.
+     *
+     * @param phi   the phi
+     * @param cause the cause
+     * @return the estimate
+     * @throws InvalidContextException     thrown if a sampled context is invalid
+     * @throws InvalidCauseException       thrown if the cause is invalid
+     * @throws InvalidPhiException         thrown if phi is invalid
+     * @throws InvalidCausalModelException thrown if internally generated causal models are invalid
+     */
+    BlameEstimate estimate(Formula phi, Set<Literal> cause)
+            throws InvalidContextException, InvalidCauseException, InvalidPhiException, InvalidCausalModelException {
+        if (sampling.getThreads() <= 1) {
+            sample(causalModel, phi, cause);
+        } else {
+            ExecutorService executorService = Executors.newFixedThreadPool(sampling.getThreads());
+            try {
+                List<Future<Void>> futures = new ArrayList<>();
+                for (int i = 0; i < sampling.getThreads(); i++) {
+                    futures.add(executorService.submit(() -> {
+                        FormulaFactory f = new FormulaFactory();
+                        sample(causalModel.copy(f), f.importFormula(phi), cause.stream()
+                                .map(l -> (Literal) f.importFormula(l)).collect(Collectors.toSet()));
+                        return null;
+                    }));
+                }
+                for (Future<Void> future : futures) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                stopped = true;
+            } catch (ExecutionException e) {
+                rethrow(e.getCause());
+            } finally {
+                stopped = true;
+                executorService.shutdownNow();
+            }
+        }
+        synchronized (this) {
+            double mean = samples == 0 ? 0 : sum / samples;
+            return new BlameEstimate(cause, samples, mean, halfWidth(), samples == 0 ? 0 : (double) causes / samples,
+                    converged);
+        }
+    }
+
+    /**
+     * Checks sampled contexts until the sampling is stopped.
+     *
+     * @param causalModel the causal model of the current thread
+     * @param phi         the phi in the formula factory of the causal model
+     * @param cause       the cause in the formula factory of the causal model
+     */
+    private void sample(CausalModel causalModel, Formula phi, Set<Literal> cause)
+            throws InvalidContextException, InvalidCauseException, InvalidPhiException, InvalidCausalModelException {
+        FormulaFactory f = causalModel.getFormulaFactory();
+        Literal causeLiteral = cause.iterator().next();
+        Budget budget = sampling.getBudget();
+        while (!stopped && !(budget != null && budget.isExhausted())) {
+            long i = nextSample.getAndIncrement();
+            if (i >= sampling.getMaxSamples()) {
+                break;
+            }
+            SplittableRandom random = new SplittableRandom(sampling.getSeed() + i * GOLDEN_GAMMA);
+            Set<Literal> context = new HashSet<>();
+            for (Variable exogenousVariable : exogenousVariables) {
+                boolean value = random.nextDouble() < priors.get(exogenousVariable);
+                context.add(f.literal(exogenousVariable.name(), value));
+            }
+            CausalitySolverResult causalitySolverResult = causalModel.isCause(context, phi, cause,
+                    sampling.getSolvingStrategy(), budget);
+            if (!causalitySolverResult.isDecided()) {
+                // the budget is exhausted
+                break;
+            }
+            record(causalitySolverResult.getResponsibility().get(causeLiteral));
+        }
+    }
+
+    private synchronized void record(double responsibility) {
+        if (stopped) {
+            return;
+        }
+        samples++;
+        if (responsibility > 0) {
+            causes++;
+        }
+        sum += responsibility;
+        sumOfSquares += responsibility * responsibility;
+        if (sampling.getMaxHalfWidth() > 0 && samples >= Sampling.MIN_SAMPLES
+                && halfWidth() <= sampling.getMaxHalfWidth()) {
+            converged = true;
+            stopped = true;
+        }
+    }
+
+    /**
+     * @return the half width of the confidence interval of the mean responsibility, using the normal approximation
+     */
+    private synchronized double halfWidth() {
+        if (samples < 2) {
+            return 1;
+        }
+        double mean = sum / samples;
+        double variance = Math.max(0, (sumOfSquares - samples * mean * mean) / (samples - 1));
+        return z * Math.sqrt(variance / samples);
+    }
+
+    /**
+     * Approximates the quantile function of the standard normal distribution (Abramowitz and Stegun, 26.2.23). The
+     * absolute error is below 4.5e-4.
+     *
+     * @param p a probability in (0.5, 1)
+     * @return the z-score of p
+     */
+    static double quantile(double p) {
+        double t = Math.sqrt(-2 * Math.log(1 - p));
+        return t - (2.515517 + 0.802853 * t + 0.010328 * t * t)
+                / (1 + 1.432788 * t + 0.189269 * t * t + 0.001308 * t * t * t);
+    }
+
+    private static void rethrow(Throwable throwable)
+            throws InvalidContextException, InvalidCauseException, InvalidPhiException, InvalidCausalModelException {
+        if (throwable instanceof InvalidContextException) {
+            throw (InvalidContextException) throwable;
+        } else if (throwable instanceof InvalidCauseException) {
+            throw (InvalidCauseException) throwable;
+        } else if (throwable instanceof InvalidPhiException) {
+            throw (InvalidPhiException) throwable;
+        } else if (throwable instanceof InvalidCausalModelException) {
+            throw (InvalidCausalModelException) throwable;
+        } else if (throwable instanceof RuntimeException) {
+            throw (RuntimeException) throwable;
+        } else if (throwable instanceof Error) {
+            throw (Error) throwable;
+        }
+        throw new IllegalStateException(throwable);
+    }
+}
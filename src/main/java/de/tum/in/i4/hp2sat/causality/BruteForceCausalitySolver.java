@@ -2,6 +2,7 @@ package de.tum.in.i4.hp2sat.causality;
 
 import org.eclipse.collections.impl.set.mutable.UnifiedSet;
 import org.logicng.datastructures.Assignment;
+import org.logicng.datastructures.Tristate;
 import org.logicng.formulas.Formula;
 import org.logicng.formulas.FormulaFactory;
 import org.logicng.formulas.Literal;
@@ -31,15 +32,29 @@ class BruteForceCausalitySolver extends CausalitySolver {
     CausalitySolverResult solve(CausalModel causalModel, Set<Literal> context, Formula phi,
                                 Set<Literal> cause, SolvingStrategy solvingStrategy)
             throws InvalidCausalModelException {
+        startStatistics(solvingStrategy);
         FormulaFactory f = causalModel.getFormulaFactory();
-        Set<Literal> evaluation = CausalitySolver.evaluateEquations(causalModel, context);
+        Set<Literal> evaluation = evaluateActualWorld(causalModel, context);
         Pair<Boolean, Boolean> ac1Tuple = fulfillsAC1(evaluation, phi, cause);
         boolean ac1 = ac1Tuple.first() && ac1Tuple.second();
-        Set<Literal> w = fulfillsAC2(causalModel, phi, cause, context, evaluation, solvingStrategy, f);
-        boolean ac2 = w != null;
-        boolean ac3 = fulfillsAC3(causalModel, phi, cause, context, evaluation, ac1Tuple.first(), solvingStrategy, f);
+        Set<Literal> w = null;
+        // ACs that cannot be decided within the budget remain unknown
+        Tristate ac2 = Tristate.UNDEF;
+        Tristate ac3 = Tristate.UNDEF;
+        try {
+            w = fulfillsAC2(causalModel, phi, cause, context, evaluation, solvingStrategy, f);
+            ac2 = Tristate.fromBool(w != null);
+            ac3 = Tristate.fromBool(fulfillsAC3(causalModel, phi, cause, context, evaluation, ac1Tuple.first(),
+                    solvingStrategy, f));
+        } catch (BudgetExhaustedException e) {
+            // nothing to do; the ACs decided so far are kept
+        }
         CausalitySolverResult causalitySolverResult = new CausalitySolverResult(ac1, ac2, ac3, cause, w);
-        return causalitySolverResult;
+        if (w != null) {
+            // the candidates for W are checked in ascending order of their size
+            causalitySolverResult.setWSizeLowerBound(w.size());
+        }
+        return finishStatistics(causalitySolverResult);
     }
 
     /**
@@ -54,6 +69,7 @@ class BruteForceCausalitySolver extends CausalitySolver {
      * @param f               a formula factory
      * @return returns W if AC2 fulfilled, else null
      * @throws InvalidCausalModelException thrown if internally generated causal models are invalid
+     * @throws BudgetExhaustedException    thrown if the budget is exhausted before AC2 could be decided
      */
     private Set<Literal> fulfillsAC2(CausalModel causalModel, Formula phi, Set<Literal> cause, Set<Literal> context,
                                      Set<Literal> evaluation, SolvingStrategy solvingStrategy, FormulaFactory f)
@@ -64,7 +80,7 @@ class BruteForceCausalitySolver extends CausalitySolver {
         CausalModel causalModelModified = createModifiedCausalModelForCause(causalModel, cause, f);
 
         // evaluate causal model with setting x' for cause
-        Set<Literal> evaluationModified = CausalitySolver.evaluateEquations(causalModelModified, context);
+        Set<Literal> evaluationModified = evaluate(causalModelModified, context);
         // check if not(phi) evaluates to true for empty W -> if yes, no further investigation necessary
         if (phiFormula.evaluate(new Assignment(evaluationModified))) {
             return new HashSet<>();
@@ -83,10 +99,14 @@ class BruteForceCausalitySolver extends CausalitySolver {
         List<Set<Literal>> allW = (new Util<Literal>()).generatePowerSet(wVariables);
 
         for (Set<Literal> w : allW) {
+            // each candidate W counts as a model of the budget
+            if (budget != null && !budget.consumeModel()) {
+                throw new BudgetExhaustedException();
+            }
             // create copy of modified causal model
             CausalModel causalModelModifiedW = createModifiedCausalModelForW(causalModelModified, w, f);
             // evaluate all variables
-            evaluationModified = CausalitySolver.evaluateEquations(causalModelModifiedW, context);
+            evaluationModified = evaluate(causalModelModifiedW, context);
             /*
              * if the negated phi evaluates to true given the values of the variables in the modified causal model,
              * AC2 is fulfilled an we return the W for which it is fulfilled. */
@@ -108,6 +128,7 @@ class BruteForceCausalitySolver extends CausalitySolver {
      * @param solvingStrategy the solving strategy
      * @param f               a formula factory
      * @return true if A3 fulfilled, else false
+     * @throws BudgetExhaustedException thrown if the budget is exhausted before AC3 could be decided
      */
     private boolean fulfillsAC3(CausalModel causalModel, Formula phi, Set<Literal> cause, Set<Literal> context,
                                 Set<Literal> evaluation, boolean phiOccurred, SolvingStrategy solvingStrategy,
@@ -124,6 +145,7 @@ class BruteForceCausalitySolver extends CausalitySolver {
              * no sub-cause must fulfill AC1 and AC2
              * for AC1, we only need to check if the current cause subset, as we checked for phi before */
             for (Set<Literal> c : allSubsetsOfCause) {
+                checkBudget();
                 if (evaluation.containsAll(c) &&
                         fulfillsAC2(causalModel, phi, c, context, evaluation, solvingStrategy, f) != null) {
                     return false;
@@ -0,0 +1,133 @@
+package de.tum.in.i4.hp2sat.causality;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the resources a causality check may use. A budget can restrict the wall-clock time, the number of conflicts
+ * of the SAT solvers and the number of models that are enumerated; it can also be cancelled from another thread. If a
+ * budget is exhausted, the ACs that could not be decided are reported as unknown (see
+ * {@link CausalitySolverResult#getAc2State()}). The limits on conflicts and models apply to all checks that use the
+ * same budget.
+ */
+public class Budget {
+    private volatile long deadline = Long.MAX_VALUE; // as System.nanoTime()
+    private volatile boolean hasDeadline = false;
+    private volatile long maxConflicts = Long.MAX_VALUE;
+    private volatile long maxModels = Long.MAX_VALUE;
+    private final AtomicLong conflicts = new AtomicLong();
+    private final AtomicLong models = new AtomicLong();
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+    private final Budget parent; // null if none
+
+    /**
+     * Creates a budget without any limits. It can still be cancelled.
+     */
+    public Budget() {
+        this(null);
+    }
+
+    /**
+     * Creates a budget for a part of a check, e.g. one of several checks that run concurrently. It is exhausted if
+     * the given budget is exhausted, and the conflicts and models it consumes are also consumed from the given budget.
+     * Cancelling it does not cancel the given budget.
+     *
+     * @param parent the budget of the whole check; null if unlimited
+     */
+    Budget(Budget parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * Sets a deadline relative to the current point in time.
+     *
+     * @param timeout the time from now on until the deadline
+     * @param unit    the unit of the timeout
+     * @return this budget
+     */
+    public Budget withTimeout(long timeout, TimeUnit unit) {
+        this.deadline = System.nanoTime() + unit.toNanos(timeout);
+        this.hasDeadline = true;
+        return this;
+    }
+
+    /**
+     * @param maxConflicts the maximum number of conflicts of all SAT solver calls
+     * @return this budget
+     */
+    public Budget withConflictLimit(long maxConflicts) {
+        this.maxConflicts = maxConflicts;
+        return this;
+    }
+
+    /**
+     * @param maxModels the maximum number of models; for SAT-based strategies these are the enumerated satisfying
+     *                  assignments, for {@link SolvingStrategy#BRUTE_FORCE} the checked candidates for W
+     * @return this budget
+     */
+    public Budget withModelLimit(long maxModels) {
+        this.maxModels = maxModels;
+        return this;
+    }
+
+    /**
+     * Cancels all checks that use this budget. Can be called from any thread; the checks stop as soon as possible.
+     */
+    public void cancel() {
+        cancelled.set(true);
+    }
+
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    /**
+     * @return true if the budget is cancelled or any of its limits is exceeded
+     */
+    public boolean isExhausted() {
+        return cancelled.get() || (hasDeadline && System.nanoTime() - deadline >= 0)
+                || conflicts.get() > maxConflicts || models.get() > maxModels
+                || (parent != null && parent.isExhausted());
+    }
+
+    /**
+     * Records a conflict.
+     *
+     * @return true if the budget still allows to continue
+     */
+    boolean consumeConflict() {
+        conflicts.incrementAndGet();
+        if (parent != null) {
+            parent.conflicts.incrementAndGet();
+        }
+        return !isExhausted();
+    }
+
+    /**
+     * Records a model.
+     *
+     * @return true if the budget still allows to continue
+     */
+    boolean consumeModel() {
+        models.incrementAndGet();
+        if (parent != null) {
+            parent.models.incrementAndGet();
+        }
+        return !isExhausted();
+    }
+
+    /**
+     * @return the number of conflicts consumed so far
+     */
+    public long getConflicts() {
+        return conflicts.get();
+    }
+
+    /**
+     * @return the number of models consumed so far
+     */
+    public long getModels() {
+        return models.get();
+    }
+}
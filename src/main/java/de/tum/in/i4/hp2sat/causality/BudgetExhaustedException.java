@@ -0,0 +1,12 @@
+package de.tum.in.i4.hp2sat.causality;
+
+/**
+ * Thrown internally by the solvers if the {@link Budget} of a causality check is exhausted. Never leaves the
+ * solvers; instead, the affected ACs are reported as unknown.
+ */
+class BudgetExhaustedException extends RuntimeException {
+    BudgetExhaustedException() {
+        // the stack trace is never needed as the exception is only used to abort a check
+        super(null, null, false, false);
+    }
+}
@@ -14,23 +14,55 @@ import org.logicng.formulas.FormulaFactory;
 import org.logicng.formulas.Literal;
 import org.logicng.formulas.Variable;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
-import java.util.function.Function;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static de.tum.in.i4.hp2sat.causality.SolvingStrategy.*;
 
+/**
+ * A causal model consisting of exogenous variables and one equation per endogenous variable. Causal models are
+ * immutable: the passed equations and variables are copied upon creation and all getters return unmodifiable views.
+ * Therefore, derived structures like the topological order of the equations or cached evaluations can be safely shared
+ * across queries and threads. Use {@link Builder} to create a causal model step by step or to derive a modified
+ * version of an existing one.
+ */
 public class CausalModel {
-    private String name;
-    private Set<Variable> exogenousVariables;
+    private final String name;
+    private final Set<Variable> exogenousVariables;
 
-    private Map<Variable, Equation> variableEquationMap;
+    private final Map<Variable, Equation> variableEquationMap;
     private Graph graph;
     private Graph graphReversed;
-    private List<Equation> equationsSorted; // according to topological sort
-    private FormulaFactory formulaFactory;
+    private final List<Equation> equationsSorted; // according to topological sort
+    private final FormulaFactory formulaFactory;
+    private List<Variable> variables; // exogenous variables first, then endogenous ones according to topological sort
+    private Map<Variable, Integer> variableIds;
+    private final EvaluationCache evaluationCache;
+    private PrecompiledSATEncoding precompiledSATEncoding;
+    private BDDEncoding bddEncoding;
+    private ReachabilityIndex reachabilityIndex;
+    // copies with their own formula factories for parts of checks that run on other threads
+    private final Queue<CausalModel> threadCopies = new ConcurrentLinkedQueue<>();
 
     /**
      * Creates a new causal model
@@ -46,50 +78,104 @@ public class CausalModel {
      */
     public CausalModel(String name, Set<Equation> equations, Set<Variable> exogenousVariables,
                        FormulaFactory formulaFactory) throws InvalidCausalModelException {
-        this(name, equations, exogenousVariables, formulaFactory, true);
-    }
-
-    /**
-     * Same as {@link CausalModel#CausalModel(String, Set, Set, FormulaFactory)}, but allows to specify if validity is checked. For
-     * internal use only.
-     *
-     * @param name
-     * @param equations
-     * @param exogenousVariables
-     * @param checkValidity
-     * @throws InvalidCausalModelException
-     */
-    private CausalModel(String name, Set<Equation> equations, Set<Variable> exogenousVariables,
-                        FormulaFactory formulaFactory, boolean checkValidity) throws InvalidCausalModelException {
         this.name = name;
-        this.exogenousVariables = exogenousVariables;
+        this.exogenousVariables = Collections.unmodifiableSet(new HashSet<>(exogenousVariables));
 
-        if (checkValidity) {
-            // throws an exception if invalid
-            isValid(equations, exogenousVariables);
-        }
-        this.variableEquationMap = equations.stream()
-                .collect(Collectors.toMap(Equation::getVariable, Function.identity()));
+        // throws an exception if invalid
+        isValid(equations, this.exogenousVariables);
+        this.variableEquationMap = Collections.unmodifiableMap(equations.stream()
+                .collect(Collectors.toMap(Equation::getVariable, Equation::freeze)));
         this.graph = this.toGraph();
         this.formulaFactory = formulaFactory;
-        equationsSorted = this.sortEquations();
+        equationsSorted = Collections.unmodifiableList(this.sortEquations());
+        this.indexVariables();
+        this.evaluationCache = new EvaluationCache(this);
     }
 
     /**
-     * Creates a copy of the passed causal model in which only the equation that define the passed variables are
-     * copied.
-     * IMPORTANT: We skip the validity check when calling this constructor!
+     * Creates a copy of the passed causal model in which the equations of the variables defined by the passed
+     * equations are replaced by the latter. All other equations are shared with the passed causal model.
+     * IMPORTANT: We skip the validity check when calling this constructor! Moreover, the replacing equations must not
+     * introduce new dependencies between variables (e.g. replacing an equation by a constant is fine), as the
+     * topological order and the variable ids of the passed causal model are reused.
      *
-     * @param causalModel the causal model that is copied
-     * @param variables   the variables whose equations are copied
+     * @param causalModel        the causal model that is copied
+     * @param equationsReplacing the equations that replace the respective equations of the passed causal model
      */
-    CausalModel(CausalModel causalModel, Set<Variable> variables) throws InvalidCausalModelException {
+    CausalModel(CausalModel causalModel, Set<Equation> equationsReplacing) {
         /*
          * we assume that this constructor is called only, if we know that the original causal model is valid.
          * Thereforce, we skip the validity check. */
-        this(causalModel.name, causalModel.variableEquationMap.values().stream()
-                .map(e -> variables.contains(e.getVariable()) ? new Equation(e) : e)
-                .collect(Collectors.toSet()), causalModel.exogenousVariables, causalModel.formulaFactory, false);
+        this.name = causalModel.name;
+        this.exogenousVariables = causalModel.exogenousVariables;
+        this.formulaFactory = causalModel.formulaFactory;
+        Map<Variable, Equation> variableEquationMap = new HashMap<>(causalModel.variableEquationMap);
+        equationsReplacing.forEach(e -> variableEquationMap.put(e.getVariable(), e.freeze()));
+        this.variableEquationMap = Collections.unmodifiableMap(variableEquationMap);
+        // no new dependencies, hence the topological order of the original causal model is still valid
+        this.equationsSorted = Collections.unmodifiableList(causalModel.equationsSorted.stream()
+                .map(e -> variableEquationMap.get(e.getVariable())).collect(Collectors.toList()));
+        this.variables = causalModel.variables;
+        this.variableIds = causalModel.variableIds;
+        // the graph is only created if actually needed
+        this.evaluationCache = new EvaluationCache(this);
+    }
+
+    /**
+     * Creates a causal model from equations that are already sorted topologically, e.g. when loading a causal model
+     * written by {@link CausalModelFile}. IMPORTANT: We skip the validity check and the topological sort when calling
+     * this constructor! The graph is only created if actually needed.
+     *
+     * @param name               name of the causal model
+     * @param exogenousVariables the exogenous variables of the causal model
+     * @param equationsSorted    the equations in topological order
+     * @param formulaFactory     the formula factory of all formulas of the equations
+     */
+    CausalModel(String name, Collection<Variable> exogenousVariables, List<Equation> equationsSorted,
+                FormulaFactory formulaFactory) {
+        this.name = name;
+        this.exogenousVariables = Collections.unmodifiableSet(new HashSet<>(exogenousVariables));
+        this.formulaFactory = formulaFactory;
+        List<Equation> equationsFrozen = equationsSorted.stream().map(Equation::freeze).collect(Collectors.toList());
+        this.variableEquationMap = Collections.unmodifiableMap(equationsFrozen.stream()
+                .collect(Collectors.toMap(Equation::getVariable, e -> e)));
+        this.equationsSorted = Collections.unmodifiableList(equationsFrozen);
+        this.indexVariables();
+        this.evaluationCache = new EvaluationCache(this);
+    }
+
+    /**
+     * Creates a builder for a new causal model.
+     *
+     * @param name           name of the causal model
+     * @param formulaFactory the formula factory used for all formulas of the causal model
+     * @return a builder
+     */
+    public static Builder builder(String name, FormulaFactory formulaFactory) {
+        return new Builder(name, formulaFactory);
+    }
+
+    /**
+     * Creates a builder that is initialized with the equations and exogenous variables of this causal model. Can be
+     * used to derive a modified causal model without changing the current one.
+     *
+     * @return a builder
+     */
+    public Builder toBuilder() {
+        return toBuilder(this.name);
+    }
+
+    /**
+     * Same as {@link #toBuilder()}, but the causal model created by the builder is named differently.
+     *
+     * @param name name of the derived causal model
+     * @return a builder
+     */
+    public Builder toBuilder(String name) {
+        Builder builder = new Builder(name, this.formulaFactory, this);
+        builder.exogenousVariables.addAll(this.exogenousVariables);
+        builder.variableEquationMap.putAll(this.variableEquationMap);
+        return builder;
     }
 
     /**
@@ -110,17 +196,142 @@ public class CausalModel {
     public CausalitySolverResult isCause(Set<Literal> context, Formula phi, Set<Literal> cause,
                                          SolvingStrategy solvingStrategy)
             throws InvalidContextException, InvalidCauseException, InvalidPhiException, InvalidCausalModelException {
+        return isCause(context, phi, cause, solvingStrategy, (Budget) null);
+    }
+
+    /**
+     * see {@link #isCause(Set, Formula, Set, SolvingStrategy)} for a full documentation. The only difference is that
+     * the check is limited by the passed budget. If the budget is exhausted or cancelled, the check returns
+     * immediately and all ACs that could not be decided are unknown (see {@link CausalitySolverResult#getAc2State()}
+     * and {@link CausalitySolverResult#getAc3State()}).
+     *
+     * @param context         the context of the causal scenario
+     * @param phi             the phi
+     * @param cause           the cause
+     * @param solvingStrategy the applied solving strategy
+     * @param budget          the budget of the check; null if unlimited
+     * @return the result of the check; might contain unknown ACs
+     * @throws InvalidContextException     thrown if context is invalid
+     * @throws InvalidCauseException       thrown if the cause is invalid
+     * @throws InvalidPhiException         thrown if phi is invalid
+     * @throws InvalidCausalModelException thrown if internally generated causal models are invalid
+     */
+    public CausalitySolverResult isCause(Set<Literal> context, Formula phi, Set<Literal> cause,
+                                         SolvingStrategy solvingStrategy, Budget budget)
+            throws InvalidContextException, InvalidCauseException, InvalidPhiException, InvalidCausalModelException {
         validateCausalityCheck(context, phi, cause);
-        CausalitySolver causalitySolver;
-        if (solvingStrategy == BRUTE_FORCE ) {
-            causalitySolver = new BruteForceCausalitySolver();
-        } else {
-            causalitySolver = new SATCausalitySolver();
-        }
+        CausalitySolver causalitySolver = createCausalitySolver(solvingStrategy);
+        causalitySolver.setBudget(budget);
 
         return causalitySolver.solve(this, context, phi, cause, solvingStrategy);
     }
 
+    /**
+     * Returns the k causes of phi with the highest degree of responsibility in the given context. Potential causes
+     * are checked in increasing size and the search stops as soon as no larger cause can have a higher degree of
+     * responsibility, i.e. the power set of all endogenous variables is only enumerated if there are less than k
+     * causes. Use a solving strategy that computes a minimal W, e.g. {@link SolvingStrategy#SAT_MINIMAL}; otherwise,
+     * the degrees of responsibility might be underestimated.
+     *
+     * @param context         the context of the causal scenario
+     * @param phi             the phi
+     * @param k               the maximum number of returned causes
+     * @param solvingStrategy the applied solving strategy
+     * @return at most k causes ordered by decreasing degree of responsibility
+     * @throws InvalidContextException     thrown if context is invalid
+     * @throws InvalidPhiException         thrown if phi is invalid
+     * @throws InvalidCausalModelException thrown if internally generated causal models are invalid
+     */
+    public List<CausalitySolverResult> getMostResponsibleCauses(Set<Literal> context, Formula phi, int k,
+                                                                SolvingStrategy solvingStrategy)
+            throws InvalidContextException, InvalidPhiException, InvalidCausalModelException {
+        if (!isContextValid(context))
+            throw new InvalidContextException();
+        if (!isLiteralsInEquations(phi.literals()))
+            throw new InvalidPhiException();
+        return createCausalitySolver(solvingStrategy).getMostResponsibleCauses(this, context, phi, k,
+                solvingStrategy);
+    }
+
+    /**
+     * Returns all causes of phi in the given context as a lazy stream. The causes are found in increasing size and
+     * each cause is emitted as soon as it has been checked, i.e. the first causes are available long before the whole
+     * search has finished. Potential causes are only generated and checked when the next element of the stream is
+     * requested; hence, short-circuiting operations like {@link Stream#limit(long)} or {@link Stream#findFirst()} stop
+     * the search. The search can also be cancelled from another thread via {@link Budget#cancel()}, after which the
+     * stream ends. The stream is sequential and must be consumed by a single thread.
+     *
+     * @param context         the context of the causal scenario
+     * @param phi             the phi
+     * @param solvingStrategy the applied solving strategy
+     * @param budget          the budget of the whole search; null if unlimited
+     * @return the stream of all causes, i.e. of the results for which AC1-AC3 are fulfilled
+     * @throws InvalidContextException thrown if context is invalid
+     * @throws InvalidPhiException     thrown if phi is invalid
+     */
+    public Stream<CausalitySolverResult> streamAllCauses(Set<Literal> context, Formula phi,
+                                                         SolvingStrategy solvingStrategy, Budget budget)
+            throws InvalidContextException, InvalidPhiException {
+        if (!isContextValid(context))
+            throw new InvalidContextException();
+        if (!isLiteralsInEquations(phi.literals()))
+            throw new InvalidPhiException();
+        CausalitySolver causalitySolver = createCausalitySolver(solvingStrategy);
+        causalitySolver.setBudget(budget);
+        // the first potential cause is checked only once the stream is consumed
+        return StreamSupport.stream(() -> Spliterators.spliteratorUnknownSize(
+                new CauseIterator(causalitySolver, this, context, phi, solvingStrategy),
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL),
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL, false);
+    }
+
+    /**
+     * Performs the same check as {@link #isCause(Set, Formula, Set, SolvingStrategy)} and writes each SAT instance
+     * that is solved during the check to the given directory in DIMACS format (see {@link DimacsCorpus}). Checks that
+     * are decided without a SAT solver, e.g. AC3 for a singleton cause, do not produce an instance.
+     *
+     * @param context         the context of the causal scenario
+     * @param phi             the phi
+     * @param cause           the cause
+     * @param solvingStrategy the applied solving strategy; must be SAT-based
+     * @param directory       the directory the instances are written to
+     * @return the written files in the order in which the instances were solved
+     * @throws InvalidContextException     thrown if context is invalid
+     * @throws InvalidCauseException       thrown if the cause is invalid
+     * @throws InvalidPhiException         thrown if phi is invalid
+     * @throws InvalidCausalModelException thrown if internally generated causal models are invalid
+     * @throws IOException                 thrown if an instance cannot be written
+     * @throws IllegalArgumentException    thrown if the solving strategy does not use a SAT solver
+     */
+    public List<Path> exportSATQueries(Set<Literal> context, Formula phi, Set<Literal> cause,
+                                       SolvingStrategy solvingStrategy, Path directory)
+            throws InvalidContextException, InvalidCauseException, InvalidPhiException, InvalidCausalModelException,
+            IOException {
+        if (solvingStrategy == BRUTE_FORCE || solvingStrategy == BDD) {
+            throw new IllegalArgumentException("Solving strategy " + solvingStrategy + " does not use a SAT solver");
+        }
+        validateCausalityCheck(context, phi, cause);
+        SATCausalitySolver satCausalitySolver = new SATCausalitySolver();
+        DimacsCorpus corpus = new DimacsCorpus(directory, true);
+        satCausalitySolver.setCorpus(corpus);
+        try {
+            satCausalitySolver.solve(this, context, phi, cause, solvingStrategy);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return corpus.getFiles();
+    }
+
+    private CausalitySolver createCausalitySolver(SolvingStrategy solvingStrategy) {
+        if (solvingStrategy == BRUTE_FORCE) {
+            return new BruteForceCausalitySolver();
+        } else if (solvingStrategy == BDD) {
+            return new BDDCausalitySolver();
+        } else {
+            return new SATCausalitySolver();
+        }
+    }
+
     /**
      * see {@link #isCause(Set, Formula, Set, SolvingStrategy, SATSolverType)} for a full documentation. The only
      * difference is that in the current method the to be used SAT solver can be specified. This only works if the
@@ -141,16 +352,291 @@ public class CausalModel {
     public CausalitySolverResult isCause(Set<Literal> context, Formula phi, Set<Literal> cause,
                                          SolvingStrategy solvingStrategy, SATSolverType satSolverType)
             throws InvalidContextException, InvalidCauseException, InvalidPhiException, InvalidCausalModelException {
-        if (solvingStrategy == BRUTE_FORCE ) {
+        return isCause(context, phi, cause, solvingStrategy, satSolverType, null);
+    }
+
+    /**
+     * see {@link #isCause(Set, Formula, Set, SolvingStrategy, Budget)} and
+     * {@link #isCause(Set, Formula, Set, SolvingStrategy, SATSolverType)}.
+     *
+     * @param context         the context of the causal scenario
+     * @param phi             the phi
+     * @param cause           the cause
+     * @param solvingStrategy the applied solving strategy
+     * @param satSolverType   the to be used SAT solver
+     * @param budget          the budget of the check; null if unlimited
+     * @return the result of the check; might contain unknown ACs
+     * @throws InvalidContextException     thrown if context is invalid
+     * @throws InvalidCauseException       thrown if the cause is invalid
+     * @throws InvalidPhiException         thrown if phi is invalid
+     * @throws InvalidCausalModelException thrown if internally generated causal models are invalid
+     */
+    public CausalitySolverResult isCause(Set<Literal> context, Formula phi, Set<Literal> cause,
+                                         SolvingStrategy solvingStrategy, SATSolverType satSolverType, Budget budget)
+            throws InvalidContextException, InvalidCauseException, InvalidPhiException, InvalidCausalModelException {
+        return isCause(context, phi, cause, solvingStrategy, satSolverType, budget, null);
+    }
+
+    /**
+     * see {@link #isCause(Set, Formula, Set, SolvingStrategy, SATSolverType, Budget)}. The only difference is that
+     * AC2 and AC3 are checked concurrently: AC3 is checked by the given executor on a copy of this causal model while
+     * AC2 is checked by the calling thread. If AC2 is not fulfilled, the cause is no cause regardless of AC3; then, the
+     * AC3 check is cancelled and AC3 is unknown unless it has already been decided. This only applies to
+     * {@link SolvingStrategy#SAT}, {@link SolvingStrategy#SAT_MINIMAL}, {@link SolvingStrategy#SAT_OPTIMIZED_AC3},
+     * {@link SolvingStrategy#SAT_OPTIMIZED_AC3_MINIMAL}, {@link SolvingStrategy#SAT_PRECOMPILED},
+     * {@link SolvingStrategy#SAT_PRECOMPILED_MINIMAL} and {@link SolvingStrategy#SAT_ANYTIME} and to causes with more
+     * than one literal, as AC3 is trivially fulfilled otherwise. The calling thread checks AC3 itself if the executor
+     * has not started the check by the time AC2 is decided, hence the executor may be the one that runs the caller.
+     *
+     * @param context         the context of the causal scenario
+     * @param phi             the phi
+     * @param cause           the cause
+     * @param solvingStrategy the applied solving strategy
+     * @param satSolverType   the to be used SAT solver
+     * @param budget          the budget of the check; null if unlimited
+     * @param executor        the executor that checks AC3; null to check AC2 and AC3 sequentially
+     * @return the result of the check; might contain unknown ACs
+     * @throws InvalidContextException     thrown if context is invalid
+     * @throws InvalidCauseException       thrown if the cause is invalid
+     * @throws InvalidPhiException         thrown if phi is invalid
+     * @throws InvalidCausalModelException thrown if internally generated causal models are invalid
+     */
+    public CausalitySolverResult isCause(Set<Literal> context, Formula phi, Set<Literal> cause,
+                                         SolvingStrategy solvingStrategy, SATSolverType satSolverType, Budget budget,
+                                         Executor executor)
+            throws InvalidContextException, InvalidCauseException, InvalidPhiException, InvalidCausalModelException {
+        if (solvingStrategy == BRUTE_FORCE || solvingStrategy == BDD) {
             // ignore SAT solver type if solving strategy is not SAT related
-            return isCause(context, phi, cause, solvingStrategy);
+            return isCause(context, phi, cause, solvingStrategy, budget);
         } else {
             validateCausalityCheck(context, phi, cause);
             SATCausalitySolver satCausalitySolver = new SATCausalitySolver();
+            satCausalitySolver.setBudget(budget);
+            satCausalitySolver.setExecutor(executor);
             return satCausalitySolver.solve(this, context, phi, cause, solvingStrategy, satSolverType);
         }
     }
 
+    /**
+     * see {@link #isCauseAsync(Set, Formula, Set, SolvingStrategy, SATSolverType, Budget, Executor)}; uses
+     * {@link SATSolverType#MINISAT} and no budget.
+     *
+     * @param context         the context of the causal scenario
+     * @param phi             the phi
+     * @param cause           the cause
+     * @param solvingStrategy the applied solving strategy
+     * @param executor        the executor that runs the check
+     * @return the future result of the check
+     */
+    public CompletableFuture<CausalitySolverResult> isCauseAsync(Set<Literal> context, Formula phi,
+                                                                 Set<Literal> cause, SolvingStrategy solvingStrategy,
+                                                                 Executor executor) {
+        return isCauseAsync(context, phi, cause, solvingStrategy, SATSolverType.MINISAT, null, executor);
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link #isCause(Set, Formula, Set, SolvingStrategy, SATSolverType, Budget, Executor)}: the check is run by the
+     * given executor, which also checks AC3 concurrently to AC2, and the returned future is completed with its result.
+     * If the check is invalid, the future is completed exceptionally with the exception thrown by the synchronous
+     * version, e.g. an {@link InvalidCauseException}.
+     * <p>
+     * Cancelling the future cancels the budget of the check, i.e. a running SAT solver is aborted at its next conflict
+     * and no further SAT calls are made; if no budget is given, the check uses a budget without limits for this
+     * purpose. A given budget can be shared by several checks, which are then all cancelled together.
+     * <p>
+     * As the formula factory of this causal model is not thread-safe, the caller must neither use the model nor its
+     * formula factory until the future has been completed. Concurrent checks need their own copies of the causal
+     * model (see {@link #copy(FormulaFactory)}).
+     *
+     * @param context         the context of the causal scenario
+     * @param phi             the phi
+     * @param cause           the cause
+     * @param solvingStrategy the applied solving strategy
+     * @param satSolverType   the to be used SAT solver; ignored by non-SAT-based solving strategies
+     * @param budget          the budget of the check; null if unlimited
+     * @param executor        the executor that runs the check
+     * @return the future result of the check; might contain unknown ACs if the budget is exhausted
+     */
+    public CompletableFuture<CausalitySolverResult> isCauseAsync(Set<Literal> context, Formula phi,
+                                                                 Set<Literal> cause, SolvingStrategy solvingStrategy,
+                                                                 SATSolverType satSolverType, Budget budget,
+                                                                 Executor executor) {
+        Budget checkBudget = budget != null ? budget : new Budget();
+        CompletableFuture<CausalitySolverResult> future = new CompletableFuture<>();
+        // CompletableFuture#cancel does not reach the running task, hence the budget is cancelled instead
+        future.whenComplete((result, throwable) -> {
+            if (future.isCancelled()) {
+                checkBudget.cancel();
+            }
+        });
+        try {
+            executor.execute(() -> {
+                if (future.isDone()) {
+                    return;
+                }
+                try {
+                    future.complete(isCause(context, phi, cause, solvingStrategy, satSolverType, checkBudget,
+                            executor));
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Evaluates the equations under the given context, i.e. computes the actual world. Evaluations are cached per
+     * context.
+     *
+     * @param context the context of the causal scenario; defines the values of the exogenous variables
+     * @return the value of each variable (endo and exo); positive literal means true, negative means false
+     * @throws InvalidContextException thrown if context is invalid
+     */
+    public Set<Literal> evaluate(Set<Literal> context) throws InvalidContextException {
+        if (!isContextValid(context))
+            throw new InvalidContextException();
+        return evaluationCache.evaluate(context);
+    }
+
+    /**
+     * Determines how an evaluation changes if the values of some exogenous variables change, e.g. if consecutive
+     * contexts differ in a few variables only. Only the equations in the forward cone of the changed exogenous
+     * variables are evaluated again, in topological order, and the propagation stops at variables whose value does
+     * not change. Hence, the effort is proportional to the part of the model that is actually affected.
+     *
+     * @param evaluation     the value of each variable under the previous context, as returned by
+     *                       {@link #evaluate(Set)}; not modified
+     * @param changedContext the new values of the exogenous variables that have changed; literals whose value does
+     *                       not differ from the evaluation are ignored
+     * @return the endogenous variables whose value changes, with their new value; positive literal means true,
+     * negative means false
+     * @throws InvalidContextException thrown if the changed context contains an endogenous variable
+     */
+    public Set<Literal> evaluateChanges(Set<Literal> evaluation, Set<Literal> changedContext)
+            throws InvalidContextException {
+        if (!exogenousVariables.containsAll(changedContext.stream().map(Literal::variable)
+                .collect(Collectors.toSet())))
+            throw new InvalidContextException();
+        return evaluationCache.evaluateChanges(evaluation, changedContext);
+    }
+
+    /**
+     * Returns a causal model that only contains the part of this causal model that is relevant for checking whether
+     * the given cause is a cause of phi in the given context. Variables that no intervention on the cause can change
+     * are replaced by their value under the context and equations that affect neither phi nor the cause are removed.
+     * Checking the cause on the sliced model with any solving strategy yields the same ACs as on this model; the same
+     * holds for the size of W if the strategy computes a minimal W. Other strategies might return a smaller W, as W
+     * only contains variables of the sliced model.
+     *
+     * @param context the context of the causal scenario
+     * @param phi     the phi
+     * @param cause   the cause
+     * @return the sliced causal model with the same exogenous variables as this causal model
+     * @throws InvalidContextException     thrown if context is invalid
+     * @throws InvalidCauseException       thrown if the cause is invalid
+     * @throws InvalidPhiException         thrown if phi is invalid
+     * @throws InvalidCausalModelException thrown if the sliced causal model is invalid
+     */
+    public CausalModel slice(Set<Literal> context, Formula phi, Set<Literal> cause)
+            throws InvalidContextException, InvalidCauseException, InvalidPhiException, InvalidCausalModelException {
+        validateCausalityCheck(context, phi, cause);
+        return CausalModelSlicer.slice(this, context, phi, cause);
+    }
+
+    /**
+     * Returns a causal model in which chains of buffers (B = A) and inverters (B = not A) are collapsed, i.e. A is
+     * inlined into B if B is the only variable that depends on A and A is neither part of phi nor of the cause.
+     * Checking the cause on the collapsed model with any solving strategy yields the same ACs and the same size of a
+     * minimal W. Causes and W only contain variables of this causal model; if W contained a removed variable A, it
+     * contains B instead. {@link CollapsedCausalModel#translate(CausalitySolverResult)} replaces B by A again.
+     *
+     * @param phi   the phi
+     * @param cause the cause
+     * @return the collapsed causal model and the removed variables
+     * @throws InvalidCauseException       thrown if the cause is invalid
+     * @throws InvalidPhiException         thrown if phi is invalid
+     * @throws InvalidCausalModelException thrown if the collapsed causal model is invalid
+     */
+    public CollapsedCausalModel collapseChains(Formula phi, Set<Literal> cause)
+            throws InvalidCauseException, InvalidPhiException, InvalidCausalModelException {
+        if (!isLiteralsInEquations(phi.literals()))
+            throw new InvalidPhiException();
+        if (!isLiteralsInEquations(cause) || cause.size() < 1)
+            throw new InvalidCauseException();
+        return new CausalModelOptimizer(this).collapseChains(phi, cause);
+    }
+
+    /**
+     * Computes the degree of blame of the cause, i.e. its expected degree of responsibility for a minimal W, where
+     * each exogenous variable is true with the given probability independently of the others. The contexts are not
+     * enumerated; instead, the contexts in which the cause is an actual cause are compiled into a BDD whose
+     * probability is computed in a single pass. The BDD might grow exponentially for large or dense causal models.
+     *
+     * @param priors for each exogenous variable, the probability that it is true
+     * @param phi    the phi
+     * @param cause  the cause
+     * @return the degree of blame and the probability that the cause is an actual cause
+     * @throws InvalidContextException thrown if the priors do not assign a probability to exactly the exogenous
+     *                                 variables
+     * @throws InvalidCauseException   thrown if the cause is invalid
+     * @throws InvalidPhiException     thrown if phi is invalid
+     */
+    public BlameResult computeBlame(Map<Variable, Double> priors, Formula phi, Set<Literal> cause)
+            throws InvalidContextException, InvalidCauseException, InvalidPhiException {
+        validateBlameComputation(priors, phi, cause);
+        return new BlameResult(cause, getBDDEncoding().computeWSizeDistribution(phi, cause, priors));
+    }
+
+    /**
+     * Estimates the degree of blame of the cause by sampling contexts, where each exogenous variable is true with the
+     * given probability independently of the others. In contrast to {@link #computeBlame(Map, Formula, Set)}, this
+     * does not compile the causal model as a whole and is therefore also applicable to large models. The sampled
+     * contexts are checked in parallel if configured so.
+     *
+     * @param priors   for each exogenous variable, the probability that it is true
+     * @param phi      the phi
+     * @param cause    the cause
+     * @param sampling the configuration of the sampling
+     * @return the estimated degree of blame with its confidence interval
+     * @throws InvalidContextException     thrown if the priors do not assign a probability to exactly the exogenous
+     *                                     variables
+     * @throws InvalidCauseException       thrown if the cause is invalid
+     * @throws InvalidPhiException         thrown if phi is invalid
+     * @throws InvalidCausalModelException thrown if internally generated causal models are invalid
+     */
+    public BlameEstimate estimateBlame(Map<Variable, Double> priors, Formula phi, Set<Literal> cause,
+                                       Sampling sampling)
+            throws InvalidContextException, InvalidCauseException, InvalidPhiException, InvalidCausalModelException {
+        validateBlameComputation(priors, phi, cause);
+        return new BlameSampler(this, priors, sampling).estimate(phi, cause);
+    }
+
+    /**
+     * Creates a copy of this causal model whose formulas are created by the given formula factory. As formula
+     * factories are not thread-safe, this allows to work on the same causal model in several threads, e.g. by one copy
+     * per thread. As this causal model is valid, the copy is neither validated nor sorted again; it has the same
+     * topological order and variable ids as this causal model. Copies are created one at a time, such that several
+     * threads can copy the same causal model concurrently.
+     *
+     * @param formulaFactory the formula factory of the copy
+     * @return the copy
+     */
+    public synchronized CausalModel copy(FormulaFactory formulaFactory) {
+        List<Equation> equationsSorted = this.equationsSorted.stream()
+                .map(e -> new Equation((Variable) formulaFactory.importFormula(e.getVariable()),
+                        formulaFactory.importFormula(e.getFormula())))
+                .collect(Collectors.toList());
+        List<Variable> exogenousVariables = this.exogenousVariables.stream()
+                .map(v -> (Variable) formulaFactory.importFormula(v)).collect(Collectors.toList());
+        CausalModel causalModel = new CausalModel(name, exogenousVariables, equationsSorted, formulaFactory);
+        causalModel.setReachabilityIndex(new ReachabilityIndex(causalModel, ReachabilityIndex.CLOSURE_LIMIT,
+                getReachabilityIndex().getInputs()));
+        return causalModel;
+    }
 
     /**
      * Checks whether the given equations and exogenous variables are valid.
@@ -279,6 +765,28 @@ public class CausalModel {
             throw new InvalidCauseException();
     }
 
+    /**
+     * Make sure that the passed priors, phi and cause are valid for computing the degree of blame.
+     *
+     * @param priors for each exogenous variable, the probability that it is true
+     * @param phi    the phi
+     * @param cause  the cause
+     * @throws InvalidContextException
+     * @throws InvalidCauseException
+     * @throws InvalidPhiException
+     */
+    private void validateBlameComputation(Map<Variable, Double> priors, Formula phi, Set<Literal> cause)
+            throws InvalidContextException, InvalidCauseException, InvalidPhiException {
+        if (!priors.keySet().equals(exogenousVariables))
+            throw new InvalidContextException("Priors must be given for exactly the exogenous variables");
+        if (priors.values().stream().anyMatch(p -> p == null || !(p >= 0 && p <= 1)))
+            throw new InvalidContextException("Priors must be probabilities");
+        if (!isLiteralsInEquations(phi.literals()))
+            throw new InvalidPhiException();
+        if (!isLiteralsInEquations(cause) || cause.size() < 1)
+            throw new InvalidCauseException();
+    }
+
     /**
      * Sort the equations of the causal model according to the total order proposed by Halpern.
      *
@@ -310,6 +818,99 @@ public class CausalModel {
         return equationsSorted;
     }
 
+    /**
+     * Assigns a dense id to each variable of the causal model. Exogenous variables obtain the lowest ids, followed by
+     * the endogenous variables in the order of {@link #getEquationsSorted()}.
+     */
+    private void indexVariables() {
+        this.variables = new ArrayList<>(this.exogenousVariables.size() + this.equationsSorted.size());
+        this.variables.addAll(new TreeSet<>(this.exogenousVariables));
+        this.equationsSorted.forEach(e -> this.variables.add(e.getVariable()));
+        this.variableIds = new HashMap<>();
+        for (int i = 0; i < this.variables.size(); i++) {
+            this.variableIds.put(this.variables.get(i), i);
+        }
+    }
+
+    /**
+     * Returns the id of the given variable. Ids are dense, i.e. they range from 0 to the number of variables - 1.
+     *
+     * @param variable a variable of the causal model
+     * @return the id of the variable
+     */
+    int getVariableId(Variable variable) {
+        return variableIds.get(variable);
+    }
+
+    /**
+     * @return all variables of the causal model, where the index of a variable in the list is its id
+     */
+    List<Variable> getVariables() {
+        return variables;
+    }
+
+    EvaluationCache getEvaluationCache() {
+        return evaluationCache;
+    }
+
+    /**
+     * @return the SAT encoding of the equations of this causal model; created upon the first call
+     */
+    synchronized PrecompiledSATEncoding getPrecompiledSATEncoding() {
+        if (this.precompiledSATEncoding == null) {
+            this.precompiledSATEncoding = new PrecompiledSATEncoding(this);
+        }
+        return precompiledSATEncoding;
+    }
+
+    /**
+     * @return the reachability index of the graph of this causal model; created upon the first call
+     */
+    synchronized ReachabilityIndex getReachabilityIndex() {
+        if (this.reachabilityIndex == null) {
+            this.reachabilityIndex = new ReachabilityIndex(this);
+        }
+        return reachabilityIndex;
+    }
+
+    /**
+     * Sets the reachability index if it has been created from another source than the equations, e.g. a file.
+     *
+     * @param reachabilityIndex the reachability index of this causal model
+     */
+    synchronized void setReachabilityIndex(ReachabilityIndex reachabilityIndex) {
+        this.reachabilityIndex = reachabilityIndex;
+    }
+
+    /**
+     * Returns a copy of this causal model with its own formula factory that is used exclusively by the caller until it
+     * is released via {@link #releaseThreadCopy(CausalModel)}. Released copies are reused, such that their encodings
+     * only have to be created once.
+     *
+     * @return a copy of this causal model
+     */
+    CausalModel acquireThreadCopy() {
+        CausalModel copy = threadCopies.poll();
+        return copy != null ? copy : copy(new FormulaFactory());
+    }
+
+    /**
+     * @param copy a copy obtained from {@link #acquireThreadCopy()} that is no longer used
+     */
+    void releaseThreadCopy(CausalModel copy) {
+        threadCopies.offer(copy);
+    }
+
+    /**
+     * @return the BDD of the equations of this causal model; compiled upon the first call
+     */
+    synchronized BDDEncoding getBDDEncoding() {
+        if (this.bddEncoding == null) {
+            this.bddEncoding = new BDDEncoding(this);
+        }
+        return bddEncoding;
+    }
+
     public String getName() {
         return name;
     }
@@ -322,13 +923,16 @@ public class CausalModel {
         return variableEquationMap;
     }
 
-    public Graph getGraph() {
+    public synchronized Graph getGraph() {
+        if (this.graph == null) {
+            this.graph = this.toGraph();
+        }
         return graph;
     }
 
-    public Graph getGraphReversed() {
+    public synchronized Graph getGraphReversed() {
         if (this.graphReversed == null) {
-            this.graphReversed = Util.reverseGraph(this.graph);
+            this.graphReversed = Util.reverseGraph(this.getGraph());
         }
         return graphReversed;
     }
@@ -340,4 +944,132 @@ public class CausalModel {
     public FormulaFactory getFormulaFactory() {
         return formulaFactory;
     }
+
+    /**
+     * Builder for causal models. The causal model is validated once {@link #build()} is called. A builder obtained
+     * from {@link #toBuilder()} records the changes to the original causal model, such that only these changes are
+     * validated and the topological order and the reachability index of the original causal model are patched rather
+     * than computed from scratch (see {@link CausalModelUpdater}).
+     */
+    public static class Builder {
+        private final String name;
+        private final FormulaFactory formulaFactory;
+        private final CausalModel original; // null if the causal model is built from scratch
+        private final Map<Variable, Equation> variableEquationMap = new HashMap<>();
+        private final Set<Variable> exogenousVariables = new HashSet<>();
+        private final Set<Variable> duplicateDefinitions = new HashSet<>();
+        private final Set<Variable> touchedEquations = new HashSet<>();
+        private final Set<Variable> touchedExogenousVariables = new HashSet<>();
+
+        private Builder(String name, FormulaFactory formulaFactory) {
+            this(name, formulaFactory, null);
+        }
+
+        private Builder(String name, FormulaFactory formulaFactory, CausalModel original) {
+            this.name = name;
+            this.formulaFactory = formulaFactory;
+            this.original = original;
+        }
+
+        /**
+         * Adds an equation for the given endogenous variable. Defining the same variable twice makes the causal model
+         * invalid; use {@link #replaceEquation(Variable, Formula)} to change an existing equation.
+         *
+         * @param variable the endogenous variable
+         * @param formula  the formula defining the variable
+         * @return this builder
+         */
+        public Builder addEquation(Variable variable, Formula formula) {
+            return addEquation(new Equation(variable, formula));
+        }
+
+        /**
+         * Same as {@link #addEquation(Variable, Formula)}.
+         *
+         * @param equation the equation
+         * @return this builder
+         */
+        public Builder addEquation(Equation equation) {
+            if (variableEquationMap.put(equation.getVariable(), equation.freeze()) != null) {
+                duplicateDefinitions.add(equation.getVariable());
+            }
+            touchedEquations.add(equation.getVariable());
+            return this;
+        }
+
+        /**
+         * Adds all the passed equations. See {@link #addEquation(Equation)}.
+         *
+         * @param equations the equations
+         * @return this builder
+         */
+        public Builder addEquations(Collection<Equation> equations) {
+            equations.forEach(this::addEquation);
+            return this;
+        }
+
+        /**
+         * Replaces the equation of the given variable or adds it, if there is no equation for the variable so far.
+         *
+         * @param variable the endogenous variable
+         * @param formula  the new formula defining the variable
+         * @return this builder
+         */
+        public Builder replaceEquation(Variable variable, Formula formula) {
+            variableEquationMap.put(variable, new Equation(variable, formula).freeze());
+            touchedEquations.add(variable);
+            return this;
+        }
+
+        /**
+         * Removes the equation of the given variable, if any.
+         *
+         * @param variable the endogenous variable
+         * @return this builder
+         */
+        public Builder removeEquation(Variable variable) {
+            variableEquationMap.remove(variable);
+            duplicateDefinitions.remove(variable);
+            touchedEquations.add(variable);
+            return this;
+        }
+
+        public Builder addExogenousVariable(Variable variable) {
+            exogenousVariables.add(variable);
+            touchedExogenousVariables.add(variable);
+            return this;
+        }
+
+        public Builder addExogenousVariables(Collection<Variable> variables) {
+            variables.forEach(this::addExogenousVariable);
+            return this;
+        }
+
+        public Builder removeExogenousVariable(Variable variable) {
+            exogenousVariables.remove(variable);
+            touchedExogenousVariables.add(variable);
+            return this;
+        }
+
+        /**
+         * Creates the causal model. The builder can be reused afterwards; the created causal model is not affected by
+         * later changes to the builder. If the builder has been obtained from {@link #toBuilder()}, the effort is
+         * proportional to the changes rather than to the size of the causal model, except for copying the equations.
+         *
+         * @return the causal model
+         * @throws InvalidCausalModelException thrown if the causal model is not valid; see
+         *                                     {@link CausalModel#CausalModel(String, Set, Set, FormulaFactory)}
+         */
+        public CausalModel build() throws InvalidCausalModelException {
+            if (!duplicateDefinitions.isEmpty()) {
+                throw new InvalidCausalModelException();
+            }
+            if (original != null) {
+                return CausalModelUpdater.update(original, name, new HashMap<>(variableEquationMap),
+                        new HashSet<>(exogenousVariables), touchedEquations, touchedExogenousVariables);
+            }
+            return new CausalModel(name, new HashSet<>(variableEquationMap.values()), exogenousVariables,
+                    formulaFactory);
+        }
+    }
 }
@@ -0,0 +1,294 @@
+package de.tum.in.i4.hp2sat.causality;
+
+import org.logicng.formulas.FType;
+import org.logicng.formulas.Formula;
+import org.logicng.formulas.FormulaFactory;
+import org.logicng.formulas.Literal;
+import org.logicng.formulas.Variable;
+import org.logicng.util.Pair;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Reads and writes causal models in a compact binary format. A file contains a validated and topologically sorted
+ * causal model; hence, loading it skips the validity check and the topological sort. Files are read via
+ * {@link FileChannel#map}, i.e. several processes that load the same file share the page cache.
+ * <p>
+ * All numbers are big-endian. A file consists of
+ * <ol>
+ * <li>the magic number {@link #MAGIC} and the format version {@link #VERSION},</li>
+ * <li>the name of the causal model,</li>
+ * <li>the variable table: the number of variables n, the number of exogenous variables and the names of all
+ * variables ordered by their ids (see {@link CausalModel#getVariableId(Variable)}), i.e. the exogenous variables first
+ * and then the endogenous ones in topological order,</li>
+ * <li>the graph as compressed sparse rows: n + 1 offsets followed by the ids of the variables referred to by the
+ * equation of each variable,</li>
+ * <li>for each endogenous variable, the number of opcodes of its formula followed by the opcodes in postfix order,
+ * and</li>
+ * <li>the CRC-32 checksum of all preceding bytes.</li>
+ * </ol>
+ * Strings are stored as their number of UTF-8 bytes followed by these bytes.
+ */
+public class CausalModelFile {
+    static final int MAGIC = 0x48503253; // "HP2S"
+    static final int VERSION = 1;
+
+    // opcodes of formulas; literals and n-ary operators are followed by a variable id and an arity, respectively
+    private static final int OP_TRUE = 0;
+    private static final int OP_FALSE = 1;
+    private static final int OP_POSITIVE_LITERAL = 2;
+    private static final int OP_NEGATIVE_LITERAL = 3;
+    private static final int OP_NOT = 4;
+    private static final int OP_AND = 5;
+    private static final int OP_OR = 6;
+    private static final int OP_IMPLICATION = 7;
+    private static final int OP_EQUIVALENCE = 8;
+
+    private CausalModelFile() {
+    }
+
+    /**
+     * Writes the given causal model to the given file. An existing file is overwritten.
+     *
+     * @param causalModel the causal model
+     * @param path        the file
+     * @throws IOException              thrown if the file cannot be written
+     * @throws IllegalArgumentException thrown if a formula contains pseudo-Boolean constraints, which are not supported
+     */
+    public static void write(CausalModel causalModel, Path path) throws IOException {
+        List<Variable> variables = causalModel.getVariables();
+        CRC32 crc32 = new CRC32();
+        try (OutputStream outputStream = Files.newOutputStream(path)) {
+            DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                    new BufferedOutputStream(outputStream, 1 << 16), crc32));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeString(out, causalModel.getName() == null ? "" : causalModel.getName());
+            out.writeInt(variables.size());
+            out.writeInt(causalModel.getExogenousVariables().size());
+            for (Variable variable : variables) {
+                writeString(out, variable.name());
+            }
+            Pair<int[], int[]> inputs = causalModel.getReachabilityIndex().getInputs();
+            for (int offset : inputs.first()) {
+                out.writeInt(offset);
+            }
+            for (int input : inputs.second()) {
+                out.writeInt(input);
+            }
+            List<Integer> opcodes = new ArrayList<>();
+            for (Equation equation : causalModel.getEquationsSorted()) {
+                opcodes.clear();
+                toOpcodes(equation.getFormula(), causalModel, opcodes);
+                out.writeInt(opcodes.size());
+                for (int opcode : opcodes) {
+                    out.writeInt(opcode);
+                }
+            }
+            out.flush();
+            // the checksum itself is not part of the checksum
+            new DataOutputStream(outputStream).writeLong(crc32.getValue());
+        }
+    }
+
+    /**
+     * Loads a causal model written by {@link #write(CausalModel, Path)}. The causal model is neither validated nor
+     * sorted again; only the checksum of the file is verified.
+     *
+     * @param path           the file
+     * @param formulaFactory the formula factory used for all formulas of the causal model
+     * @return the causal model
+     * @throws IOException thrown if the file cannot be read or is not a valid causal model file
+     */
+    public static CausalModel read(Path path, FormulaFactory formulaFactory) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // a single buffer cannot map more than 2 GB
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Causal model file larger than 2 GB: " + path);
+            }
+            // the mapping remains valid after the channel has been closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        try {
+            if (buffer.limit() < 8 + Long.BYTES || buffer.getInt() != MAGIC) {
+                throw new IOException("Not a causal model file: " + path);
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported version " + version + " of causal model file: " + path);
+            }
+            verifyChecksum(buffer, path);
+
+            String name = readString(buffer);
+            int n = buffer.getInt();
+            int exogenousCount = buffer.getInt();
+            List<Variable> variables = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                variables.add(formulaFactory.variable(readString(buffer)));
+            }
+            int[] inputOffsets = new int[n + 1];
+            buffer.asIntBuffer().get(inputOffsets);
+            // the casts to Buffer keep the class compatible with Java 8 if it is compiled by a newer JDK
+            ((Buffer) buffer).position(buffer.position() + Integer.BYTES * (n + 1));
+            int[] inputs = new int[inputOffsets[n]];
+            buffer.asIntBuffer().get(inputs);
+            ((Buffer) buffer).position(buffer.position() + Integer.BYTES * inputs.length);
+
+            List<Equation> equationsSorted = new ArrayList<>(n - exogenousCount);
+            int[] opcodes = new int[0];
+            for (int i = exogenousCount; i < n; i++) {
+                int length = buffer.getInt();
+                if (opcodes.length < length) {
+                    opcodes = new int[Math.max(length, 2 * opcodes.length)];
+                }
+                buffer.asIntBuffer().get(opcodes, 0, length);
+                ((Buffer) buffer).position(buffer.position() + Integer.BYTES * length);
+                equationsSorted.add(new Equation(variables.get(i),
+                        fromOpcodes(opcodes, length, variables, formulaFactory)));
+            }
+            CausalModel causalModel = new CausalModel(name, variables.subList(0, exogenousCount), equationsSorted,
+                    formulaFactory);
+            causalModel.setReachabilityIndex(new ReachabilityIndex(causalModel, ReachabilityIndex.CLOSURE_LIMIT,
+                    new Pair<>(inputOffsets, inputs)));
+            return causalModel;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Corrupt causal model file: " + path, e);
+        }
+    }
+
+    private static void verifyChecksum(ByteBuffer buffer, Path path) throws IOException {
+        int end = buffer.limit() - Long.BYTES;
+        ByteBuffer content = buffer.duplicate();
+        ((Buffer) content).position(0).limit(end);
+        CRC32 crc32 = new CRC32();
+        crc32.update(content);
+        if (crc32.getValue() != buffer.getLong(end)) {
+            throw new IOException("Checksum mismatch in causal model file: " + path);
+        }
+    }
+
+    /**
+     * Appends the opcodes of the given formula in postfix order.
+     *
+     * @param formula     the formula
+     * @param causalModel the causal model whose variable ids are used
+     * @param opcodes     the list the opcodes are appended to
+     */
+    private static void toOpcodes(Formula formula, CausalModel causalModel, List<Integer> opcodes) {
+        switch (formula.type()) {
+            case TRUE:
+                opcodes.add(OP_TRUE);
+                break;
+            case FALSE:
+                opcodes.add(OP_FALSE);
+                break;
+            case LITERAL:
+                Literal literal = (Literal) formula;
+                opcodes.add(literal.phase() ? OP_POSITIVE_LITERAL : OP_NEGATIVE_LITERAL);
+                opcodes.add(causalModel.getVariableId(literal.variable()));
+                break;
+            case NOT:
+            case AND:
+            case OR:
+            case IMPL:
+            case EQUIV:
+                int arity = 0;
+                for (Formula operand : formula) {
+                    toOpcodes(operand, causalModel, opcodes);
+                    arity++;
+                }
+                if (formula.type() == FType.NOT) {
+                    opcodes.add(OP_NOT);
+                } else if (formula.type() == FType.IMPL) {
+                    opcodes.add(OP_IMPLICATION);
+                } else if (formula.type() == FType.EQUIV) {
+                    opcodes.add(OP_EQUIVALENCE);
+                } else {
+                    opcodes.add(formula.type() == FType.AND ? OP_AND : OP_OR);
+                    opcodes.add(arity);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported formula type " + formula.type() + ": " + formula);
+        }
+    }
+
+    private static Formula fromOpcodes(int[] opcodes, int length, List<Variable> variables,
+                                       FormulaFactory formulaFactory) throws IOException {
+        Formula[] stack = new Formula[length];
+        int size = 0;
+        for (int i = 0; i < length; i++) {
+            switch (opcodes[i]) {
+                case OP_TRUE:
+                    stack[size++] = formulaFactory.verum();
+                    break;
+                case OP_FALSE:
+                    stack[size++] = formulaFactory.falsum();
+                    break;
+                case OP_POSITIVE_LITERAL:
+                    stack[size++] = variables.get(opcodes[++i]);
+                    break;
+                case OP_NEGATIVE_LITERAL:
+                    stack[size++] = variables.get(opcodes[++i]).negate();
+                    break;
+                case OP_NOT:
+                    stack[size - 1] = formulaFactory.not(stack[size - 1]);
+                    break;
+                case OP_IMPLICATION:
+                    size--;
+                    stack[size - 1] = formulaFactory.implication(stack[size - 1], stack[size]);
+                    break;
+                case OP_EQUIVALENCE:
+                    size--;
+                    stack[size - 1] = formulaFactory.equivalence(stack[size - 1], stack[size]);
+                    break;
+                case OP_AND:
+                case OP_OR:
+                    int arity = opcodes[i + 1];
+                    List<Formula> operands = Arrays.asList(stack).subList(size - arity, size);
+                    Formula formula = opcodes[i] == OP_AND ? formulaFactory.and(operands)
+                            : formulaFactory.or(operands);
+                    size -= arity;
+                    stack[size++] = formula;
+                    i++;
+                    break;
+                default:
+                    throw new IOException("Unknown opcode " + opcodes[i]);
+            }
+        }
+        if (size != 1) {
+            throw new IOException("Invalid formula");
+        }
+        return stack[0];
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
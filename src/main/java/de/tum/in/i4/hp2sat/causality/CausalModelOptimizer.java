@@ -0,0 +1,108 @@
+package de.tum.in.i4.hp2sat.causality;
+
+import de.tum.in.i4.hp2sat.exceptions.InvalidCausalModelException;
+import org.logicng.formulas.FType;
+import org.logicng.formulas.Formula;
+import org.logicng.formulas.FormulaFactory;
+import org.logicng.formulas.Literal;
+import org.logicng.formulas.Variable;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Collapses chains of buffers (B = A) and inverters (B = not A) in a causal model. A variable A is inlined into its
+ * reader B, i.e. B = F_A or B = not F_A, if
+ * <ul>
+ * <li>B is the only variable whose equation refers to A,</li>
+ * <li>the equation of B is A or not A, and</li>
+ * <li>A is neither part of the cause nor of phi.</li>
+ * </ul>
+ * Under these conditions, keeping A at its original value has the same effect as keeping B at its original value,
+ * and intervening on A only affects phi via B. Therefore, the ACs and the size of a minimal W are the same in the
+ * collapsed model. As only variables that are not part of the cause or phi are removed, causes and W are always
+ * expressed in terms of the variables of the original model; a W that contained A in the original model contains B
+ * instead. The removed variables and the literals that take over their values are returned along with the collapsed
+ * model, such that W can be translated back, see {@link CollapsedCausalModel#translateW(Set)}.
+ * <p>
+ * Merging variables with structurally identical equations is not done, as interventions can set them to different
+ * values. Identical sub-formulas are already shared by the {@link FormulaFactory}.
+ */
+class CausalModelOptimizer {
+    private final CausalModel causalModel;
+
+    /**
+     * @param causalModel the causal model to be optimized
+     */
+    CausalModelOptimizer(CausalModel causalModel) {
+        this.causalModel = causalModel;
+    }
+
+    /**
+     * Creates the collapsed causal model for the given phi and cause.
+     *
+     * @param phi   the phi
+     * @param cause the cause
+     * @return the collapsed causal model and the removed variables
+     * @throws InvalidCausalModelException thrown if the collapsed causal model is invalid
+     */
+    CollapsedCausalModel collapseChains(Formula phi, Set<Literal> cause) throws InvalidCausalModelException {
+        FormulaFactory f = causalModel.getFormulaFactory();
+        Set<Variable> protectedVariables = cause.stream().map(Literal::variable).collect(Collectors.toSet());
+        protectedVariables.addAll(phi.variables());
+
+        Map<Variable, Formula> formulas = new LinkedHashMap<>();
+        Map<Variable, Set<Variable>> readers = new HashMap<>();
+        for (Equation equation : causalModel.getEquationsSorted()) {
+            formulas.put(equation.getVariable(), equation.getFormula());
+            for (Variable variable : equation.getFormula().variables()) {
+                readers.computeIfAbsent(variable, v -> new HashSet<>()).add(equation.getVariable());
+            }
+        }
+
+        Map<Variable, Literal> collapsedVariables = new LinkedHashMap<>();
+        // in topological order, such that a chain collapses into its last variable
+        for (Equation equation : causalModel.getEquationsSorted()) {
+            Variable variable = equation.getVariable();
+            Set<Variable> variableReaders = readers.getOrDefault(variable, new HashSet<>());
+            if (protectedVariables.contains(variable) || variableReaders.size() != 1) {
+                continue;
+            }
+            Variable reader = variableReaders.iterator().next();
+            Formula readerFormula = formulas.get(reader);
+            if (readerFormula.type() != FType.LITERAL) {
+                continue;
+            }
+            Formula formula = formulas.remove(variable);
+            boolean phase = ((Literal) readerFormula).phase();
+            formulas.put(reader, phase ? formula : f.not(formula));
+            // the variables read by the removed variable are now read by its reader
+            for (Variable v : formula.variables()) {
+                Set<Variable> vReaders = readers.get(v);
+                vReaders.remove(variable);
+                vReaders.add(reader);
+            }
+            readers.remove(variable);
+            collapsedVariables.put(variable, phase ? reader : reader.negate());
+        }
+        // a variable collapsed into a variable that was collapsed itself is represented by the last one of the chain
+        for (Map.Entry<Variable, Literal> entry : collapsedVariables.entrySet()) {
+            Literal representative = entry.getValue();
+            while (collapsedVariables.containsKey(representative.variable())) {
+                Literal next = collapsedVariables.get(representative.variable());
+                representative = representative.phase() ? next : next.negate();
+            }
+            entry.setValue(representative);
+        }
+
+        Set<Equation> equations = formulas.entrySet().stream().map(e -> new Equation(e.getKey(), e.getValue()))
+                .collect(Collectors.toSet());
+        CausalModel causalModelCollapsed = new CausalModel(causalModel.getName() + "_collapsed", equations,
+                causalModel.getExogenousVariables(), f);
+        return new CollapsedCausalModel(causalModelCollapsed, collapsedVariables);
+    }
+}
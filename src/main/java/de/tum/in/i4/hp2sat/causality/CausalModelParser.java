@@ -0,0 +1,391 @@
+package de.tum.in.i4.hp2sat.causality;
+
+import de.tum.in.i4.hp2sat.exceptions.InvalidCausalModelException;
+import org.logicng.formulas.Formula;
+import org.logicng.formulas.FormulaFactory;
+import org.logicng.formulas.Variable;
+import org.logicng.util.Pair;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parses causal models from text with one equation per line, e.g.
+ * <pre>
+ * # rock throwing
+ * BT = BT_exo
+ * ST = ST_exo
+ * SH = ST
+ * BH = BT &amp; ~SH
+ * BS = SH | BH
+ * </pre>
+ * Formulas use the syntax of LogicNG, i.e. the same syntax as {@link Equation#toString()}: {@code ~} (not), {@code &}
+ * (and), {@code |} (or), {@code =>} (implication), {@code <=>} (equivalence), {@code $true}, {@code $false} and
+ * parentheses, in descending order of precedence. Variable names start with a letter, a digit, {@code _} or
+ * {@code @}, followed by letters, digits, {@code _} or {@code #}. Everything after a {@code #} that does not belong to
+ * a name is a comment. Each variable that is not defined by an equation is exogenous.
+ * <p>
+ * The input is read line by line, i.e. only the current line is held in memory besides the causal model itself.
+ * Variable names are interned into dense ids as they occur and the equations are sorted topologically on these ids;
+ * hence, the causal model is created without the validity check and the topological sort of
+ * {@link CausalModel#CausalModel(String, java.util.Set, java.util.Set, FormulaFactory)}, and its reachability index is
+ * taken from the parsed edges. Errors are reported with the line in which they occur.
+ */
+public class CausalModelParser {
+    private final FormulaFactory formulaFactory;
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<Variable> variables = new ArrayList<>();
+    // the equations in the order of the lines; the inputs of equation e are inputs[inputOffsets[e]] to
+    // inputs[inputOffsets[e+1]-1]
+    private final List<Formula> formulas = new ArrayList<>();
+    private int[] equationVariables = new int[16];
+    private int[] equationLines = new int[16];
+    private int[] inputOffsets = new int[17];
+    private int[] inputs = new int[16];
+    private int[] definitions = new int[16]; // the equation of each variable; -1 if exogenous
+    private int[] seen = new int[16]; // the last equation in which each variable occurred, plus 1
+
+    // state of the line that is currently parsed
+    private String line;
+    private int lineNumber;
+    private int position;
+
+    private CausalModelParser(FormulaFactory formulaFactory) {
+        this.formulaFactory = formulaFactory;
+    }
+
+    /**
+     * Parses the causal model in the given UTF-8 encoded file. The file name is used as name of the causal model.
+     *
+     * @param path           the file
+     * @param formulaFactory the formula factory used for all formulas of the causal model
+     * @return the causal model
+     * @throws IOException                 thrown if the file cannot be read
+     * @throws InvalidCausalModelException thrown if a line cannot be parsed, a variable is defined twice, the
+     *                                     equations are cyclic or a variable is called like
+     *                                     {@link SATCausalitySolver#DUMMY_VAR_NAME}
+     */
+    public static CausalModel parse(Path path, FormulaFactory formulaFactory)
+            throws IOException, InvalidCausalModelException {
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return parse(path.getFileName().toString(), reader, formulaFactory);
+        }
+    }
+
+    /**
+     * Parses the causal model from the given reader. The reader is not closed.
+     *
+     * @param name           name of the causal model
+     * @param reader         the reader
+     * @param formulaFactory the formula factory used for all formulas of the causal model
+     * @return the causal model
+     * @throws IOException                 thrown if the reader fails
+     * @throws InvalidCausalModelException thrown if a line cannot be parsed, a variable is defined twice, the
+     *                                     equations are cyclic or a variable is called like
+     *                                     {@link SATCausalitySolver#DUMMY_VAR_NAME}
+     */
+    public static CausalModel parse(String name, Reader reader, FormulaFactory formulaFactory)
+            throws IOException, InvalidCausalModelException {
+        CausalModelParser parser = new CausalModelParser(formulaFactory);
+        BufferedReader bufferedReader = reader instanceof BufferedReader ? (BufferedReader) reader
+                : new BufferedReader(reader, 1 << 16);
+        String line;
+        while ((line = bufferedReader.readLine()) != null) {
+            parser.parseLine(line);
+        }
+        return parser.createCausalModel(name);
+    }
+
+    private void parseLine(String line) throws InvalidCausalModelException {
+        this.line = line;
+        this.lineNumber++;
+        this.position = 0;
+        if (isAtEnd()) {
+            return;
+        }
+        int equation = formulas.size();
+        int start = position;
+        int variable = parseName();
+        if (definitions[variable] >= 0) {
+            position = start;
+            throw error("Variable " + variables.get(variable) + " is already defined in line "
+                    + equationLines[definitions[variable]]);
+        }
+        if (isAtEnd() || line.charAt(position) != '=' || line.startsWith("=>", position)) {
+            throw error("Expected '='");
+        }
+        position++;
+        ensureEquationCapacity(equation + 1);
+        inputOffsets[equation + 1] = inputOffsets[equation];
+        Formula formula = parseEquivalence();
+        if (!isAtEnd()) {
+            throw error("Unexpected '" + line.charAt(position) + "'");
+        }
+        definitions[variable] = equation;
+        equationVariables[equation] = variable;
+        equationLines[equation] = lineNumber;
+        formulas.add(formula);
+    }
+
+    private Formula parseEquivalence() throws InvalidCausalModelException {
+        Formula left = parseImplication();
+        if (consume("<=>")) {
+            return formulaFactory.equivalence(left, parseEquivalence());
+        }
+        return left;
+    }
+
+    private Formula parseImplication() throws InvalidCausalModelException {
+        Formula left = parseDisjunction();
+        if (consume("=>")) {
+            return formulaFactory.implication(left, parseImplication());
+        }
+        return left;
+    }
+
+    private Formula parseDisjunction() throws InvalidCausalModelException {
+        Formula first = parseConjunction();
+        if (isAtEnd() || line.charAt(position) != '|') {
+            return first;
+        }
+        List<Formula> operands = new ArrayList<>();
+        operands.add(first);
+        while (consume("|")) {
+            operands.add(parseConjunction());
+        }
+        return formulaFactory.or(operands);
+    }
+
+    private Formula parseConjunction() throws InvalidCausalModelException {
+        Formula first = parseNegation();
+        if (isAtEnd() || line.charAt(position) != '&') {
+            return first;
+        }
+        List<Formula> operands = new ArrayList<>();
+        operands.add(first);
+        while (consume("&")) {
+            operands.add(parseNegation());
+        }
+        return formulaFactory.and(operands);
+    }
+
+    private Formula parseNegation() throws InvalidCausalModelException {
+        if (consume("~")) {
+            return formulaFactory.not(parseNegation());
+        }
+        return parseAtom();
+    }
+
+    private Formula parseAtom() throws InvalidCausalModelException {
+        if (consume("(")) {
+            Formula formula = parseEquivalence();
+            if (!consume(")")) {
+                throw error("Expected ')'");
+            }
+            return formula;
+        }
+        if (consume("$true")) {
+            return formulaFactory.verum();
+        }
+        if (consume("$false")) {
+            return formulaFactory.falsum();
+        }
+        int variable = parseName();
+        int equation = formulas.size();
+        // each variable is an input of the equation only once
+        if (seen[variable] != equation + 1) {
+            seen[variable] = equation + 1;
+            int edge = inputOffsets[equation + 1]++;
+            if (edge == inputs.length) {
+                inputs = Arrays.copyOf(inputs, 2 * inputs.length);
+            }
+            inputs[edge] = variable;
+        }
+        return variables.get(variable);
+    }
+
+    /**
+     * Parses a variable name and interns it.
+     *
+     * @return the id of the variable
+     * @throws InvalidCausalModelException thrown if there is no name at the current position
+     */
+    private int parseName() throws InvalidCausalModelException {
+        if (isAtEnd() || !isNameStart(line.charAt(position))) {
+            throw error(isAtEnd() ? "Unexpected end of line" : "Unexpected '" + line.charAt(position) + "'");
+        }
+        int start = position;
+        do {
+            position++;
+        } while (position < line.length() && isNamePart(line.charAt(position)));
+        String name = line.substring(start, position);
+        Integer id = ids.get(name);
+        if (id == null) {
+            if (name.equals(SATCausalitySolver.DUMMY_VAR_NAME)) {
+                position = start;
+                throw error("Variable name " + name + " is reserved");
+            }
+            id = variables.size();
+            ids.put(name, id);
+            variables.add(formulaFactory.variable(name));
+            if (id == definitions.length) {
+                definitions = Arrays.copyOf(definitions, 2 * id);
+                seen = Arrays.copyOf(seen, 2 * id);
+            }
+            definitions[id] = -1;
+            seen[id] = 0;
+        }
+        return id;
+    }
+
+    private static boolean isNameStart(char c) {
+        return c < 128 && (Character.isLetterOrDigit(c) || c == '_' || c == '@');
+    }
+
+    private static boolean isNamePart(char c) {
+        return c < 128 && (Character.isLetterOrDigit(c) || c == '_' || c == '#');
+    }
+
+    /**
+     * Skips whitespace and consumes the given token if it is next.
+     *
+     * @param token the token
+     * @return true if the token has been consumed
+     */
+    private boolean consume(String token) {
+        if (!isAtEnd() && line.startsWith(token, position)) {
+            position += token.length();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Skips whitespace.
+     *
+     * @return true if the rest of the line is empty or a comment
+     */
+    private boolean isAtEnd() {
+        while (position < line.length() && Character.isWhitespace(line.charAt(position))) {
+            position++;
+        }
+        return position == line.length() || line.charAt(position) == '#';
+    }
+
+    private InvalidCausalModelException error(String message) {
+        return new InvalidCausalModelException("Line " + lineNumber + ", column " + (position + 1) + ": " + message);
+    }
+
+    private void ensureEquationCapacity(int size) {
+        if (size > equationVariables.length) {
+            equationVariables = Arrays.copyOf(equationVariables, 2 * size);
+            equationLines = Arrays.copyOf(equationLines, 2 * size);
+            inputOffsets = Arrays.copyOf(inputOffsets, 2 * size + 1);
+        }
+    }
+
+    /**
+     * Sorts the equations topologically by Kahn's algorithm and creates the causal model.
+     *
+     * @param name name of the causal model
+     * @return the causal model
+     * @throws InvalidCausalModelException thrown if the equations are cyclic
+     */
+    private CausalModel createCausalModel(String name) throws InvalidCausalModelException {
+        int n = variables.size();
+        int m = formulas.size();
+        // the equations that read each variable
+        int[] readerOffsets = new int[n + 1];
+        for (int edge = 0; edge < inputOffsets[m]; edge++) {
+            readerOffsets[inputs[edge] + 1]++;
+        }
+        for (int i = 0; i < n; i++) {
+            readerOffsets[i + 1] += readerOffsets[i];
+        }
+        int[] readers = new int[inputOffsets[m]];
+        int[] nextReader = Arrays.copyOf(readerOffsets, n);
+        int[] inDegrees = new int[m];
+        for (int e = 0; e < m; e++) {
+            for (int edge = inputOffsets[e]; edge < inputOffsets[e + 1]; edge++) {
+                readers[nextReader[inputs[edge]]++] = e;
+                if (definitions[inputs[edge]] >= 0) {
+                    inDegrees[e]++;
+                }
+            }
+        }
+        int[] order = new int[m];
+        int size = 0;
+        for (int e = 0; e < m; e++) {
+            if (inDegrees[e] == 0) {
+                order[size++] = e;
+            }
+        }
+        for (int k = 0; k < size; k++) {
+            int variable = equationVariables[order[k]];
+            for (int j = readerOffsets[variable]; j < readerOffsets[variable + 1]; j++) {
+                if (--inDegrees[readers[j]] == 0) {
+                    order[size++] = readers[j];
+                }
+            }
+        }
+        if (size < m) {
+            // each unsorted equation has an unsorted input; following them for m steps ends on a cycle
+            int e = 0;
+            while (inDegrees[e] == 0) {
+                e++;
+            }
+            for (int k = 0; k < m; k++) {
+                int edge = inputOffsets[e];
+                while (definitions[inputs[edge]] < 0 || inDegrees[definitions[inputs[edge]]] == 0) {
+                    edge++;
+                }
+                e = definitions[inputs[edge]];
+            }
+            throw new InvalidCausalModelException("Line " + equationLines[e] + ": variable "
+                    + variables.get(equationVariables[e]) + " is part of a cyclic dependency");
+        }
+
+        List<Variable> exogenousVariables = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            if (definitions[i] < 0) {
+                exogenousVariables.add(variables.get(i));
+            }
+        }
+        List<Equation> equationsSorted = new ArrayList<>(m);
+        for (int e : order) {
+            equationsSorted.add(new Equation(variables.get(equationVariables[e]), formulas.get(e)));
+        }
+        CausalModel causalModel = new CausalModel(name, exogenousVariables, equationsSorted, formulaFactory);
+
+        // translate the parsed edges to the ids of the causal model
+        int[] modelIds = new int[n];
+        int[] parsedIds = new int[n];
+        for (int i = 0; i < n; i++) {
+            modelIds[i] = causalModel.getVariableId(variables.get(i));
+            parsedIds[modelIds[i]] = i;
+        }
+        int[] modelInputOffsets = new int[n + 1];
+        int[] modelInputs = new int[inputOffsets[m]];
+        for (int i = 0; i < n; i++) {
+            int e = definitions[parsedIds[i]];
+            modelInputOffsets[i + 1] = modelInputOffsets[i];
+            if (e >= 0) {
+                for (int edge = inputOffsets[e]; edge < inputOffsets[e + 1]; edge++) {
+                    modelInputs[modelInputOffsets[i + 1]++] = modelIds[inputs[edge]];
+                }
+            }
+        }
+        causalModel.setReachabilityIndex(new ReachabilityIndex(causalModel, ReachabilityIndex.CLOSURE_LIMIT,
+                new Pair<>(modelInputOffsets, modelInputs)));
+        return causalModel;
+    }
+}
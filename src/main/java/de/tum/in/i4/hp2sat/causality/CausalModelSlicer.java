@@ -0,0 +1,69 @@
+package de.tum.in.i4.hp2sat.causality;
+
+import de.tum.in.i4.hp2sat.exceptions.InvalidCausalModelException;
+import org.logicng.datastructures.Assignment;
+import org.logicng.formulas.Formula;
+import org.logicng.formulas.FormulaFactory;
+import org.logicng.formulas.Literal;
+import org.logicng.formulas.Variable;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Reduces a causal model to the part that is relevant for a single causality check, i.e. for a fixed context, phi and
+ * cause. The interventions of a check only set the cause to its negated value and the variables in W to their
+ * original value. Hence,
+ * <ul>
+ * <li>each variable outside the forward cone of the cause keeps its original value under all interventions and can
+ * be replaced by this value (constant propagation), and</li>
+ * <li>each variable outside the backward cone of phi and the cause can neither influence phi nor the cause and can be
+ * removed.</li>
+ * </ul>
+ * The sliced model yields the same AC1-AC3 and the same size of a minimal W as the original model. Strategies that do
+ * not minimize W might return a smaller W, as removed variables never appear in W.
+ */
+class CausalModelSlicer {
+    /**
+     * Creates the sliced causal model. Assumes that the context, phi and the cause are valid for the causal model.
+     *
+     * @param causalModel the causal model
+     * @param context     the context
+     * @param phi         the phi
+     * @param cause       the cause
+     * @return the sliced causal model
+     * @throws InvalidCausalModelException thrown if the sliced causal model is invalid
+     */
+    static CausalModel slice(CausalModel causalModel, Set<Literal> context, Formula phi, Set<Literal> cause)
+            throws InvalidCausalModelException {
+        FormulaFactory f = causalModel.getFormulaFactory();
+        List<Equation> equationsSorted = causalModel.getEquationsSorted();
+        Set<Variable> causeVariables = cause.stream().map(Literal::variable).collect(Collectors.toSet());
+
+        ReachabilityIndex reachabilityIndex = causalModel.getReachabilityIndex();
+        Set<Variable> forwardCone = reachabilityIndex.toVariables(reachabilityIndex.getForwardCone(causeVariables));
+        Set<Variable> backwardConeSources = new HashSet<>(phi.variables());
+        backwardConeSources.addAll(causeVariables);
+        Set<Variable> backwardCone = reachabilityIndex.toVariables(
+                reachabilityIndex.getBackwardCone(backwardConeSources));
+
+        // all variables outside the forward cone of the cause are constant
+        Set<Literal> evaluation = causalModel.getEvaluationCache().evaluate(context);
+        Assignment constants = new Assignment(evaluation.stream()
+                .filter(l -> !forwardCone.contains(l.variable())).collect(Collectors.toSet()));
+        Set<Equation> equations = new HashSet<>();
+        for (Equation equation : equationsSorted) {
+            Variable variable = equation.getVariable();
+            if (forwardCone.contains(variable) && backwardCone.contains(variable)) {
+                equations.add(new Equation(variable, equation.getFormula().restrict(constants)));
+            } else if (phi.variables().contains(variable)) {
+                // keep the variables of phi such that phi remains valid for the sliced model
+                equations.add(new Equation(variable, constants.evaluateLit(variable) ? f.verum() : f.falsum()));
+            }
+        }
+        return new CausalModel(causalModel.getName() + "_sliced", equations, causalModel.getExogenousVariables(),
+                f);
+    }
+}
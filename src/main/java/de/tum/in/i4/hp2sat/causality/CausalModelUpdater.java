@@ -0,0 +1,314 @@
+package de.tum.in.i4.hp2sat.causality;
+
+import de.tum.in.i4.hp2sat.exceptions.InvalidCausalModelException;
+import org.logicng.formulas.Variable;
+import org.logicng.util.Pair;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Derives a causal model from another one that differs in a few equations or exogenous variables, without validating,
+ * sorting and indexing the derived causal model from scratch. Only the changed equations are validated: their
+ * variables must be defined, and variables that are no longer defined must not be referred to by unchanged equations.
+ * <p>
+ * Acyclicity is checked while maintaining the topological order of the original causal model by the dynamic
+ * topological sort of Pearce and Kelly: the edges of the changed equations are inserted one by one, and if an edge
+ * X -&gt; Y contradicts the current order, only the variables between Y and X are searched and reordered. Hence, the
+ * derived causal model has the same order as the original one except for the affected region, and a new edge that
+ * closes a cycle is detected without traversing the rest of the graph. The edges of the unchanged equations are taken
+ * from the reachability index of the original causal model, whose formulas are not traversed again.
+ * <p>
+ * The derived causal model obtains the reachability index of the patched edges. All other derived structures, i.e. the
+ * graph, the encodings and the cached evaluations, are created again upon their first use.
+ */
+class CausalModelUpdater {
+    private final CausalModel causalModel;
+    private final List<Variable> variables; // the variables of the original causal model followed by the added ones
+    private final Map<Variable, Integer> addedIds = new HashMap<>();
+    private final int[] inputOffsets; // of the original causal model
+    private final int[] inputs;
+    private final int[] readerOffsets;
+    private final int[] readers;
+    private final int[] order; // the position of each variable in the topological order
+    private final BitSet changed = new BitSet(); // variables whose edges are in the overlays rather than in the index
+    private final Map<Integer, List<Integer>> changedInputs = new HashMap<>();
+    private final Map<Integer, List<Integer>> addedReaders = new HashMap<>();
+    private final BitSet visited = new BitSet();
+
+    private CausalModelUpdater(CausalModel causalModel, List<Variable> addedExogenousVariables,
+                               List<Variable> addedEndogenousVariables) {
+        this.causalModel = causalModel;
+        int n = causalModel.getVariables().size();
+        this.variables = new ArrayList<>(n + addedExogenousVariables.size() + addedEndogenousVariables.size());
+        this.variables.addAll(causalModel.getVariables());
+        this.variables.addAll(addedExogenousVariables);
+        this.variables.addAll(addedEndogenousVariables);
+        for (int id = n; id < variables.size(); id++) {
+            addedIds.put(variables.get(id), id);
+        }
+        ReachabilityIndex reachabilityIndex = causalModel.getReachabilityIndex();
+        this.inputOffsets = reachabilityIndex.getInputs().first();
+        this.inputs = reachabilityIndex.getInputs().second();
+        this.readerOffsets = reachabilityIndex.getReaders().first();
+        this.readers = reachabilityIndex.getReaders().second();
+        // added exogenous variables come first, added endogenous ones last; both have no edges yet
+        int k = addedExogenousVariables.size();
+        this.order = new int[variables.size()];
+        for (int id = 0; id < n; id++) {
+            order[id] = id + k;
+        }
+        for (int i = 0; i < k; i++) {
+            order[n + i] = i;
+        }
+        for (int id = n + k; id < variables.size(); id++) {
+            order[id] = id;
+        }
+    }
+
+    /**
+     * Creates the causal model that results from the given one by the given changes.
+     *
+     * @param causalModel               the original causal model
+     * @param name                      the name of the derived causal model
+     * @param equations                 the equations of the derived causal model
+     * @param exogenousVariables        the exogenous variables of the derived causal model
+     * @param touchedEquations          the variables whose equations might differ from the original causal model
+     * @param touchedExogenousVariables the exogenous variables that might have been added or removed
+     * @return the derived causal model
+     * @throws InvalidCausalModelException thrown if the derived causal model is invalid; see
+     *                                     {@link CausalModel#CausalModel(String, Set, Set,
+     *                                     org.logicng.formulas.FormulaFactory)}
+     */
+    static CausalModel update(CausalModel causalModel, String name, Map<Variable, Equation> equations,
+                              Set<Variable> exogenousVariables, Set<Variable> touchedEquations,
+                              Set<Variable> touchedExogenousVariables) throws InvalidCausalModelException {
+        Map<Variable, Equation> originalEquations = causalModel.getVariableEquationMap();
+        Set<Variable> originalExogenousVariables = causalModel.getExogenousVariables();
+        List<Variable> addedExogenousVariables = new ArrayList<>();
+        List<Variable> removedVariables = new ArrayList<>();
+        for (Variable variable : touchedExogenousVariables) {
+            if (exogenousVariables.contains(variable) && !originalExogenousVariables.contains(variable)) {
+                addedExogenousVariables.add(variable);
+            } else if (!exogenousVariables.contains(variable) && originalExogenousVariables.contains(variable)) {
+                removedVariables.add(variable);
+            }
+        }
+        List<Variable> addedEndogenousVariables = new ArrayList<>();
+        List<Equation> changedEquations = new ArrayList<>();
+        for (Variable variable : touchedEquations) {
+            Equation equation = equations.get(variable);
+            Equation originalEquation = originalEquations.get(variable);
+            if (equation != null && originalEquation == null) {
+                addedEndogenousVariables.add(variable);
+                changedEquations.add(equation);
+            } else if (equation == null && originalEquation != null) {
+                removedVariables.add(variable);
+            } else if (equation != null && !equation.getFormula().equals(originalEquation.getFormula())) {
+                changedEquations.add(equation);
+            }
+        }
+        if (exogenousVariables.stream().anyMatch(equations::containsKey)
+                || addedEndogenousVariables.stream().anyMatch(originalExogenousVariables::contains)
+                || addedExogenousVariables.stream().anyMatch(originalEquations::containsKey)) {
+            // a variable is both exogenous and endogenous or changes its kind; rare enough to start from scratch
+            return new CausalModel(name, new HashSet<>(equations.values()), exogenousVariables,
+                    causalModel.getFormulaFactory());
+        }
+        if (addedExogenousVariables.stream().anyMatch(v -> v.name().equals(SATCausalitySolver.DUMMY_VAR_NAME))) {
+            throw new InvalidCausalModelException();
+        }
+        for (Equation equation : changedEquations) {
+            for (Variable input : equation.getFormula().variables()) {
+                if (!equations.containsKey(input) && !exogenousVariables.contains(input)) {
+                    throw new InvalidCausalModelException();
+                }
+            }
+        }
+
+        CausalModelUpdater updater = new CausalModelUpdater(causalModel, addedExogenousVariables,
+                addedEndogenousVariables);
+        removedVariables.forEach(v -> updater.removeEquation(updater.getId(v)));
+        for (Variable variable : removedVariables) {
+            // the readers of a removed variable must have been changed or removed as well
+            int id = updater.getId(variable);
+            for (int j = updater.readerOffsets[id]; j < updater.readerOffsets[id + 1]; j++) {
+                Equation reader = equations.get(updater.variables.get(updater.readers[j]));
+                if (reader != null && reader.getFormula().variables().contains(variable)) {
+                    throw new InvalidCausalModelException();
+                }
+            }
+        }
+        for (Equation equation : changedEquations) {
+            int id = updater.getId(equation.getVariable());
+            updater.removeEquation(id);
+            for (Variable input : equation.getFormula().variables()) {
+                updater.insertEdge(updater.getId(input), id);
+            }
+        }
+        return updater.createCausalModel(name, equations, exogenousVariables);
+    }
+
+    private int getId(Variable variable) {
+        Integer id = addedIds.get(variable);
+        return id != null ? id : causalModel.getVariableId(variable);
+    }
+
+    /**
+     * Removes the incoming edges of the given variable, which never invalidates the topological order.
+     */
+    private void removeEquation(int id) {
+        changed.set(id);
+        changedInputs.put(id, new ArrayList<>());
+    }
+
+    /**
+     * Inserts the edge from the given input to the given reader and restores the topological order if necessary.
+     *
+     * @throws InvalidCausalModelException thrown if the edge closes a cycle
+     */
+    private void insertEdge(int input, int reader) throws InvalidCausalModelException {
+        if (input == reader) {
+            throw new InvalidCausalModelException();
+        }
+        changedInputs.get(reader).add(input);
+        addedReaders.computeIfAbsent(input, i -> new ArrayList<>()).add(reader);
+        int lowerBound = order[reader];
+        int upperBound = order[input];
+        if (lowerBound > upperBound) {
+            return;
+        }
+        // the variables between reader and input that depend on the reader ...
+        List<Integer> forward = search(reader, true, lowerBound, upperBound);
+        if (forward == null) {
+            throw new InvalidCausalModelException();
+        }
+        // ... and those the input depends on
+        List<Integer> backward = search(input, false, lowerBound, upperBound);
+        forward.forEach(visited::clear);
+        backward.forEach(visited::clear);
+
+        // move the former behind the latter, using the positions of both
+        Comparator<Integer> byOrder = Comparator.comparingInt(id -> order[id]);
+        forward.sort(byOrder);
+        backward.sort(byOrder);
+        List<Integer> affected = new ArrayList<>(backward);
+        affected.addAll(forward);
+        int[] positions = affected.stream().mapToInt(id -> order[id]).sorted().toArray();
+        for (int i = 0; i < positions.length; i++) {
+            order[affected.get(i)] = positions[i];
+        }
+    }
+
+    /**
+     * Searches all variables reachable from the given one whose position is strictly between the given bounds.
+     *
+     * @param source     the variable to start from
+     * @param forward    true to follow readers, false to follow inputs
+     * @param lowerBound the position of the reader of the inserted edge
+     * @param upperBound the position of the input of the inserted edge
+     * @return the visited variables including the source; null if the forward search reaches the upper bound
+     */
+    private List<Integer> search(int source, boolean forward, int lowerBound, int upperBound) {
+        List<Integer> result = new ArrayList<>();
+        Deque<Integer> stack = new ArrayDeque<>();
+        visited.set(source);
+        result.add(source);
+        stack.push(source);
+        while (!stack.isEmpty()) {
+            for (int next : getNeighbours(stack.pop(), forward)) {
+                if (forward && order[next] == upperBound) {
+                    result.forEach(visited::clear);
+                    return null;
+                }
+                if (!visited.get(next) && order[next] > lowerBound && order[next] < upperBound) {
+                    visited.set(next);
+                    result.add(next);
+                    stack.push(next);
+                }
+            }
+        }
+        return result;
+    }
+
+    private Collection<Integer> getNeighbours(int id, boolean forward) {
+        if (!forward && changed.get(id)) {
+            return changedInputs.get(id);
+        }
+        List<Integer> neighbours = new ArrayList<>();
+        if (id < inputOffsets.length - 1) {
+            int[] offsets = forward ? readerOffsets : inputOffsets;
+            int[] targets = forward ? readers : inputs;
+            for (int j = offsets[id]; j < offsets[id + 1]; j++) {
+                // edges of changed equations are only taken from the overlays
+                if (!forward || !changed.get(targets[j])) {
+                    neighbours.add(targets[j]);
+                }
+            }
+        }
+        if (forward) {
+            neighbours.addAll(addedReaders.getOrDefault(id, Collections.emptyList()));
+        }
+        return neighbours;
+    }
+
+    private CausalModel createCausalModel(String name, Map<Variable, Equation> equations,
+                                          Set<Variable> exogenousVariables) {
+        int[] variablesByPosition = new int[order.length];
+        for (int id = 0; id < order.length; id++) {
+            variablesByPosition[order[id]] = id;
+        }
+        List<Equation> equationsSorted = new ArrayList<>(equations.size());
+        for (int id : variablesByPosition) {
+            Equation equation = equations.get(variables.get(id));
+            if (equation != null) {
+                equationsSorted.add(equation);
+            }
+        }
+        CausalModel derived = new CausalModel(name, exogenousVariables, equationsSorted,
+                causalModel.getFormulaFactory());
+
+        // patch the edges of the original causal model by translating the ids
+        List<Variable> derivedVariables = derived.getVariables();
+        int[] derivedIds = new int[variables.size()];
+        int[] ids = new int[derivedVariables.size()];
+        for (int i = 0; i < derivedVariables.size(); i++) {
+            ids[i] = getId(derivedVariables.get(i));
+            derivedIds[ids[i]] = i;
+        }
+        int[] derivedInputOffsets = new int[derivedVariables.size() + 1];
+        for (int i = 0; i < derivedVariables.size(); i++) {
+            int id = ids[i];
+            int size = changed.get(id) ? changedInputs.get(id).size()
+                    : id < inputOffsets.length - 1 ? inputOffsets[id + 1] - inputOffsets[id] : 0;
+            derivedInputOffsets[i + 1] = derivedInputOffsets[i] + size;
+        }
+        int[] derivedInputs = new int[derivedInputOffsets[derivedVariables.size()]];
+        for (int i = 0; i < derivedVariables.size(); i++) {
+            int id = ids[i];
+            int edge = derivedInputOffsets[i];
+            if (changed.get(id)) {
+                for (int input : changedInputs.get(id)) {
+                    derivedInputs[edge++] = derivedIds[input];
+                }
+            } else if (id < inputOffsets.length - 1) {
+                for (int j = inputOffsets[id]; j < inputOffsets[id + 1]; j++) {
+                    derivedInputs[edge++] = derivedIds[inputs[j]];
+                }
+            }
+        }
+        derived.setReachabilityIndex(new ReachabilityIndex(derived, ReachabilityIndex.CLOSURE_LIMIT,
+                new Pair<>(derivedInputOffsets, derivedInputs)));
+        return derived;
+    }
+}
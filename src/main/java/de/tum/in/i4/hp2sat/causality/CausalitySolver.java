@@ -1,9 +1,7 @@
 package de.tum.in.i4.hp2sat.causality;
 
+import de.tum.in.i4.hp2sat.causality.CausalitySolverStatistics.Phase;
 import de.tum.in.i4.hp2sat.exceptions.InvalidCausalModelException;
-import org.eclipse.collections.impl.set.mutable.UnifiedSet;
-import org.graphstream.graph.Graph;
-import org.graphstream.graph.Node;
 import org.logicng.datastructures.Assignment;
 import org.logicng.formulas.*;
 import org.logicng.util.Pair;
@@ -12,6 +10,16 @@ import java.util.*;
 import java.util.stream.Collectors;
 
 abstract class CausalitySolver {
+    /**
+     * The statistics of the causality check currently performed by this solver. Hence, a solver instance must not be
+     * used for several checks at the same time.
+     */
+    CausalitySolverStatistics statistics;
+    /**
+     * The budget of the causality checks performed by this solver; null if unlimited.
+     */
+    Budget budget;
+
     /**
      * Checks AC1, AC2 and AC3 given a causal model, a cause, a context and phi and a solving strategy.
      *
@@ -42,9 +50,10 @@ abstract class CausalitySolver {
     }
 
     /**
-     * Returns all causes for a given causal model, a context and phi.
+     * Returns all causes for a given causal model, a context and phi. The potential causes are generated lazily by a
+     * {@link CauseIterator}.
      * IMPORTANT: This method is not implemented efficiently. In particular for large models, the execution time will
-     * be extremely large as we create the powerset of ALL variables.
+     * be extremely large as we check the combinations of ALL variables.
      *
      * @param causalModel the underlying causel model
      * @param context     the context
@@ -55,31 +64,149 @@ abstract class CausalitySolver {
     Set<CausalitySolverResult> getAllCauses(CausalModel causalModel, Set<Literal> context, Formula phi,
                                             SolvingStrategy solvingStrategy, FormulaFactory f)
             throws InvalidCausalModelException {
-        // compute all possible combination of primitive events
-        Set<Literal> evaluation = CausalitySolver.evaluateEquations(causalModel, context);
-        Set<Literal> evaluationWithoutExogenousVariables = evaluation.stream()
-                .filter(l -> !causalModel.getExogenousVariables().contains(l.variable())).collect(Collectors.toSet());
-        List<Set<Literal>> allPotentialCauses = new UnifiedSet<>(evaluationWithoutExogenousVariables).powerSet()
-                .stream().map(s -> s.toImmutable().castToSet())
-                .sorted(Comparator.comparingInt(Set::size))
-                .collect(Collectors.toList());
-        // remove empty set (index 0 as list is ordered!)
-        allPotentialCauses.remove(0);
+        CauseIterator causeIterator = new CauseIterator(this, causalModel, context, phi, solvingStrategy);
         Set<CausalitySolverResult> allCauses = new HashSet<>();
-        for (Set<Literal> cause : allPotentialCauses) {
-            /*
-             * if a subset of the currently analyzed potential cause is already a cause, we don't need to check the
-             * current one since it will not fulfill AC3 (minimality!) */
-            if (allCauses.stream().noneMatch(c -> cause.containsAll(c.getCause()))) {
-                CausalitySolverResult causalitySolverResult = solve(causalModel, context, phi, cause, solvingStrategy);
-                if (causalitySolverResult.isAc1() && causalitySolverResult.isAc2() && causalitySolverResult.isAc3()) {
-                    // if all ACs fulfilled, it is a cause
-                    allCauses.add(causalitySolverResult);
-                }
+        CausalitySolverResult causalitySolverResult;
+        while ((causalitySolverResult = causeIterator.nextCause()) != null) {
+            allCauses.add(causalitySolverResult);
+        }
+        return allCauses;
+    }
+
+    /**
+     * Returns the k causes with the highest degree of responsibility for a given causal model, a context and phi.
+     * Instead of the whole power set, the causes are enumerated lazily in increasing size by a {@link CauseIterator}.
+     * As the degree of responsibility 1/(|X|+|W|) of a cause X is at most 1/|X|, potential causes that are at least as
+     * large as |X|+|W| of the k-th most responsible cause found so far are not checked. The degrees of responsibility
+     * are only exact if the solving strategy computes a minimal W.
+     *
+     * @param causalModel     the underlying causal model
+     * @param context         the context
+     * @param phi             the phi
+     * @param k               the maximum number of returned causes
+     * @param solvingStrategy the applied solving strategy
+     * @return at most k causes ordered by decreasing responsibility and, for equal responsibility, increasing size
+     * @throws InvalidCausalModelException thrown if internally generated causal models are invalid
+     */
+    List<CausalitySolverResult> getMostResponsibleCauses(CausalModel causalModel, Set<Literal> context, Formula phi,
+                                                         int k, SolvingStrategy solvingStrategy)
+            throws InvalidCausalModelException {
+        List<CausalitySolverResult> mostResponsibleCauses = new ArrayList<>();
+        if (k < 1) {
+            return mostResponsibleCauses;
+        }
+        // the responsibility is 1/(|X|+|W|); hence, a smaller denominator means a higher responsibility
+        Comparator<CausalitySolverResult> byResponsibility = Comparator
+                .comparingInt(CausalitySolver::responsibilityDenominator)
+                .thenComparingInt(r -> r.getCause().size());
+        CauseIterator causeIterator = new CauseIterator(this, causalModel, context, phi, solvingStrategy);
+        CausalitySolverResult causalitySolverResult;
+        while ((causalitySolverResult = causeIterator.nextCause()) != null) {
+            mostResponsibleCauses.add(causalitySolverResult);
+            mostResponsibleCauses.sort(byResponsibility);
+            if (mostResponsibleCauses.size() > k) {
+                mostResponsibleCauses.remove(k);
             }
+            if (mostResponsibleCauses.size() == k) {
+                causeIterator.setMaxSize(responsibilityDenominator(mostResponsibleCauses.get(k - 1)) - 1);
+            }
+        }
+        return mostResponsibleCauses;
+    }
+
+    private static int responsibilityDenominator(CausalitySolverResult causalitySolverResult) {
+        return causalitySolverResult.getCause().size()
+                + (causalitySolverResult.getW() == null ? 0 : causalitySolverResult.getW().size());
+    }
 
+    /**
+     * Starts collecting the statistics of a new causality check.
+     *
+     * @param solvingStrategy the applied solving strategy
+     */
+    void startStatistics(SolvingStrategy solvingStrategy) {
+        statistics = new CausalitySolverStatistics(solvingStrategy);
+    }
+
+    /**
+     * Finishes collecting the statistics of the current causality check, attaches them to the result and reports
+     * them to the global {@link CausalitySolverMetrics}.
+     *
+     * @param causalitySolverResult the result of the causality check
+     * @return the passed result
+     */
+    CausalitySolverResult finishStatistics(CausalitySolverResult causalitySolverResult) {
+        statistics.finish();
+        causalitySolverResult.setStatistics(statistics);
+        CausalitySolverMetrics.getGlobal().record(statistics);
+        return causalitySolverResult;
+    }
+
+    /**
+     * Adds the time elapsed since the given start time to the passed phase of the current statistics, if any.
+     *
+     * @param phase     the phase
+     * @param startTime the start time as obtained from {@link System#nanoTime()}
+     */
+    void stop(Phase phase, long startTime) {
+        if (statistics != null) {
+            statistics.stop(phase, startTime);
         }
-        return allCauses;
+    }
+
+    /**
+     * Sets the budget of all subsequent causality checks performed by this solver.
+     *
+     * @param budget the budget; null if unlimited
+     */
+    void setBudget(Budget budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Throws a {@link BudgetExhaustedException} if the budget is exhausted. Called regularly by the solvers such
+     * that a check stops soon after its budget has been exhausted.
+     */
+    void checkBudget() {
+        if (budget != null && budget.isExhausted()) {
+            throw new BudgetExhaustedException();
+        }
+    }
+
+    /**
+     * @return a new handler for a SAT solver call that respects the statistics and the budget of the current check
+     */
+    SolverHandler createSolverHandler() {
+        return new SolverHandler(statistics, budget);
+    }
+
+    /**
+     * Returns the (cached) evaluation of the original causal model under the given context. Same as
+     * {@link EvaluationCache#evaluate(Set)}, but measures the time.
+     *
+     * @param causalModel the causal model
+     * @param context     the context
+     * @return evaluation for all variables within the causal model (endo and exo)
+     */
+    Set<Literal> evaluateActualWorld(CausalModel causalModel, Set<Literal> context) {
+        long start = System.nanoTime();
+        Set<Literal> evaluation = causalModel.getEvaluationCache().evaluate(context);
+        stop(Phase.EVALUATION, start);
+        return evaluation;
+    }
+
+    /**
+     * Same as {@link #evaluateEquations(CausalModel, Set)}, but measures the time.
+     *
+     * @param causalModel the causal model
+     * @param context     the context
+     * @return evaluation for all variables within the causal model (endo and exo)
+     */
+    Set<Literal> evaluate(CausalModel causalModel, Set<Literal> context) {
+        long start = System.nanoTime();
+        Set<Literal> evaluation = evaluateEquations(causalModel, context);
+        stop(Phase.EVALUATION, start);
+        return evaluation;
     }
 
     /**
@@ -146,7 +273,8 @@ abstract class CausalitySolver {
     }
 
     /**
-     * Returns only those variables of a causal model that need to be in set W.
+     * Returns only those variables of a causal model that need to be in set W. They are computed as a chop by the
+     * {@link ReachabilityIndex} of the causal model.
      *
      * @param causalModel the causal model
      * @param phi         the phi
@@ -156,42 +284,12 @@ abstract class CausalitySolver {
      */
     static Set<Variable> getMinimalWVariables(CausalModel causalModel, Formula phi, Set<Literal> cause,
                                               FormulaFactory f) {
+        ReachabilityIndex reachabilityIndex = causalModel.getReachabilityIndex();
         Set<Variable> causeVariables = cause.stream().map(Literal::variable).collect(Collectors.toSet());
-        Graph graph = causalModel.getGraph();
-        // get set of reachable variables by X
-        Set<Variable> reachableVariablesByCause = getReachableVariables(graph, cause, f);
-        reachableVariablesByCause = reachableVariablesByCause.stream()
-                .filter(v -> !causeVariables.contains(v)).collect(Collectors.toSet());
-        Graph graphReversed = causalModel.getGraphReversed();
-        // get set of variables that affect phi -> use reversed graph
-        Set<Variable> reachableVariablesByPhi = getReachableVariables(graphReversed, phi.literals(), f);
-
         // the idea is to only include those variables into W that can be affected by the cause and that affect phi
-        reachableVariablesByCause.retainAll(reachableVariablesByPhi);
-        return reachableVariablesByCause;
-    }
-
-    /**
-     * Computes the set of variables reachable from the passed set of literals in a given graph.
-     *
-     * @param graph    the graph
-     * @param literals the literals
-     * @param f        a formula factory
-     * @return a set of variables reachable from the passed literals
-     */
-    static Set<Variable> getReachableVariables(Graph graph, Set<Literal> literals, FormulaFactory f) {
-        Set<Variable> reachableVariables = new HashSet<>();
-        for (Literal literal : literals) {
-            // get the corresponding node in the graph
-            Node node = graph.getNode(literal.name());
-            Iterator<Node> iterator = node.getDepthFirstIterator(true);
-            // iterate through all reachable nodes
-            while (iterator.hasNext()) {
-                Node reachableNode = iterator.next();
-                reachableVariables.add(f.variable(reachableNode.getId()));
-            }
-        }
-        return reachableVariables;
+        BitSet wVariables = reachabilityIndex.getChop(causeVariables, phi.variables());
+        wVariables.andNot(reachabilityIndex.toIds(causeVariables));
+        return reachabilityIndex.toVariables(wVariables);
     }
 
     /**
@@ -206,14 +304,13 @@ abstract class CausalitySolver {
      */
     private CausalModel createModifiedCausalModel(CausalModel causalModel, Set<Literal> literals, FormulaFactory f)
             throws InvalidCausalModelException {
-        CausalModel causalModelModified = new CausalModel(causalModel,
-                literals.stream().map(Literal::variable).collect(Collectors.toSet()));
-        Map<Variable, Equation> variableEquationMap = causalModelModified.getVariableEquationMap();
+        long start = System.nanoTime();
         // replace each equation with the phase of the literal
-        for (Literal l : literals) {
-            Equation equation = variableEquationMap.get(l.variable());
-            equation.setFormula(l.phase() ? f.verum() : f.falsum());
-        }
+        Set<Equation> equations = literals.stream()
+                .map(l -> new Equation(l.variable(), l.phase() ? f.verum() : f.falsum()))
+                .collect(Collectors.toSet());
+        CausalModel causalModelModified = new CausalModel(causalModel, equations);
+        stop(Phase.MODEL_COPYING, start);
         return causalModelModified;
     }
 }
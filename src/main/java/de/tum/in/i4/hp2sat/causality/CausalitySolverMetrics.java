@@ -0,0 +1,141 @@
+package de.tum.in.i4.hp2sat.causality;
+
+import de.tum.in.i4.hp2sat.causality.CausalitySolverStatistics.Phase;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Aggregates the statistics of all causality checks per solving strategy. The global registry
+ * ({@link #getGlobal()}) is updated by each call of {@link CausalModel#isCause}; it can be read via
+ * {@link #snapshot()} or in the Prometheus text exposition format via {@link #scrape()}. All methods are safe to be
+ * used by multiple threads.
+ */
+public class CausalitySolverMetrics {
+    private static final CausalitySolverMetrics GLOBAL = new CausalitySolverMetrics();
+    private static final String PREFIX = "hp2sat_";
+
+    private final Map<SolvingStrategy, Counters> counters;
+
+    public CausalitySolverMetrics() {
+        this.counters = new EnumMap<>(SolvingStrategy.class);
+        for (SolvingStrategy solvingStrategy : SolvingStrategy.values()) {
+            counters.put(solvingStrategy, new Counters());
+        }
+    }
+
+    /**
+     * @return the registry to which all causality checks are reported
+     */
+    public static CausalitySolverMetrics getGlobal() {
+        return GLOBAL;
+    }
+
+    /**
+     * Adds the statistics of a finished causality check.
+     *
+     * @param statistics the statistics
+     */
+    void record(CausalitySolverStatistics statistics) {
+        if (statistics.getSolvingStrategy() == null) {
+            return;
+        }
+        Counters c = counters.get(statistics.getSolvingStrategy());
+        c.queries.increment();
+        c.totalTime.add(Math.max(statistics.getTotalTime(), 0));
+        for (Phase phase : Phase.values()) {
+            c.phaseTimes.get(phase).add(statistics.getTime(phase));
+        }
+        c.clauses.add(statistics.getClauses());
+        c.variables.add(statistics.getVariables());
+        c.modelsEnumerated.add(statistics.getModelsEnumerated());
+        c.conflicts.add(statistics.getConflicts());
+        c.satCalls.add(statistics.getSATCalls());
+        c.bytesAllocated.add(Math.max(statistics.getBytesAllocated(), 0));
+    }
+
+    /**
+     * Returns the current values of all metrics. The keys have the form
+     * <code>hp2sat_&lt;metric&gt;{strategy="&lt;strategy&gt;"[,phase="&lt;phase&gt;"]}</code>. Times are given in
+     * nanoseconds.
+     *
+     * @return a map from metric to value in a stable order
+     */
+    public Map<String, Long> snapshot() {
+        Map<String, Long> snapshot = new LinkedHashMap<>();
+        for (Map.Entry<SolvingStrategy, Counters> entry : counters.entrySet()) {
+            String strategy = "strategy=\"" + entry.getKey() + "\"";
+            Counters c = entry.getValue();
+            snapshot.put(PREFIX + "queries_total{" + strategy + "}", c.queries.sum());
+            snapshot.put(PREFIX + "time_nanoseconds_total{" + strategy + "}", c.totalTime.sum());
+            for (Phase phase : Phase.values()) {
+                snapshot.put(PREFIX + "phase_time_nanoseconds_total{" + strategy + ",phase=\"" +
+                        phase.name().toLowerCase(Locale.ROOT) + "\"}", c.phaseTimes.get(phase).sum());
+            }
+            snapshot.put(PREFIX + "clauses_total{" + strategy + "}", c.clauses.sum());
+            snapshot.put(PREFIX + "variables_total{" + strategy + "}", c.variables.sum());
+            snapshot.put(PREFIX + "models_enumerated_total{" + strategy + "}", c.modelsEnumerated.sum());
+            snapshot.put(PREFIX + "conflicts_total{" + strategy + "}", c.conflicts.sum());
+            snapshot.put(PREFIX + "sat_calls_total{" + strategy + "}", c.satCalls.sum());
+            snapshot.put(PREFIX + "allocated_bytes_total{" + strategy + "}", c.bytesAllocated.sum());
+        }
+        return snapshot;
+    }
+
+    /**
+     * @return all metrics in the Prometheus text exposition format
+     */
+    public String scrape() {
+        StringBuilder stringBuilder = new StringBuilder();
+        String lastName = null;
+        for (Map.Entry<String, Long> entry : snapshot().entrySet()) {
+            String name = entry.getKey().substring(0, entry.getKey().indexOf('{'));
+            if (!name.equals(lastName)) {
+                stringBuilder.append("# TYPE ").append(name).append(" counter\n");
+                lastName = name;
+            }
+            stringBuilder.append(entry.getKey()).append(' ').append(entry.getValue()).append('\n');
+        }
+        return stringBuilder.toString();
+    }
+
+    /**
+     * Sets all metrics back to zero.
+     */
+    public void reset() {
+        counters.values().forEach(Counters::reset);
+    }
+
+    private static class Counters {
+        private final LongAdder queries = new LongAdder();
+        private final LongAdder totalTime = new LongAdder();
+        private final Map<Phase, LongAdder> phaseTimes = new EnumMap<>(Phase.class);
+        private final LongAdder clauses = new LongAdder();
+        private final LongAdder variables = new LongAdder();
+        private final LongAdder modelsEnumerated = new LongAdder();
+        private final LongAdder conflicts = new LongAdder();
+        private final LongAdder satCalls = new LongAdder();
+        private final LongAdder bytesAllocated = new LongAdder();
+
+        private Counters() {
+            for (Phase phase : Phase.values()) {
+                phaseTimes.put(phase, new LongAdder());
+            }
+        }
+
+        private void reset() {
+            queries.reset();
+            totalTime.reset();
+            phaseTimes.values().forEach(LongAdder::reset);
+            clauses.reset();
+            variables.reset();
+            modelsEnumerated.reset();
+            conflicts.reset();
+            satCalls.reset();
+            bytesAllocated.reset();
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package de.tum.in.i4.hp2sat.causality;
 
+import org.logicng.datastructures.Tristate;
 import org.logicng.formulas.Literal;
 
 import java.util.HashMap;
@@ -9,12 +10,29 @@ import java.util.Set;
 
 public class CausalitySolverResult {
     private boolean ac1;
-    private boolean ac2;
-    private boolean ac3;
+    private Tristate ac2;
+    private Tristate ac3;
     private Set<Literal> cause;
     private Set<Literal> w;
+    private boolean wMinimal = false;
+    private int wSizeLowerBound = 0;
+    private CausalitySolverStatistics statistics;
 
     public CausalitySolverResult(boolean ac1, boolean ac2, boolean ac3, Set<Literal> cause, Set<Literal> w) {
+        this(ac1, Tristate.fromBool(ac2), Tristate.fromBool(ac3), cause, w);
+    }
+
+    /**
+     * Creates a result in which AC2 and AC3 might be unknown, i.e. {@link Tristate#UNDEF}, because the
+     * {@link Budget} of the check was exhausted before they could be decided. AC1 is always decided.
+     *
+     * @param ac1   whether AC1 is fulfilled
+     * @param ac2   whether AC2 is fulfilled
+     * @param ac3   whether AC3 is fulfilled
+     * @param cause the cause
+     * @param w     the set W if AC2 is fulfilled; null otherwise
+     */
+    public CausalitySolverResult(boolean ac1, Tristate ac2, Tristate ac3, Set<Literal> cause, Set<Literal> w) {
         this.ac1 = ac1;
         this.ac2 = ac2;
         this.ac3 = ac3;
@@ -30,7 +48,7 @@ public class CausalitySolverResult {
     public Map<Literal, Double> getResponsibility() {
         Map<Literal, Double> responsibility = new HashMap<>();
 
-        if (this.ac1 && this.ac2 && this.ac3) {
+        if (isAc1() && isAc2() && isAc3()) {
             int w = this.w == null ? 0 : this.w.size();
             int x = cause.size();
             this.cause.forEach(l -> responsibility.put(l, 1D / (x + w)));
@@ -45,8 +63,8 @@ public class CausalitySolverResult {
     public String toString() {
         return "CausalitySolverResult{" +
                 "ac1=" + ac1 +
-                ", ac2=" + ac2 +
-                ", ac3=" + ac3 +
+                ", ac2=" + (ac2 == Tristate.UNDEF ? "unknown" : isAc2()) +
+                ", ac3=" + (ac3 == Tristate.UNDEF ? "unknown" : isAc3()) +
                 ", cause=" + cause +
                 ", w=" + w +
                 '}';
@@ -74,14 +92,43 @@ public class CausalitySolverResult {
         return ac1;
     }
 
+    /**
+     * @return true if AC2 is fulfilled; false if it is not fulfilled or unknown
+     */
     public boolean isAc2() {
-        return ac2;
+        return ac2 == Tristate.TRUE;
     }
 
+    /**
+     * @return true if AC3 is fulfilled; false if it is not fulfilled or unknown
+     */
     public boolean isAc3() {
+        return ac3 == Tristate.TRUE;
+    }
+
+    /**
+     * @return {@link Tristate#TRUE} if AC2 is fulfilled, {@link Tristate#FALSE} if not and {@link Tristate#UNDEF} if
+     * it is unknown as the budget was exhausted
+     */
+    public Tristate getAc2State() {
+        return ac2;
+    }
+
+    /**
+     * @return {@link Tristate#TRUE} if AC3 is fulfilled, {@link Tristate#FALSE} if not and {@link Tristate#UNDEF} if
+     * it is unknown as the budget was exhausted
+     */
+    public Tristate getAc3State() {
         return ac3;
     }
 
+    /**
+     * @return true if all ACs have been decided, i.e. none of them is unknown
+     */
+    public boolean isDecided() {
+        return ac2 != Tristate.UNDEF && ac3 != Tristate.UNDEF;
+    }
+
     public Set<Literal> getCause() {
         return cause;
     }
@@ -89,4 +136,42 @@ public class CausalitySolverResult {
     public Set<Literal> getW() {
         return w;
     }
+
+    /**
+     * @return true if W is known to be of minimum size, i.e. no smaller W fulfills AC2. Not considered by
+     * {@link #equals(Object)}.
+     */
+    public boolean isWMinimal() {
+        return wMinimal;
+    }
+
+    /**
+     * @return a lower bound for the size of a minimal W; equal to the size of W if {@link #isWMinimal()}. Together
+     * with the size of W, this bounds the degree of responsibility. Not considered by {@link #equals(Object)}.
+     */
+    public int getWSizeLowerBound() {
+        return wSizeLowerBound;
+    }
+
+    /**
+     * @return the statistics of the causality check that produced this result; null if the result was not computed
+     * by a solver. Not considered by {@link #equals(Object)}.
+     */
+    public CausalitySolverStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Sets what is known about the minimality of W.
+     *
+     * @param wSizeLowerBound a lower bound for the size of a minimal W; W is minimal if it is equal to its size
+     */
+    void setWSizeLowerBound(int wSizeLowerBound) {
+        this.wSizeLowerBound = wSizeLowerBound;
+        this.wMinimal = w != null && w.size() == wSizeLowerBound;
+    }
+
+    void setStatistics(CausalitySolverStatistics statistics) {
+        this.statistics = statistics;
+    }
 }
@@ -0,0 +1,213 @@
+package de.tum.in.i4.hp2sat.causality;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Statistics collected while checking a single cause, i.e. during one call of
+ * {@link CausalitySolver#solve(CausalModel, java.util.Set, org.logicng.formulas.Formula, java.util.Set,
+ * SolvingStrategy)}. Times are measured in nanoseconds. Counters can be updated concurrently. The number of decisions
+ * of the SAT solvers is not collected as LogicNG does not expose it.
+ */
+public class CausalitySolverStatistics {
+    /**
+     * The phases of a causality check whose execution time is measured.
+     */
+    public enum Phase {
+        /**
+         * evaluation of the equations, both in the actual world and in modified causal models
+         */
+        EVALUATION,
+        /**
+         * creation of modified causal models, e.g. when replacing the equations of the cause
+         */
+        MODEL_COPYING,
+        /**
+         * generation of SAT queries and loading them into a SAT solver
+         */
+        ENCODING,
+        /**
+         * conversion of SAT queries into CNF
+         */
+        CNF_CONVERSION,
+        /**
+         * search for a single satisfying assignment
+         */
+        SAT_SOLVING,
+        /**
+         * enumeration of all satisfying assignments
+         */
+        MODEL_ENUMERATION,
+        /**
+         * operations on compiled BDDs
+         */
+        BDD_OPERATIONS
+    }
+
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+    private final SolvingStrategy solvingStrategy;
+    private final AtomicLongArray phaseTimes = new AtomicLongArray(Phase.values().length);
+    private final AtomicLong clauses = new AtomicLong();
+    private final AtomicLong variables = new AtomicLong();
+    private final AtomicLong modelsEnumerated = new AtomicLong();
+    private final AtomicLong conflicts = new AtomicLong();
+    private final AtomicLong satCalls = new AtomicLong();
+    private final long startTime;
+    private final long startAllocatedBytes;
+    private long totalTime = -1;
+    private long bytesAllocated = -1;
+
+    CausalitySolverStatistics(SolvingStrategy solvingStrategy) {
+        this.solvingStrategy = solvingStrategy;
+        this.startAllocatedBytes = currentThreadAllocatedBytes();
+        this.startTime = System.nanoTime();
+    }
+
+    /**
+     * Adds the time elapsed since the given start time to the passed phase.
+     *
+     * @param phase     the phase
+     * @param startTime the start time as obtained from {@link System#nanoTime()}
+     */
+    void stop(Phase phase, long startTime) {
+        phaseTimes.addAndGet(phase.ordinal(), System.nanoTime() - startTime);
+    }
+
+    /**
+     * Adds the size of a CNF formula passed to a SAT solver.
+     *
+     * @param clauses   number of clauses
+     * @param variables number of variables
+     */
+    void addFormulaSize(long clauses, long variables) {
+        this.clauses.addAndGet(clauses);
+        this.variables.addAndGet(variables);
+    }
+
+    void incrementModelsEnumerated() {
+        modelsEnumerated.incrementAndGet();
+    }
+
+    void incrementConflicts() {
+        conflicts.incrementAndGet();
+    }
+
+    void incrementSATCalls() {
+        satCalls.incrementAndGet();
+    }
+
+    /**
+     * Finishes the measurement of the total time and the allocated bytes. Needs to be called by the thread that
+     * created the statistics.
+     */
+    void finish() {
+        this.totalTime = System.nanoTime() - startTime;
+        long endAllocatedBytes = currentThreadAllocatedBytes();
+        this.bytesAllocated = startAllocatedBytes < 0 || endAllocatedBytes < 0 ? -1 :
+                endAllocatedBytes - startAllocatedBytes;
+    }
+
+    private static long currentThreadAllocatedBytes() {
+        if (THREAD_MX_BEAN instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) THREAD_MX_BEAN;
+            if (threadMXBean.isThreadAllocatedMemorySupported() && threadMXBean.isThreadAllocatedMemoryEnabled()) {
+                return threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    public SolvingStrategy getSolvingStrategy() {
+        return solvingStrategy;
+    }
+
+    /**
+     * @param phase the phase
+     * @return the accumulated time spent in the given phase in nanoseconds
+     */
+    public long getTime(Phase phase) {
+        return phaseTimes.get(phase.ordinal());
+    }
+
+    /**
+     * @return the accumulated time per phase in nanoseconds
+     */
+    public Map<Phase, Long> getTimes() {
+        Map<Phase, Long> times = new EnumMap<>(Phase.class);
+        for (Phase phase : Phase.values()) {
+            times.put(phase, getTime(phase));
+        }
+        return times;
+    }
+
+    /**
+     * @return the total time of the causality check in nanoseconds; -1 if not yet finished
+     */
+    public long getTotalTime() {
+        return totalTime;
+    }
+
+    /**
+     * @return the number of clauses of all CNFs passed to SAT solvers
+     */
+    public long getClauses() {
+        return clauses.get();
+    }
+
+    /**
+     * @return the number of variables of all CNFs passed to SAT solvers
+     */
+    public long getVariables() {
+        return variables.get();
+    }
+
+    /**
+     * @return the number of satisfying assignments enumerated by SAT solvers
+     */
+    public long getModelsEnumerated() {
+        return modelsEnumerated.get();
+    }
+
+    /**
+     * @return the number of conflicts encountered by SAT solvers while searching for a single model; conflicts during
+     * model enumeration are not reported by LogicNG
+     */
+    public long getConflicts() {
+        return conflicts.get();
+    }
+
+    /**
+     * @return the number of SAT solver calls that searched for a single model; model enumerations are not included
+     */
+    public long getSATCalls() {
+        return satCalls.get();
+    }
+
+    /**
+     * @return the number of bytes allocated by the thread that performed the causality check; -1 if not supported by
+     * the JVM or not yet finished
+     */
+    public long getBytesAllocated() {
+        return bytesAllocated;
+    }
+
+    @Override
+    public String toString() {
+        return "CausalitySolverStatistics{" +
+                "solvingStrategy=" + solvingStrategy +
+                ", totalTime=" + totalTime +
+                ", times=" + getTimes() +
+                ", clauses=" + clauses +
+                ", variables=" + variables +
+                ", modelsEnumerated=" + modelsEnumerated +
+                ", conflicts=" + conflicts +
+                ", satCalls=" + satCalls +
+                ", bytesAllocated=" + bytesAllocated +
+                '}';
+    }
+}
@@ -0,0 +1,166 @@
+package de.tum.in.i4.hp2sat.causality;
+
+import de.tum.in.i4.hp2sat.exceptions.InvalidCausalModelException;
+import org.logicng.datastructures.Assignment;
+import org.logicng.formulas.Formula;
+import org.logicng.formulas.Literal;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Lazily enumerates all causes of phi in a given context in increasing size. Potential causes are the combinations
+ * of the endogenous literals of the actual world; they are generated one at a time, such that neither the power set
+ * nor the potential causes of the same size are kept in memory. A potential cause is only checked if none of its
+ * subsets is a cause, as it cannot fulfill AC3 otherwise. Each cause is returned as soon as it has been found.
+ * <p>
+ * Before any combination is generated, the literals are restricted to those that
+ * <ul>
+ * <li>hold in the actual world, as AC1 is violated otherwise, and</li>
+ * <li>are in the backward cone of phi, i.e. from which phi is reachable. Intervening on any other variable cannot
+ * change phi; a potential cause that contains such a literal either violates AC2 or, as the remaining literals
+ * already fulfill AC2 with the same W, AC3.</li>
+ * </ul>
+ * Hence, each literal that is pruned halves the number of combinations.
+ * <p>
+ * The enumeration can be cancelled cooperatively via the budget of the solver: once the budget is exhausted, the
+ * iterator has no further elements. A check that could not be decided within the budget is not returned.
+ */
+class CauseIterator implements Iterator<CausalitySolverResult> {
+    private final CausalitySolver causalitySolver;
+    private final CausalModel causalModel;
+    private final Set<Literal> context;
+    private final Formula phi;
+    private final SolvingStrategy solvingStrategy;
+    private final List<Literal> literals;
+    private final List<Set<Literal>> causes = new ArrayList<>();
+    private int maxSize;
+    private int[] indices; // the indices of the literals of the next potential cause; null if there is none
+    private CausalitySolverResult next;
+
+    /**
+     * @param causalitySolver the solver used to check the potential causes
+     * @param causalModel     the underlying causal model
+     * @param context         the context
+     * @param phi             the phi
+     * @param solvingStrategy the applied solving strategy
+     */
+    CauseIterator(CausalitySolver causalitySolver, CausalModel causalModel, Set<Literal> context, Formula phi,
+                  SolvingStrategy solvingStrategy) {
+        this.causalitySolver = causalitySolver;
+        this.causalModel = causalModel;
+        this.context = context;
+        this.phi = phi;
+        this.solvingStrategy = solvingStrategy;
+        Set<Literal> evaluation = causalitySolver.evaluateActualWorld(causalModel, context);
+        ReachabilityIndex reachabilityIndex = causalModel.getReachabilityIndex();
+        BitSet backwardCone = reachabilityIndex.getBackwardCone(phi.variables());
+        this.literals = evaluation.stream()
+                .filter(l -> !causalModel.getExogenousVariables().contains(l.variable())
+                        && backwardCone.get(causalModel.getVariableId(l.variable())))
+                .sorted(Comparator.comparing(Literal::name)).collect(Collectors.toList());
+        this.maxSize = literals.size();
+        // without phi in the actual world, AC1 is violated by every potential cause
+        this.indices = literals.isEmpty() || !phi.evaluate(new Assignment(evaluation)) ? null : new int[]{0};
+    }
+
+    /**
+     * Restricts the size of the remaining causes. Potential causes that are larger are not checked.
+     *
+     * @param maxSize the maximum size of the causes
+     */
+    void setMaxSize(int maxSize) {
+        this.maxSize = Math.min(this.maxSize, maxSize);
+    }
+
+    /**
+     * Same as {@link #next()}, but does not wrap the exceptions of the solver.
+     *
+     * @return the next cause; null if there is none
+     * @throws InvalidCausalModelException thrown if internally generated causal models are invalid
+     */
+    CausalitySolverResult nextCause() throws InvalidCausalModelException {
+        while (next == null && indices != null && indices.length <= maxSize && !isCancelled()) {
+            Set<Literal> cause = new HashSet<>(indices.length);
+            for (int index : indices) {
+                cause.add(literals.get(index));
+            }
+            advance();
+            if (causes.stream().noneMatch(cause::containsAll)) {
+                CausalitySolverResult causalitySolverResult =
+                        causalitySolver.solve(causalModel, context, phi, cause, solvingStrategy);
+                if (causalitySolverResult.isAc1() && causalitySolverResult.isAc2()
+                        && causalitySolverResult.isAc3()) {
+                    causes.add(cause);
+                    next = causalitySolverResult;
+                }
+            }
+        }
+        CausalitySolverResult causalitySolverResult = next;
+        next = null;
+        return causalitySolverResult;
+    }
+
+    /**
+     * @throws IllegalStateException thrown if internally generated causal models are invalid
+     */
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            try {
+                next = nextCause();
+            } catch (InvalidCausalModelException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public CausalitySolverResult next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        CausalitySolverResult causalitySolverResult = next;
+        next = null;
+        return causalitySolverResult;
+    }
+
+    private boolean isCancelled() {
+        return causalitySolver.budget != null && causalitySolver.budget.isExhausted();
+    }
+
+    /**
+     * Advances the indices to the next combination of literals of the same size in lexicographic order or, if there
+     * is none, to the first combination of the next size.
+     */
+    private void advance() {
+        int size = indices.length;
+        int i = size - 1;
+        while (i >= 0 && indices[i] == literals.size() - size + i) {
+            i--;
+        }
+        if (i < 0) {
+            if (size == literals.size()) {
+                indices = null;
+            } else {
+                indices = new int[size + 1];
+                for (int j = 0; j <= size; j++) {
+                    indices[j] = j;
+                }
+            }
+            return;
+        }
+        indices[i]++;
+        for (int j = i + 1; j < size; j++) {
+            indices[j] = indices[j - 1] + 1;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package de.tum.in.i4.hp2sat.causality;
+
+import org.logicng.formulas.Literal;
+import org.logicng.formulas.Variable;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A causal model in which chains of buffers and inverters are collapsed, together with the variables that were
+ * removed. See {@link CausalModel#collapseChains}.
+ */
+public class CollapsedCausalModel {
+    private final CausalModel causalModel;
+    private final Map<Variable, Literal> collapsedVariables;
+    private final Map<Variable, Variable> chainHeads = new HashMap<>();
+
+    /**
+     * @param causalModel        the collapsed causal model
+     * @param collapsedVariables for each removed variable in topological order, the literal of the remaining variable
+     *                           that takes over its value
+     */
+    CollapsedCausalModel(CausalModel causalModel, Map<Variable, Literal> collapsedVariables) {
+        this.causalModel = causalModel;
+        this.collapsedVariables = Collections.unmodifiableMap(collapsedVariables);
+        // the first removed variable of a chain is the one whose equation the remaining variable took over
+        collapsedVariables.forEach((v, l) -> chainHeads.putIfAbsent(l.variable(), v));
+    }
+
+    /**
+     * @return the collapsed causal model
+     */
+    public CausalModel getCausalModel() {
+        return causalModel;
+    }
+
+    /**
+     * @return for each removed variable, the literal of the remaining variable that takes over its value; a negative
+     * literal means that the value is negated
+     */
+    public Map<Variable, Literal> getCollapsedVariables() {
+        return collapsedVariables;
+    }
+
+    /**
+     * Translates a W found on the collapsed model back to the variables of the original model. If a chain A, ..., B
+     * was collapsed into B, the literal of B in W is replaced by the literal of A, i.e. of the variable whose equation
+     * B took over. Both keep the same variables at their original values, so the translated W is valid in the original
+     * model and of the same size.
+     *
+     * @param w the W found on the collapsed model; might be null
+     * @return the W in terms of the original model; null if w is null
+     */
+    public Set<Literal> translateW(Set<Literal> w) {
+        if (w == null) {
+            return null;
+        }
+        Set<Literal> wOriginal = new HashSet<>();
+        for (Literal literal : w) {
+            Variable head = chainHeads.get(literal.variable());
+            if (head == null) {
+                wOriginal.add(literal);
+            } else {
+                // the value of the head is the value of B, negated if the chain inverts it
+                wOriginal.add(literal.phase() == collapsedVariables.get(head).phase() ? head : head.negate());
+            }
+        }
+        return wOriginal;
+    }
+
+    /**
+     * Translates a result computed on the collapsed model back to the variables of the original model. The ACs, the
+     * cause and what is known about the minimality of W are unchanged; W is translated by {@link #translateW(Set)}.
+     *
+     * @param causalitySolverResult the result computed on the collapsed model
+     * @return the result in terms of the original model
+     */
+    public CausalitySolverResult translate(CausalitySolverResult causalitySolverResult) {
+        CausalitySolverResult causalitySolverResultOriginal = new CausalitySolverResult(
+                causalitySolverResult.isAc1(), causalitySolverResult.getAc2State(),
+                causalitySolverResult.getAc3State(), causalitySolverResult.getCause(),
+                translateW(causalitySolverResult.getW()));
+        causalitySolverResultOriginal.setWSizeLowerBound(causalitySolverResult.getWSizeLowerBound());
+        causalitySolverResultOriginal.setStatistics(causalitySolverResult.getStatistics());
+        return causalitySolverResultOriginal;
+    }
+
+    @Override
+    public String toString() {
+        return "CollapsedCausalModel{" +
+                "causalModel=" + causalModel.getName() +
+                ", collapsedVariables=" + collapsedVariables +
+                '}';
+    }
+}
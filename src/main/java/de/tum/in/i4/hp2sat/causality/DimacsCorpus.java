@@ -0,0 +1,226 @@
+package de.tum.in.i4.hp2sat.causality;
+
+import org.logicng.formulas.FType;
+import org.logicng.formulas.Formula;
+import org.logicng.formulas.Literal;
+import org.logicng.formulas.Variable;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A directory into which the CNF instances of the AC2 and AC3 checks of the SAT-based solving strategies are written
+ * in DIMACS format, e.g. to benchmark external SAT solvers on them. The instances are exactly the ones passed to the
+ * SAT solver. For {@link SolvingStrategy#SAT_PRECOMPILED} and {@link SolvingStrategy#SAT_PRECOMPILED_MINIMAL}, an
+ * instance consists of the precompiled encoding together with the units of the query; for
+ * {@link SolvingStrategy#SAT_ANYTIME}, it is the instance without any at-most-k constraint.
+ * <p>
+ * Each instance is written to its own file named {@code <number>_<causal model>_<check>.cnf}, where the check is
+ * {@code ac2}, {@code ac3} or {@code ac2ac3} for the combined strategies. The header of a file contains comments that
+ * describe the check and map each DIMACS variable to the name of its variable in the causal model:
+ * <pre>
+ * c hp2sat causal model BillySuzy, check ac2, solving strategy SAT
+ * c var 1 BH
+ * ...
+ * p cnf 12 27
+ * </pre>
+ * <p>
+ * In corpus mode, the instances of all causality checks are written to the global corpus; it is enabled via
+ * {@link #setGlobal(DimacsCorpus)} or by setting the system property {@value #CORPUS_PROPERTY} to a directory, e.g.
+ * for a whole benchmark run. Instances of a single check can also be exported via
+ * {@link CausalModel#exportSATQueries}. All methods are safe to be used by multiple threads.
+ */
+public class DimacsCorpus {
+    /**
+     * The system property that enables corpus mode upon startup; its value is the directory of the global corpus.
+     */
+    public static final String CORPUS_PROPERTY = "hp2sat.dimacs.corpus";
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static volatile DimacsCorpus global = System.getProperty(CORPUS_PROPERTY) != null
+            ? new DimacsCorpus(Paths.get(System.getProperty(CORPUS_PROPERTY))) : null;
+
+    private final Path directory;
+    private final AtomicLong instances = new AtomicLong();
+    private final List<Path> files; // null if the written files are not recorded
+
+    /**
+     * Creates a corpus in the given directory. The directory is created once the first instance is written; existing
+     * files of the same name are overwritten.
+     *
+     * @param directory the directory
+     */
+    public DimacsCorpus(Path directory) {
+        this(directory, false);
+    }
+
+    /**
+     * @param directory   the directory
+     * @param recordFiles true if the written files are recorded, see {@link #getFiles()}
+     */
+    DimacsCorpus(Path directory, boolean recordFiles) {
+        this.directory = directory;
+        this.files = recordFiles ? Collections.synchronizedList(new ArrayList<>()) : null;
+    }
+
+    /**
+     * @return the corpus to which the instances of all causality checks are written; null if corpus mode is disabled
+     */
+    public static DimacsCorpus getGlobal() {
+        return global;
+    }
+
+    /**
+     * Enables or disables corpus mode.
+     *
+     * @param corpus the corpus to which the instances of all subsequent causality checks are written; null to disable
+     *               corpus mode
+     */
+    public static void setGlobal(DimacsCorpus corpus) {
+        global = corpus;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return the number of instances written to this corpus so far
+     */
+    public long getInstanceCount() {
+        return instances.get();
+    }
+
+    /**
+     * @return the files written so far, if recorded
+     */
+    List<Path> getFiles() {
+        return files;
+    }
+
+    /**
+     * Writes an instance to a new file of this corpus.
+     *
+     * @param causalModel     the causal model of the check
+     * @param check           the kind of check, e.g. ac2
+     * @param solvingStrategy the solving strategy of the check
+     * @param cnf             the instance in CNF
+     * @return the file
+     * @throws IOException thrown if the file cannot be written
+     */
+    Path write(CausalModel causalModel, String check, SolvingStrategy solvingStrategy, Formula cnf)
+            throws IOException {
+        String name = causalModel.getName() == null ? "" : causalModel.getName();
+        Path path = directory.resolve(String.format("%06d_%s_%s.cnf", instances.getAndIncrement(),
+                name.replaceAll("[^A-Za-z0-9_-]", "_"), check));
+        Files.createDirectories(directory);
+        writeDimacs(cnf, "hp2sat causal model " + name + ", check " + check + ", solving strategy "
+                + solvingStrategy, path);
+        if (files != null) {
+            files.add(path);
+        }
+        return path;
+    }
+
+    /**
+     * Writes the given CNF in DIMACS format. The variables are numbered in their natural order, starting with 1; the
+     * numbering is written to the header as comments of the form {@code c var <number> <name>}.
+     *
+     * @param cnf     a formula in CNF
+     * @param comment a comment written to the first line
+     * @param path    the file
+     * @throws IOException thrown if the file cannot be written
+     */
+    static void writeDimacs(Formula cnf, String comment, Path path) throws IOException {
+        List<Formula> clauses = new ArrayList<>();
+        if (cnf.type() == FType.AND) {
+            cnf.forEach(clauses::add);
+        } else if (cnf.type() != FType.TRUE) {
+            clauses.add(cnf);
+        }
+        Map<Variable, Integer> ids = new HashMap<>();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            put(channel, buffer, "c " + comment + "\n");
+            for (Variable variable : cnf.variables()) {
+                ids.put(variable, ids.size() + 1);
+                put(channel, buffer, "c var " + ids.size() + " " + variable.name() + "\n");
+            }
+            put(channel, buffer, "p cnf " + ids.size() + " " + clauses.size() + "\n");
+            for (Formula clause : clauses) {
+                // a clause is a disjunction, a single literal or false, i.e. the empty clause
+                for (Literal literal : clause.type() == FType.OR ? clause.literals()
+                        : clause.type() == FType.LITERAL ? Collections.singleton((Literal) clause)
+                        : Collections.<Literal>emptySet()) {
+                    if (buffer.remaining() < 13) {
+                        flush(channel, buffer);
+                    }
+                    putInt(buffer, literal.phase() ? ids.get(literal.variable()) : -ids.get(literal.variable()));
+                    buffer.put((byte) ' ');
+                }
+                if (buffer.remaining() < 2) {
+                    flush(channel, buffer);
+                }
+                buffer.put((byte) '0').put((byte) '\n');
+            }
+            flush(channel, buffer);
+        }
+    }
+
+    /**
+     * Writes the decimal representation of the given int without creating a string.
+     *
+     * @param buffer the buffer; must have at least 11 bytes remaining
+     * @param value  the int
+     */
+    private static void putInt(ByteBuffer buffer, int value) {
+        if (value < 0) {
+            buffer.put((byte) '-');
+            value = -value;
+        }
+        int divisor = 1;
+        while (value / divisor >= 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            buffer.put((byte) ('0' + value / divisor % 10));
+        }
+    }
+
+    private static void put(FileChannel channel, ByteBuffer buffer, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        if (buffer.remaining() < bytes.length) {
+            flush(channel, buffer);
+            if (buffer.remaining() < bytes.length) {
+                ByteBuffer wrapped = ByteBuffer.wrap(bytes);
+                while (wrapped.hasRemaining()) {
+                    channel.write(wrapped);
+                }
+                return;
+            }
+        }
+        buffer.put(bytes);
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        // the casts to Buffer keep the class compatible with Java 8 if it is compiled by a newer JDK
+        ((Buffer) buffer).flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        ((Buffer) buffer).clear();
+    }
+}
@@ -6,16 +6,39 @@ import org.logicng.formulas.Variable;
 public class Equation {
     private Variable variable;
     private Formula formula;
+    private final boolean frozen;
 
     public Equation(Variable variable, Formula formula) {
-        this.variable = variable;
-        this.formula = formula;
+        this(variable, formula, false);
     }
 
     public Equation(Equation equation) {
         this(equation.variable, equation.formula);
     }
 
+    private Equation(Variable variable, Formula formula, boolean frozen) {
+        this.variable = variable;
+        this.formula = formula;
+        this.frozen = frozen;
+    }
+
+    /**
+     * Returns an immutable version of this equation. Causal models only hold frozen equations such that structures
+     * derived from the equations (e.g. the topological order or cached evaluations) cannot become stale.
+     *
+     * @return this equation if it is already frozen, otherwise a frozen copy
+     */
+    Equation freeze() {
+        return frozen ? this : new Equation(variable, formula, true);
+    }
+
+    /**
+     * @return true if this equation belongs to a causal model and therefore must not be modified
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
     @Override
     public String toString() {
         return variable + " = " + formula;
@@ -29,11 +52,32 @@ public class Equation {
         return formula;
     }
 
+    /**
+     * @deprecated equations are meant to be immutable; create a new equation instead. Fails for equations owned by a
+     * causal model.
+     * @throws UnsupportedOperationException thrown if the equation is frozen
+     */
+    @Deprecated
     public void setVariable(Variable variable) {
+        checkNotFrozen();
         this.variable = variable;
     }
 
+    /**
+     * @deprecated equations are meant to be immutable; create a new equation instead. Fails for equations owned by a
+     * causal model.
+     * @throws UnsupportedOperationException thrown if the equation is frozen
+     */
+    @Deprecated
     public void setFormula(Formula formula) {
+        checkNotFrozen();
         this.formula = formula;
     }
+
+    private void checkNotFrozen() {
+        if (frozen) {
+            throw new UnsupportedOperationException("Equation " + this + " belongs to a causal model and is " +
+                    "immutable");
+        }
+    }
 }
@@ -0,0 +1,180 @@
+package de.tum.in.i4.hp2sat.causality;
+
+import org.logicng.datastructures.Assignment;
+import org.logicng.formulas.Literal;
+import org.logicng.formulas.Variable;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Caches the evaluation of the equations of a causal model (i.e. the actual world) per context. Both the context
+ * and the evaluation are stored as bitsets over the variable ids of the causal model (see
+ * {@link CausalModel#getVariableId(Variable)}); a set bit means that the respective variable is true.
+ * The cache is shared by all solving strategies and is safe to be used by multiple threads.
+ */
+class EvaluationCache {
+    static final int DEFAULT_CAPACITY = 1024;
+
+    private final CausalModel causalModel;
+    private final Map<BitSet, BitSet> evaluations;
+
+    EvaluationCache(CausalModel causalModel) {
+        this(causalModel, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new cache that keeps at most the given number of evaluations. If the capacity is exceeded, the least
+     * recently used evaluation is dropped.
+     *
+     * @param causalModel the causal model whose evaluations are cached
+     * @param capacity    the maximum number of cached evaluations
+     */
+    EvaluationCache(CausalModel causalModel, int capacity) {
+        this.causalModel = causalModel;
+        this.evaluations = new LinkedHashMap<BitSet, BitSet>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<BitSet, BitSet> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the evaluation of all variables (endo and exo) under the given context. Same as
+     * {@link CausalitySolver#evaluateEquations(CausalModel, Set)}, but the equations are only evaluated if the
+     * context has not been seen before.
+     *
+     * @param context the context, i.e. the evaluation of the exogenous variables; positive literal means true,
+     *                negative means false
+     * @return evaluation for all variables within the causal model (endo and exo); positive literal means true,
+     * negative means false
+     */
+    Set<Literal> evaluate(Set<Literal> context) {
+        BitSet key = encodeContext(context);
+        if (key == null) {
+            // context does not match the exogenous variables; no caching, the solvers handle this case themselves
+            return CausalitySolver.evaluateEquations(causalModel, context);
+        }
+        BitSet evaluation;
+        synchronized (evaluations) {
+            evaluation = evaluations.get(key);
+        }
+        if (evaluation == null) {
+            // evaluate outside of the lock such that other threads are not blocked
+            evaluation = encode(CausalitySolver.evaluateEquations(causalModel, context));
+            synchronized (evaluations) {
+                evaluations.put(key, evaluation);
+            }
+        }
+        return decode(evaluation);
+    }
+
+    /**
+     * Returns the endogenous literals whose value changes if the given exogenous literals replace the respective
+     * literals of the given evaluation. Instead of evaluating all equations, the readers of changed variables are
+     * marked and evaluated in ascending order of their ids, which is a topological order; a variable whose value does
+     * not change does not mark its readers. Only the inputs of evaluated equations are looked up in the evaluation.
+     *
+     * @param evaluation     the evaluation of all variables under the previous context
+     * @param changedContext the new values of some exogenous variables
+     * @return the changed endogenous literals with their new value
+     */
+    Set<Literal> evaluateChanges(Set<Literal> evaluation, Set<Literal> changedContext) {
+        ReachabilityIndex reachabilityIndex = causalModel.getReachabilityIndex();
+        int[] readerOffsets = reachabilityIndex.getReaders().first();
+        int[] readers = reachabilityIndex.getReaders().second();
+        int[] inputOffsets = reachabilityIndex.getInputs().first();
+        int[] inputs = reachabilityIndex.getInputs().second();
+        List<Variable> variables = causalModel.getVariables();
+
+        Map<Variable, Literal> changes = new HashMap<>();
+        BitSet marked = new BitSet();
+        for (Literal literal : changedContext) {
+            if (!evaluation.contains(literal)) {
+                changes.put(literal.variable(), literal);
+                int id = causalModel.getVariableId(literal.variable());
+                for (int j = readerOffsets[id]; j < readerOffsets[id + 1]; j++) {
+                    marked.set(readers[j]);
+                }
+            }
+        }
+        Set<Literal> changedLiterals = new HashSet<>();
+        for (int id = marked.nextSetBit(0); id >= 0; id = marked.nextSetBit(id + 1)) {
+            Variable variable = variables.get(id);
+            Assignment assignment = new Assignment();
+            for (int j = inputOffsets[id]; j < inputOffsets[id + 1]; j++) {
+                Variable input = variables.get(inputs[j]);
+                Literal change = changes.get(input);
+                assignment.addLiteral(change != null ? change : evaluation.contains(input) ? input : input.negate());
+            }
+            boolean value = causalModel.getVariableEquationMap().get(variable).getFormula().evaluate(assignment);
+            if (value != evaluation.contains(variable)) {
+                Literal literal = value ? variable : variable.negate();
+                changes.put(variable, literal);
+                changedLiterals.add(literal);
+                for (int j = readerOffsets[id]; j < readerOffsets[id + 1]; j++) {
+                    marked.set(readers[j]);
+                }
+            }
+        }
+        return changedLiterals;
+    }
+
+    /**
+     * @return the number of currently cached evaluations
+     */
+    int size() {
+        synchronized (evaluations) {
+            return evaluations.size();
+        }
+    }
+
+    /**
+     * Encodes a context as bitset. Returns null if the context does not assign each exogenous variable exactly once.
+     *
+     * @param context the context
+     * @return the encoded context or null
+     */
+    private BitSet encodeContext(Set<Literal> context) {
+        if (context.size() != causalModel.getExogenousVariables().size()) {
+            return null;
+        }
+        BitSet bitSet = new BitSet(context.size());
+        for (Literal literal : context) {
+            Variable variable = literal.variable();
+            if (!causalModel.getExogenousVariables().contains(variable)) {
+                return null;
+            }
+            if (literal.phase()) {
+                bitSet.set(causalModel.getVariableId(variable));
+            }
+        }
+        return bitSet;
+    }
+
+    private BitSet encode(Set<Literal> evaluation) {
+        BitSet bitSet = new BitSet(causalModel.getVariables().size());
+        for (Literal literal : evaluation) {
+            if (literal.phase()) {
+                bitSet.set(causalModel.getVariableId(literal.variable()));
+            }
+        }
+        return bitSet;
+    }
+
+    private Set<Literal> decode(BitSet evaluation) {
+        List<Variable> variables = causalModel.getVariables();
+        Set<Literal> literals = new HashSet<>(variables.size() * 2);
+        for (int i = 0; i < variables.size(); i++) {
+            Variable variable = variables.get(i);
+            literals.add(evaluation.get(i) ? variable : variable.negate());
+        }
+        return literals;
+    }
+}
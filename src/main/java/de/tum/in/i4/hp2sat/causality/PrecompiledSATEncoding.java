@@ -0,0 +1,198 @@
+package de.tum.in.i4.hp2sat.causality;
+
+import org.logicng.datastructures.Assignment;
+import org.logicng.datastructures.Substitution;
+import org.logicng.datastructures.Tristate;
+import org.logicng.formulas.Formula;
+import org.logicng.formulas.FormulaFactory;
+import org.logicng.formulas.Literal;
+import org.logicng.formulas.Variable;
+import org.logicng.solvers.MiniSat;
+import org.logicng.solvers.SATSolver;
+import org.logicng.solvers.SolverState;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A SAT encoding of the equations of a causal model that is independent of the cause, the context and phi and is
+ * therefore built only once per causal model. For each endogenous variable V with formula F_V, it contains
+ * <ul>
+ * <li>a copy V' of V that represents its value in the actual world: V' &lt;=&gt; F_V', where F_V' refers to the
+ * copies of the endogenous variables in F_V, and</li>
+ * <li>the relaxed equation of the counterfactual world: S_V OR (V &lt;=&gt; V') OR (V &lt;=&gt; F_V), where S_V is a
+ * selector that frees V from both its original value and its equation.</li>
+ * </ul>
+ * As the exogenous variables are shared by both worlds, a query consists of the context, not(phi) and the selectors.
+ * The selectors of the cause variables are set to true, all others to false. The encoding is loaded into one SAT
+ * solver per thread and a query is passed to it as assumptions, i.e. nothing has to be added to or removed from the
+ * solver for the context and the selectors. not(phi) is added once per distinct phi and guarded by an activation
+ * literal that is only assumed by the queries for this phi.
+ * <p>
+ * Since an unnamed selector could be chosen freely by the SAT solver, each query still assumes one literal per
+ * endogenous variable, i.e. it costs O(#endogenous) assumptions in addition to O(|phi| + |context|). It does,
+ * however, neither build formulas for them nor clausify them.
+ */
+class PrecompiledSATEncoding {
+    static final String ACTUAL_VALUE_PREFIX = "_actual_";
+    static final String SELECTOR_PREFIX = "_free_";
+    static final String ACTIVATION_PREFIX = "_phi_";
+    static final int MAX_PHIS = 1 << 10; // the number of distinct phis after which a SAT solver is rebuilt
+
+    private final FormulaFactory f;
+    private final Formula cnf;
+    private final Map<Variable, Variable> selectors; // endogenous variable -> selector
+    private final List<Variable> variables; // the variables of the causal model, i.e. the ones models are projected to
+    private final ThreadLocal<Map<SATSolverType, QuerySolver>> solvers;
+
+    /**
+     * Creates the encoding for the given causal model.
+     *
+     * @param causalModel the causal model
+     */
+    PrecompiledSATEncoding(CausalModel causalModel) {
+        this.f = causalModel.getFormulaFactory();
+        this.variables = causalModel.getVariables();
+        this.selectors = new LinkedHashMap<>();
+
+        // replace each endogenous variable by its copy in the actual world
+        Substitution actualWorld = new Substitution();
+        for (Equation equation : causalModel.getEquationsSorted()) {
+            actualWorld.addMapping(equation.getVariable(),
+                    f.variable(ACTUAL_VALUE_PREFIX + equation.getVariable().name()));
+        }
+        List<Formula> formulas = new ArrayList<>();
+        for (Equation equation : causalModel.getEquationsSorted()) {
+            Variable variable = equation.getVariable();
+            Formula actualValue = actualWorld.getSubstitution(variable);
+            Variable selector = f.variable(SELECTOR_PREFIX + variable.name());
+            selectors.put(variable, selector);
+            // V' <=> F_V'
+            formulas.add(f.equivalence(actualValue, equation.getFormula().substitute(actualWorld)));
+            // S_V OR (V <=> V') OR (V <=> F_V)
+            formulas.add(f.or(selector, f.equivalence(variable, actualValue),
+                    f.equivalence(variable, equation.getFormula())));
+        }
+        this.cnf = f.and(formulas).cnf();
+        this.solvers = ThreadLocal.withInitial(() -> new EnumMap<>(SATSolverType.class));
+    }
+
+    /**
+     * Searches a model of the encoding under the given query.
+     *
+     * @param context       the context
+     * @param notPhi        the negated phi
+     * @param freeVariables the variables that neither need to follow their equation nor keep their original value,
+     *                      i.e. usually the cause
+     * @param units         additional literals that must hold, e.g. the negated cause
+     * @param satSolverType the to be used SAT solver
+     * @param handler       the handler passed to the SAT solver
+     * @return a model projected to the variables of the causal model or null if there is none
+     */
+    Assignment findModel(Set<Literal> context, Formula notPhi, Set<Variable> freeVariables,
+                         Collection<Literal> units, SATSolverType satSolverType, SolverHandler handler) {
+        QuerySolver querySolver = getQuerySolver(satSolverType);
+        List<Literal> assumptions = getAssumptions(querySolver, context, notPhi, freeVariables, units);
+        SATSolver satSolver = querySolver.satSolver;
+        return satSolver.sat(handler, assumptions) == Tristate.TRUE ? satSolver.model(variables) : null;
+    }
+
+    /**
+     * Same as {@link #findModel(Set, Formula, Set, Collection, SATSolverType, SolverHandler)}, but enumerates all
+     * models. Only the clauses blocking the enumerated models are removed from the SAT solver afterwards.
+     *
+     * @return all models projected to the variables of the causal model; empty if there is none
+     */
+    List<Assignment> enumerateModels(Set<Literal> context, Formula notPhi, Set<Variable> freeVariables,
+                                     Collection<Literal> units, SATSolverType satSolverType,
+                                     SolverHandler handler) {
+        QuerySolver querySolver = getQuerySolver(satSolverType);
+        List<Literal> assumptions = getAssumptions(querySolver, context, notPhi, freeVariables, units);
+        SATSolver satSolver = querySolver.satSolver;
+        SolverState solverState = satSolver.saveState();
+        try {
+            return handler.enumerateAllModels(satSolver, variables, f, assumptions);
+        } finally {
+            satSolver.loadState(solverState);
+        }
+    }
+
+    /**
+     * @return the equations of the causal model as CNF, i.e. the part of the encoding that is shared by all queries
+     */
+    Formula getCNF() {
+        return cnf;
+    }
+
+    /**
+     * Returns the complete SAT instance of a query, i.e. the encoding together with the query, as it is solved by
+     * {@link #findModel(Set, Formula, Set, Collection, SATSolverType, SolverHandler)}.
+     *
+     * @return the instance in CNF
+     */
+    Formula getInstance(Set<Literal> context, Formula notPhi, Set<Variable> freeVariables,
+                        Collection<Literal> units) {
+        return f.and(cnf, f.and(getQueryUnits(context, freeVariables, units)), notPhi).cnf();
+    }
+
+    /**
+     * Returns the assumptions of a query. not(phi) is added to the SAT solver, guarded by its activation literal, if it
+     * has not been queried on this SAT solver before.
+     */
+    private List<Literal> getAssumptions(QuerySolver querySolver, Set<Literal> context, Formula notPhi,
+                                         Set<Variable> freeVariables, Collection<Literal> units) {
+        Variable activation = querySolver.activations.get(notPhi);
+        if (activation == null) {
+            activation = f.variable(ACTIVATION_PREFIX + querySolver.activations.size());
+            querySolver.satSolver.add(f.implication(activation, notPhi));
+            querySolver.activations.put(notPhi, activation);
+        }
+        List<Literal> assumptions = getQueryUnits(context, freeVariables, units);
+        assumptions.add(activation);
+        return assumptions;
+    }
+
+    private List<Literal> getQueryUnits(Set<Literal> context, Set<Variable> freeVariables, Collection<Literal> units) {
+        List<Literal> literals = new ArrayList<>(context.size() + selectors.size() + units.size() + 1);
+        literals.addAll(context);
+        literals.addAll(units);
+        selectors.forEach((v, s) -> literals.add(freeVariables.contains(v) ? s : s.negate()));
+        return literals;
+    }
+
+    /**
+     * Returns the SAT solver of the current thread into which the encoding has already been loaded. Only solvers that
+     * support saving and loading their state can be used; for all others, MiniSat is used. Once not(phi) has been
+     * added for {@link #MAX_PHIS} distinct phis, the SAT solver is rebuilt to drop their clauses.
+     *
+     * @param satSolverType the requested SAT solver type
+     * @return a SAT solver together with the activation literals of the phis added to it
+     */
+    private QuerySolver getQuerySolver(SATSolverType satSolverType) {
+        SATSolverType type = satSolverType == SATSolverType.MINICARD ? satSolverType : SATSolverType.MINISAT;
+        Map<SATSolverType, QuerySolver> querySolvers = solvers.get();
+        QuerySolver querySolver = querySolvers.get(type);
+        if (querySolver == null || querySolver.activations.size() >= MAX_PHIS) {
+            SATSolver satSolver = type == SATSolverType.MINICARD ? MiniSat.miniCard(f) : MiniSat.miniSat(f);
+            satSolver.add(cnf);
+            querySolver = new QuerySolver(satSolver);
+            querySolvers.put(type, querySolver);
+        }
+        return querySolver;
+    }
+
+    private static class QuerySolver {
+        private final SATSolver satSolver;
+        private final Map<Formula, Variable> activations = new HashMap<>(); // not(phi) -> activation literal
+
+        private QuerySolver(SATSolver satSolver) {
+            this.satSolver = satSolver;
+        }
+    }
+}
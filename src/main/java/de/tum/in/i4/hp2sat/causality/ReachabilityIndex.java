@@ -0,0 +1,415 @@
+package de.tum.in.i4.hp2sat.causality;
+
+import org.logicng.formulas.Variable;
+import org.logicng.util.Pair;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Answers reachability queries on the graph of a causal model, i.e. computes the forward cone (all variables that
+ * depend on the given ones) and the backward cone (all variables the given ones depend on) of a set of variables. Both
+ * cones contain the given variables themselves. Variables are represented by their ids (see
+ * {@link CausalModel#getVariableId(Variable)}) and cones by bit sets, such that cones can be intersected by bitwise
+ * operations.
+ * <p>
+ * The edges are stored as compressed sparse rows. For models with at most {@link #CLOSURE_LIMIT} variables, the
+ * transitive closure is computed once in both directions upon the first query; a cone is then the union of the
+ * closures of its sources. As the ids are a topological order, the closure is computed in a single pass per direction.
+ * If it exceeds {@link #CLOSURE_WORDS} words in one direction, e.g. for long chains, it is dropped again.
+ * <p>
+ * For larger models, each query traverses the compressed sparse rows. The chop of two sets of variables, i.e. the
+ * intersection of the forward cone of the one and the backward cone of the other, is then computed with interval
+ * labels as in GRAIL (Yildirim et al., VLDB 2010): each of {@link #TRAVERSALS} depth-first traversals assigns each
+ * variable v the interval [low(v), post(v)] of post-order ranks in its forward cone, so a variable can only reach
+ * another one if it contains all of its intervals. Together with the topological order of the ids, this prunes the
+ * variables that cannot reach any target from the forward traversal. The index is thread-safe.
+ */
+class ReachabilityIndex {
+    /**
+     * The maximum number of variables for which the transitive closure is computed.
+     */
+    static final int CLOSURE_LIMIT = 50_000;
+    /**
+     * The maximum number of 64-bit words of the transitive closure per direction, i.e. 32 MB.
+     */
+    static final int CLOSURE_WORDS = 1 << 22;
+    /**
+     * The number of depth-first traversals that assign interval labels.
+     */
+    static final int TRAVERSALS = 2;
+
+    private final List<Variable> variables;
+    private final CausalModel causalModel;
+    private final int closureLimit;
+    // the variables whose equation refers to variable i are readers[readerOffsets[i]] to readers[readerOffsets[i+1]-1]
+    private final int[] readerOffsets;
+    private final int[] readers;
+    // the variables referred to by the equation of variable i, analogously
+    private final int[] inputOffsets;
+    private final int[] inputs;
+    private BitSet[] forwardClosure;
+    private BitSet[] backwardClosure;
+    private boolean closureExceeded;
+    // the post-order rank of variable i in traversal k is labels[2k+1][i], the minimum rank in its forward cone
+    // labels[2k][i]
+    private int[][] labels;
+
+    /**
+     * @param causalModel the causal model
+     */
+    ReachabilityIndex(CausalModel causalModel) {
+        this(causalModel, CLOSURE_LIMIT);
+    }
+
+    /**
+     * @param causalModel  the causal model
+     * @param closureLimit the maximum number of variables for which the transitive closure is computed
+     */
+    ReachabilityIndex(CausalModel causalModel, int closureLimit) {
+        this(causalModel, closureLimit, createInputs(causalModel));
+    }
+
+    /**
+     * Creates the index from the given inputs of each variable, e.g. when they have been loaded from a file.
+     *
+     * @param causalModel  the causal model
+     * @param closureLimit the maximum number of variables for which the transitive closure is computed
+     * @param inputs       the offsets and the ids of the variables referred to by the equation of each variable as
+     *                     compressed sparse rows (see {@link #getInputs()})
+     */
+    ReachabilityIndex(CausalModel causalModel, int closureLimit, Pair<int[], int[]> inputs) {
+        this.causalModel = causalModel;
+        this.closureLimit = closureLimit;
+        this.variables = causalModel.getVariables();
+        this.inputOffsets = inputs.first();
+        this.inputs = inputs.second();
+        int n = variables.size();
+        this.readerOffsets = new int[n + 1];
+        for (int input : this.inputs) {
+            readerOffsets[input + 1]++;
+        }
+        for (int i = 0; i < n; i++) {
+            readerOffsets[i + 1] += readerOffsets[i];
+        }
+        this.readers = new int[this.inputs.length];
+        int[] nextReader = new int[n];
+        System.arraycopy(readerOffsets, 0, nextReader, 0, n);
+        for (int i = 0; i < n; i++) {
+            for (int j = inputOffsets[i]; j < inputOffsets[i + 1]; j++) {
+                readers[nextReader[this.inputs[j]]++] = i;
+            }
+        }
+    }
+
+    /**
+     * @return the offsets and the ids of the variables referred to by the equation of each variable, i.e. the
+     * variables referred to by variable i are second[first[i]] to second[first[i+1]-1]
+     */
+    Pair<int[], int[]> getInputs() {
+        return new Pair<>(inputOffsets, inputs);
+    }
+
+    /**
+     * @return the offsets and the ids of the variables whose equation refers to each variable, analogously to
+     * {@link #getInputs()}
+     */
+    Pair<int[], int[]> getReaders() {
+        return new Pair<>(readerOffsets, readers);
+    }
+
+    private static Pair<int[], int[]> createInputs(CausalModel causalModel) {
+        List<Variable> variables = causalModel.getVariables();
+        int n = variables.size();
+        int[] inputOffsets = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            Equation equation = causalModel.getVariableEquationMap().get(variables.get(i));
+            inputOffsets[i + 1] = inputOffsets[i] + (equation == null ? 0 : equation.getFormula().variables().size());
+        }
+        int[] inputs = new int[inputOffsets[n]];
+        for (int i = 0; i < n; i++) {
+            Equation equation = causalModel.getVariableEquationMap().get(variables.get(i));
+            if (equation != null) {
+                int edge = inputOffsets[i];
+                for (Variable input : equation.getFormula().variables()) {
+                    inputs[edge++] = causalModel.getVariableId(input);
+                }
+            }
+        }
+        return new Pair<>(inputOffsets, inputs);
+    }
+
+    /**
+     * @param sources the variables
+     * @return the ids of all variables that are reachable from the given ones, including themselves
+     */
+    BitSet getForwardCone(Collection<Variable> sources) {
+        return getCone(sources, true);
+    }
+
+    /**
+     * @param sources the variables
+     * @return the ids of all variables from which one of the given ones is reachable, including themselves
+     */
+    BitSet getBackwardCone(Collection<Variable> sources) {
+        return getCone(sources, false);
+    }
+
+    /**
+     * Computes the chop of the given variables, i.e. the variables that are reachable from one of the sources and from
+     * which one of the targets is reachable. Without the transitive closure, only those variables are traversed from
+     * the sources whose interval labels do not rule out that a target is reachable; the backward traversal from the
+     * targets is then restricted to them.
+     *
+     * @param sources the variables whose forward cone is intersected
+     * @param targets the variables whose backward cone is intersected
+     * @return the ids of the intersection of the forward cone of the sources and the backward cone of the targets
+     */
+    BitSet getChop(Collection<Variable> sources, Collection<Variable> targets) {
+        if (getClosure(true) != null && getClosure(false) != null) {
+            BitSet chop = getCone(sources, true);
+            chop.and(getCone(targets, false));
+            return chop;
+        }
+        int[] targetIds = targets.stream().mapToInt(causalModel::getVariableId).sorted().distinct().toArray();
+        int[][] labels = getLabels();
+        BitSet candidates = new BitSet(variables.size());
+        Deque<Integer> stack = new ArrayDeque<>();
+        for (Variable source : sources) {
+            int id = causalModel.getVariableId(source);
+            if (!candidates.get(id) && mayReach(id, targetIds, labels)) {
+                candidates.set(id);
+                stack.push(id);
+            }
+        }
+        while (!stack.isEmpty()) {
+            int id = stack.pop();
+            for (int j = readerOffsets[id]; j < readerOffsets[id + 1]; j++) {
+                if (!candidates.get(readers[j]) && mayReach(readers[j], targetIds, labels)) {
+                    candidates.set(readers[j]);
+                    stack.push(readers[j]);
+                }
+            }
+        }
+        // each path from a candidate to a target consists of candidates only
+        BitSet chop = new BitSet(variables.size());
+        for (int id : targetIds) {
+            if (candidates.get(id)) {
+                chop.set(id);
+                stack.push(id);
+            }
+        }
+        while (!stack.isEmpty()) {
+            int id = stack.pop();
+            for (int j = inputOffsets[id]; j < inputOffsets[id + 1]; j++) {
+                if (candidates.get(inputs[j]) && !chop.get(inputs[j])) {
+                    chop.set(inputs[j]);
+                    stack.push(inputs[j]);
+                }
+            }
+        }
+        return chop;
+    }
+
+    /**
+     * @param id        the id of a variable
+     * @param targetIds the sorted ids of the targets
+     * @param labels    the interval labels
+     * @return false if none of the targets is reachable from the variable; true if one might be
+     */
+    private static boolean mayReach(int id, int[] targetIds, int[][] labels) {
+        // only targets with a larger id are reachable
+        int first = Arrays.binarySearch(targetIds, id);
+        if (first >= 0) {
+            return true;
+        }
+        for (int t = -first - 1; t < targetIds.length; t++) {
+            boolean contained = true;
+            for (int k = 0; k < labels.length && contained; k += 2) {
+                contained = labels[k][id] <= labels[k][targetIds[t]]
+                        && labels[k + 1][targetIds[t]] <= labels[k + 1][id];
+            }
+            if (contained) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param ids the ids of variables
+     * @return the respective variables
+     */
+    Set<Variable> toVariables(BitSet ids) {
+        Set<Variable> result = new HashSet<>(ids.cardinality() * 2);
+        for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+            result.add(variables.get(id));
+        }
+        return result;
+    }
+
+    /**
+     * @param variables the variables
+     * @return the ids of the variables
+     */
+    BitSet toIds(Collection<Variable> variables) {
+        BitSet ids = new BitSet(this.variables.size());
+        variables.forEach(v -> ids.set(causalModel.getVariableId(v)));
+        return ids;
+    }
+
+    private BitSet getCone(Collection<Variable> sources, boolean forward) {
+        BitSet cone = new BitSet(variables.size());
+        BitSet[] closure = getClosure(forward);
+        if (closure != null) {
+            sources.forEach(v -> cone.or(closure[causalModel.getVariableId(v)]));
+            return cone;
+        }
+        int[] offsets = forward ? readerOffsets : inputOffsets;
+        int[] targets = forward ? readers : inputs;
+        Deque<Integer> stack = new ArrayDeque<>();
+        for (Variable source : sources) {
+            int id = causalModel.getVariableId(source);
+            if (!cone.get(id)) {
+                cone.set(id);
+                stack.push(id);
+            }
+        }
+        while (!stack.isEmpty()) {
+            int id = stack.pop();
+            for (int j = offsets[id]; j < offsets[id + 1]; j++) {
+                if (!cone.get(targets[j])) {
+                    cone.set(targets[j]);
+                    stack.push(targets[j]);
+                }
+            }
+        }
+        return cone;
+    }
+
+    /**
+     * Returns the transitive closure in the given direction and computes it if necessary. The ids are a topological
+     * order; hence, the closures of all readers (inputs) of a variable are known once the variables are processed in
+     * descending (ascending) order.
+     *
+     * @param forward true for the forward closure, false for the backward one
+     * @return for each variable, the ids of the variables in its cone; null if the model has more than closureLimit
+     * variables or the closure in one direction exceeds {@link #CLOSURE_WORDS} words
+     */
+    private synchronized BitSet[] getClosure(boolean forward) {
+        if (variables.size() > closureLimit || closureExceeded) {
+            return null;
+        }
+        BitSet[] closure = forward ? forwardClosure : backwardClosure;
+        if (closure == null) {
+            int n = variables.size();
+            int[] offsets = forward ? readerOffsets : inputOffsets;
+            int[] targets = forward ? readers : inputs;
+            closure = new BitSet[n];
+            long words = 0;
+            for (int k = 0; k < n; k++) {
+                int i = forward ? n - 1 - k : k;
+                BitSet cone = new BitSet();
+                cone.set(i);
+                for (int j = offsets[i]; j < offsets[i + 1]; j++) {
+                    cone.or(closure[targets[j]]);
+                }
+                closure[i] = cone;
+                words += (cone.length() + 63) / 64;
+                if (words > CLOSURE_WORDS) {
+                    forwardClosure = null;
+                    backwardClosure = null;
+                    closureExceeded = true;
+                    return null;
+                }
+            }
+            if (forward) {
+                forwardClosure = closure;
+            } else {
+                backwardClosure = closure;
+            }
+        }
+        return closure;
+    }
+
+    /**
+     * Returns the interval labels and computes them if necessary. Each traversal visits the readers of the variables
+     * depth-first, the first one in the order of the ids, the others in a random order. As the ids are a topological
+     * order, the minimum post-order rank in the forward cone of each variable is known once the variables are processed
+     * in descending order.
+     *
+     * @return for each traversal k, the minimum post-order rank in the forward cone of each variable at index 2k and
+     * the post-order rank of each variable at index 2k+1
+     */
+    private synchronized int[][] getLabels() {
+        if (labels == null) {
+            int n = variables.size();
+            Random random = new Random(0);
+            int[][] labels = new int[2 * TRAVERSALS][];
+            for (int k = 0; k < TRAVERSALS; k++) {
+                int[] order = new int[n];
+                int[] children = readers.clone();
+                for (int i = 0; i < n; i++) {
+                    order[i] = i;
+                }
+                if (k > 0) {
+                    shuffle(order, 0, n, random);
+                    for (int i = 0; i < n; i++) {
+                        shuffle(children, readerOffsets[i], readerOffsets[i + 1], random);
+                    }
+                }
+                int[] post = new int[n];
+                int[] next = new int[n]; // the next edge to follow; -1 if not visited yet
+                Arrays.fill(next, -1);
+                int rank = 0;
+                Deque<Integer> stack = new ArrayDeque<>();
+                for (int root : order) {
+                    if (next[root] >= 0) {
+                        continue;
+                    }
+                    next[root] = readerOffsets[root];
+                    stack.push(root);
+                    while (!stack.isEmpty()) {
+                        int id = stack.peek();
+                        if (next[id] < readerOffsets[id + 1]) {
+                            int child = children[next[id]++];
+                            if (next[child] < 0) {
+                                next[child] = readerOffsets[child];
+                                stack.push(child);
+                            }
+                        } else {
+                            post[stack.pop()] = rank++;
+                        }
+                    }
+                }
+                int[] low = new int[n];
+                for (int i = n - 1; i >= 0; i--) {
+                    low[i] = post[i];
+                    for (int j = readerOffsets[i]; j < readerOffsets[i + 1]; j++) {
+                        low[i] = Math.min(low[i], low[readers[j]]);
+                    }
+                }
+                labels[2 * k] = low;
+                labels[2 * k + 1] = post;
+            }
+            this.labels = labels;
+        }
+        return labels;
+    }
+
+    private static void shuffle(int[] array, int from, int to, Random random) {
+        for (int i = to - 1; i > from; i--) {
+            int j = from + random.nextInt(i - from + 1);
+            int tmp = array[i];
+            array[i] = array[j];
+            array[j] = tmp;
+        }
+    }
+}
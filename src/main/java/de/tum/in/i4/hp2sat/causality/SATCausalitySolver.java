@@ -1,8 +1,12 @@
 package de.tum.in.i4.hp2sat.causality;
 
+import de.tum.in.i4.hp2sat.causality.CausalitySolverStatistics.Phase;
 import de.tum.in.i4.hp2sat.exceptions.InvalidCausalModelException;
+import org.logicng.cardinalityconstraints.CCIncrementalData;
 import org.logicng.datastructures.Assignment;
 import org.logicng.datastructures.Tristate;
+import org.logicng.formulas.CType;
+import org.logicng.formulas.FType;
 import org.logicng.formulas.Formula;
 import org.logicng.formulas.FormulaFactory;
 import org.logicng.formulas.Literal;
@@ -12,8 +16,16 @@ import org.logicng.solvers.MiniSat;
 import org.logicng.solvers.SATSolver;
 import org.logicng.util.Pair;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import static de.tum.in.i4.hp2sat.causality.SATSolverType.GLUCOSE;
@@ -23,6 +35,22 @@ import static de.tum.in.i4.hp2sat.causality.SolvingStrategy.*;
 
 class SATCausalitySolver extends CausalitySolver {
     static final String DUMMY_VAR_NAME = "_dummy";
+    static final String W_INDICATOR_PREFIX = "_inW_";
+    private static final Set<SolvingStrategy> MINIMAL_W_STRATEGIES = EnumSet.of(SAT_MINIMAL, SAT_COMBINED_MINIMAL,
+            SAT_OPTIMIZED_AC3_MINIMAL, SAT_PRECOMPILED_MINIMAL);
+    static final String AC2 = "ac2";
+    static final String AC3 = "ac3";
+    static final String AC2_AC3 = "ac2ac3";
+
+    /**
+     * The corpus to which the SAT instances of the checks performed by this solver are written; if null, the global
+     * corpus is used, if any.
+     */
+    private DimacsCorpus corpus;
+    /**
+     * The executor that checks AC3 concurrently to AC2; null if AC2 and AC3 are checked sequentially.
+     */
+    private Executor executor;
 
     /**
      * Overrides {@link CausalitySolver#solve(CausalModel, Set, Formula, Set, SolvingStrategy)}.
@@ -57,26 +85,66 @@ class SATCausalitySolver extends CausalitySolver {
     CausalitySolverResult solve(CausalModel causalModel, Set<Literal> context, Formula phi,
                                 Set<Literal> cause, SolvingStrategy solvingStrategy, SATSolverType satSolverType)
             throws InvalidCausalModelException {
+        startStatistics(solvingStrategy);
         FormulaFactory f = causalModel.getFormulaFactory();
-        Set<Literal> evaluation = CausalitySolver.evaluateEquations(causalModel, context);
+        Set<Literal> evaluation = evaluateActualWorld(causalModel, context);
         Pair<Boolean, Boolean> ac1Tuple = fulfillsAC1(evaluation, phi, cause);
         boolean ac1 = ac1Tuple.first() && ac1Tuple.second();
-        Set<Literal> w;
-        boolean ac3;
-        if (solvingStrategy == SAT_COMBINED || solvingStrategy == SAT_COMBINED_MINIMAL) {
-            Pair<Set<Literal>, Boolean> ac2ac3 = fulfillsAC2AC3(causalModel, phi, cause, context, evaluation,
-                    ac1Tuple.first(), solvingStrategy, satSolverType, f);
-            w = ac2ac3.first();
-            ac3 = ac2ac3.second();
-        } else {
-            w = fulfillsAC2(causalModel, phi, cause, context, evaluation, solvingStrategy, satSolverType, f);
-            ac3 = fulfillsAC3(causalModel, phi, cause, context, evaluation, ac1Tuple.first(), solvingStrategy,
-                    satSolverType, f);
+        Set<Literal> w = null;
+        // ACs that cannot be decided within the budget remain unknown
+        Tristate ac2 = Tristate.UNDEF;
+        Tristate ac3 = Tristate.UNDEF;
+        // W is never empty if it was computed by a SAT solver, as the empty W is always checked first
+        int wSizeLowerBound = 1;
+        try {
+            if (solvingStrategy == SAT_ANYTIME) {
+                ConcurrentAC3Check ac3Check = startConcurrentAC3Check(causalModel, phi, cause, context, evaluation,
+                        ac1Tuple.first(), solvingStrategy, satSolverType);
+                try {
+                    Pair<Set<Literal>, Integer> wAndLowerBound = fulfillsAC2Anytime(causalModel, phi, cause, context,
+                            evaluation, satSolverType, f);
+                    w = wAndLowerBound.first();
+                    wSizeLowerBound = wAndLowerBound.second();
+                    ac2 = Tristate.fromBool(w != null);
+                    ac3 = checkAC3(ac3Check, w != null, causalModel, phi, cause, context, evaluation,
+                            ac1Tuple.first(), solvingStrategy, satSolverType, f);
+                } finally {
+                    if (ac3Check != null) {
+                        ac3Check.cancel();
+                    }
+                }
+            } else if (solvingStrategy == SAT_COMBINED || solvingStrategy == SAT_COMBINED_MINIMAL) {
+                Pair<Set<Literal>, Boolean> ac2ac3 = fulfillsAC2AC3(causalModel, phi, cause, context, evaluation,
+                        ac1Tuple.first(), solvingStrategy, satSolverType, f);
+                w = ac2ac3.first();
+                ac2 = Tristate.fromBool(w != null);
+                ac3 = Tristate.fromBool(ac2ac3.second());
+            } else {
+                ConcurrentAC3Check ac3Check = startConcurrentAC3Check(causalModel, phi, cause, context, evaluation,
+                        ac1Tuple.first(), solvingStrategy, satSolverType);
+                try {
+                    w = fulfillsAC2(causalModel, phi, cause, context, evaluation, solvingStrategy, satSolverType, f);
+                    ac2 = Tristate.fromBool(w != null);
+                    ac3 = checkAC3(ac3Check, w != null, causalModel, phi, cause, context, evaluation,
+                            ac1Tuple.first(), solvingStrategy, satSolverType, f);
+                } finally {
+                    if (ac3Check != null) {
+                        ac3Check.cancel();
+                    }
+                }
+            }
+        } catch (BudgetExhaustedException e) {
+            // nothing to do; the ACs decided so far are kept
         }
-        boolean ac2 = w != null;
 
         CausalitySolverResult causalitySolverResult = new CausalitySolverResult(ac1, ac2, ac3, cause, w);
-        return causalitySolverResult;
+        if (w != null) {
+            if (w.isEmpty() || MINIMAL_W_STRATEGIES.contains(solvingStrategy)) {
+                wSizeLowerBound = w.size();
+            }
+            causalitySolverResult.setWSizeLowerBound(wSizeLowerBound);
+        }
+        return finishStatistics(causalitySolverResult);
     }
 
     /**
@@ -102,22 +170,47 @@ class SATCausalitySolver extends CausalitySolver {
         CausalModel causalModelModified = createModifiedCausalModelForCause(causalModel, cause, f);
 
         // evaluate causal model with setting x' for cause
-        Set<Literal> evaluationModified = evaluateEquations(causalModelModified, context);
+        Set<Literal> evaluationModified = evaluate(causalModelModified, context);
         // check if not(phi) evaluates to true for empty W -> if yes, no further investigation necessary
         if (negatedPhi.evaluate(new Assignment(evaluationModified))) {
             return new HashSet<>();
         }
 
+        if (solvingStrategy == SAT_PRECOMPILED || solvingStrategy == SAT_PRECOMPILED_MINIMAL) {
+            /*
+             * Instead of generating the whole SAT query, we reuse the precompiled encoding of the original causal
+             * model and only specify that the cause variables are free and flipped. */
+            PrecompiledSATEncoding encoding = getPrecompiledSATEncoding(causalModel);
+            Set<Variable> causeVariables = cause.stream().map(Literal::variable).collect(Collectors.toSet());
+            Set<Literal> causeNegated = cause.stream().map(Literal::negate).collect(Collectors.toSet());
+            SolverHandler handler = createSolverHandler();
+            exportInstance(causalModel, AC2, () -> encoding.getInstance(context, negatedPhi, causeVariables,
+                    causeNegated));
+            if (solvingStrategy == SAT_PRECOMPILED) {
+                checkBudget();
+                long start = System.nanoTime();
+                Assignment assignment = encoding.findModel(context, negatedPhi, causeVariables, causeNegated,
+                        satSolverType, handler);
+                stop(Phase.SAT_SOLVING, start);
+                handler.checkNotAborted();
+                return assignment != null ? getWStandard(causalModelModified, evaluation, assignment) : null;
+            } else {
+                checkBudget();
+                long start = System.nanoTime();
+                List<Assignment> assignments = encoding.enumerateModels(context, negatedPhi, causeVariables,
+                        causeNegated, satSolverType, handler);
+                stop(Phase.MODEL_ENUMERATION, start);
+                handler.checkNotAborted();
+                return assignments.size() > 0 ? getWMinimal(causalModelModified, evaluation, assignments) : null;
+            }
+        }
+
         SATSolver satSolver = selectSATSolver(satSolverType, f);
         // generate SAT query
         Formula formula = generateSATQuery(causalModelModified, negatedPhi, cause, context, evaluation,
                 solvingStrategy, false, f);
-        /*
-         * If we want to compute metrics of the formula, this should be done here. Notice that we need to explicitly
-         * convert the formula to CNF.
-         */
-        satSolver.add(formula);
-        if (satSolver.sat() == Tristate.TRUE) {
+        addToSATSolver(satSolver, formula, causalModel, AC2);
+        if (sat(satSolver) == Tristate.TRUE) {
             if (Arrays.asList(SAT, SAT_OPTIMIZED_AC3)
                     .contains(solvingStrategy)) {
                 // if satisfiable, get the assignment for which the formula is satisfiable
@@ -125,7 +218,7 @@ class SATCausalitySolver extends CausalitySolver {
                 return getWStandard(causalModelModified, evaluation, assignment);
             } else {
                 // if satisfiable, get the assignments for which the formula is satisfiable
-                List<Assignment> assignments = satSolver.enumerateAllModels();
+                List<Assignment> assignments = enumerateAllModels(satSolver, f);
                 return getWMinimal(causalModelModified, evaluation, assignments);
             }
         } else {
@@ -133,6 +226,97 @@ class SATCausalitySolver extends CausalitySolver {
         }
     }
 
+    /**
+     * Checks if AC2 is fulfilled and searches a W of minimum size in an anytime manner. Each variable V that is
+     * neither exogenous nor in the cause gets an indicator w_V that allows V to violate its equation if it keeps its
+     * original value. After a first W has been found without restricting its size, the number of true indicators is
+     * restricted to |W| - 1 by an incremental at-most-k constraint, which is added once and tightened after each W
+     * found. Hence, each satisfiable SAT call yields a smaller W and the first unsatisfiable one proves that the last W
+     * is of minimum size. If the budget is exhausted during this search, the smallest W found so far is returned.
+     * As the incremental constraint is only supported by MiniSat, MiniSat is used for all other SAT solvers.
+     *
+     * @param causalModel   the underlying causal model
+     * @param phi           the phi
+     * @param cause         the cause for which we check AC2
+     * @param context       the context
+     * @param evaluation    the original evaluation of variables
+     * @param satSolverType the to be used SAT solver
+     * @param f             a formula factory
+     * @return a tuple of W (null if AC2 is not fulfilled) and a lower bound for the size of a minimal W
+     * @throws InvalidCausalModelException thrown if internally generated causal models are invalid
+     * @throws BudgetExhaustedException    thrown if the budget is exhausted before any W was found
+     */
+    private Pair<Set<Literal>, Integer> fulfillsAC2Anytime(CausalModel causalModel, Formula phi, Set<Literal> cause,
+                                                           Set<Literal> context, Set<Literal> evaluation,
+                                                           SATSolverType satSolverType, FormulaFactory f)
+            throws InvalidCausalModelException {
+        Formula negatedPhi = f.not(phi);
+        CausalModel causalModelModified = createModifiedCausalModelForCause(causalModel, cause, f);
+        Set<Literal> evaluationModified = evaluate(causalModelModified, context);
+        if (negatedPhi.evaluate(new Assignment(evaluationModified))) {
+            return new Pair<>(new HashSet<>(), 0);
+        }
+
+        long start = System.nanoTime();
+        Set<Variable> causeVariables = cause.stream().map(Literal::variable).collect(Collectors.toSet());
+        Map<Variable, Literal> variableEvaluationMap = createVariableEvaluationMap(
+                causalModel.getVariableEquationMap().keySet(), evaluation);
+        List<Variable> indicators = new ArrayList<>();
+        List<Formula> formulas = new ArrayList<>();
+        formulas.add(negatedPhi);
+        formulas.add(f.and(context));
+        for (Equation equation : causalModelModified.getEquationsSorted()) {
+            Formula equationFormula = f.equivalence(equation.getVariable(), equation.getFormula());
+            if (causeVariables.contains(equation.getVariable())) {
+                formulas.add(equationFormula);
+            } else {
+                // create formula: (w_V => V_originalValue) AND (w_V OR (V <=> Formula_V))
+                Variable indicator = f.variable(W_INDICATOR_PREFIX + equation.getVariable().name());
+                indicators.add(indicator);
+                formulas.add(f.implication(indicator, variableEvaluationMap.get(equation.getVariable())));
+                formulas.add(f.or(indicator, equationFormula));
+            }
+        }
+        stop(Phase.ENCODING, start);
+        MiniSat satSolver = satSolverType == MINICARD ? MiniSat.miniCard(f) : MiniSat.miniSat(f);
+        addToSATSolver(satSolver, f.and(formulas), causalModel, AC2);
+
+        // find a first W without restricting its size
+        if (sat(satSolver) == Tristate.FALSE) {
+            return new Pair<>(null, 0);
+        }
+        Set<Literal> w = getWMinimal(causalModelModified, evaluation, Collections.singletonList(satSolver.model()));
+        // W is not empty, as this has been checked by evaluating the modified causal model
+        int wSizeLowerBound = 1;
+        CCIncrementalData atMostK = null;
+        try {
+            // search for a smaller W until there is none
+            while (w.size() > wSizeLowerBound) {
+                int k = w.size() - 1;
+                start = System.nanoTime();
+                if (atMostK != null) {
+                    atMostK.newUpperBoundForSolver(k);
+                } else if (k > 1) {
+                    atMostK = satSolver.addIncrementalCC(f.cc(CType.LE, k, indicators));
+                } else {
+                    // LogicNG has no incremental encoding of at-most-one; it is added as is and never tightened again
+                    satSolver.add(f.cc(CType.LE, k, indicators));
+                }
+                stop(Phase.ENCODING, start);
+                if (sat(satSolver) == Tristate.FALSE) {
+                    // there is no W of size k
+                    wSizeLowerBound = w.size();
+                    break;
+                }
+                w = getWMinimal(causalModelModified, evaluation, Collections.singletonList(satSolver.model()));
+            }
+        } catch (BudgetExhaustedException e) {
+            // return the smallest W found so far
+            return new Pair<>(w, wSizeLowerBound);
+        }
+        return new Pair<>(w, w.size());
+    }
+
     /**
      * Checks if AC3 is fulfilled.
      *
@@ -151,10 +335,25 @@ class SATCausalitySolver extends CausalitySolver {
                                 SATSolverType satSolverType, FormulaFactory f) {
         // if the cause has a size of one, i.e. a singleton-cause, then AC3 is fulfilled automatically
         if (cause.size() > 1 && phiOccurred) {
-            // get specified SAT solver
-            SATSolver satSolver = selectSATSolver(satSolverType, f);
             // negate phi
             Formula phiNegated = f.not(phi);
+            if (solvingStrategy == SAT_PRECOMPILED || solvingStrategy == SAT_PRECOMPILED_MINIMAL) {
+                // the cause variables are free, i.e. they may keep their original value or not
+                Set<Variable> causeVariables = cause.stream().map(Literal::variable).collect(Collectors.toSet());
+                PrecompiledSATEncoding encoding = getPrecompiledSATEncoding(causalModel);
+                exportInstance(causalModel, AC3, () -> encoding.getInstance(context, phiNegated, causeVariables,
+                        Collections.emptySet()));
+                SolverHandler handler = createSolverHandler();
+                checkBudget();
+                long start = System.nanoTime();
+                List<Assignment> assignments = encoding.enumerateModels(context, phiNegated, causeVariables,
+                        Collections.emptySet(), satSolverType, handler);
+                stop(Phase.MODEL_ENUMERATION, start);
+                handler.checkNotAborted();
+                return fulfillsAC3Helper(causalModel, phi, cause, evaluation, assignments);
+            }
+            // get specified SAT solver
+            SATSolver satSolver = selectSATSolver(satSolverType, f);
             // generate SAT query for AC3
             Formula formula = generateSATQuery(causalModel, phiNegated, cause, context, evaluation, solvingStrategy,
                     true, f);
@@ -186,13 +385,9 @@ class SATCausalitySolver extends CausalitySolver {
                 // add negated formulas by AND
                 formula = f.and(formula, f.not(formula1), f.not(formula2), f.not(formula3));
             }
-            /*
-             * If we want to compute metrics of the formula, this should be done here. Notice that we need to explicitly
-             * convert the formula to CNF.
-             */
             // add query to solver
-            satSolver.add(formula);
-            if (satSolver.sat() == Tristate.TRUE) {
+            addToSATSolver(satSolver, formula, causalModel, AC3);
+            if (sat(satSolver) == Tristate.TRUE) {
                 if ((solvingStrategy == SAT_OPTIMIZED_AC3 || solvingStrategy == SAT_OPTIMIZED_AC3_MINIMAL)) {
                     /*
                      * We make sure that the generated formula is only satisfiable, if the variables in the cause
@@ -204,7 +399,7 @@ class SATCausalitySolver extends CausalitySolver {
                     return false;
                 } else {
                     // get the assignments for which the formula is satisfiable
-                    List<Assignment> assignments = satSolver.enumerateAllModels().stream()
+                    List<Assignment> assignments = enumerateAllModels(satSolver, f).stream()
                             .filter(a -> a.literals().contains(f.variable(DUMMY_VAR_NAME)))
                             .collect(Collectors.toList());
                     return fulfillsAC3Helper(causalModel, phi, cause, evaluation, assignments);
@@ -314,7 +509,7 @@ class SATCausalitySolver extends CausalitySolver {
             // create copy of original causal model
             CausalModel causalModelModified = createModifiedCausalModelForCause(causalModel, cause, f);
             // evaluate causal model with setting x' for cause
-            Set<Literal> evaluationModified = evaluateEquations(causalModelModified, context);
+            Set<Literal> evaluationModified = evaluate(causalModelModified, context);
             // check if not(phi) evaluates to true for empty W
             if (phiNegated.evaluate(new Assignment(evaluationModified))) {
                 w = new HashSet<>();
@@ -327,17 +522,13 @@ class SATCausalitySolver extends CausalitySolver {
                 // generate SAT query for AC3 as this SAT query contains also the satisfying assignments for AC2
                 Formula formula = generateSATQuery(causalModel, phiNegated, cause, context, evaluation,
                         solvingStrategy, true, f);
-                /*
-                 * If we want to compute metrics of the formula, this should be done here. Notice that we need to
-                 * explicitly convert the formula to CNF.
-                 */
                 // add query to solver
-                satSolver.add(formula);
-                if (satSolver.sat() == Tristate.TRUE) {
+                addToSATSolver(satSolver, formula, causalModel, AC2_AC3);
+                if (sat(satSolver) == Tristate.TRUE) {
                     // flip/negate the cause
                     Set<Literal> causeNegated = cause.stream().map(Literal::negate).collect(Collectors.toSet());
                     // get all satisfying assignments
-                    List<Assignment> assignments = satSolver.enumerateAllModels().stream()
+                    List<Assignment> assignments = enumerateAllModels(satSolver, f).stream()
                             .filter(a -> a.literals().contains(f.variable(DUMMY_VAR_NAME)))
                             .collect(Collectors.toList());
 
@@ -460,6 +651,7 @@ class SATCausalitySolver extends CausalitySolver {
     private Formula generateSATQuery(CausalModel causalModel, Formula notPhi, Set<Literal> cause,
                                      Set<Literal> context, Set<Literal> evaluation, SolvingStrategy solvingStrategy,
                                      boolean ac3, FormulaFactory f) {
+        long start = System.nanoTime();
         // get all variables in cause
         Set<Variable> causeVariables = cause.stream().map(Literal::variable).collect(Collectors.toSet());
         // create map of variables and corresponding evaluation
@@ -525,9 +717,250 @@ class SATCausalitySolver extends CausalitySolver {
             }
 
         }
+        stop(Phase.ENCODING, start);
         return formula;
     }
 
+    /**
+     * Converts the given formula to CNF and adds it to the SAT solver. Records the time of both steps and the size of
+     * the CNF.
+     *
+     * @param satSolver   the SAT solver
+     * @param formula     the formula
+     * @param causalModel the causal model of the check
+     * @param check       the kind of check the formula belongs to, i.e. {@link #AC2}, {@link #AC3} or
+     *                    {@link #AC2_AC3}
+     */
+    private void addToSATSolver(SATSolver satSolver, Formula formula, CausalModel causalModel, String check) {
+        long start = System.nanoTime();
+        // the SAT solver would convert the formula to CNF anyway; we do it explicitly to obtain its size
+        Formula cnf = formula.cnf();
+        stop(Phase.CNF_CONVERSION, start);
+        exportInstance(causalModel, check, () -> cnf);
+        start = System.nanoTime();
+        satSolver.add(cnf);
+        stop(Phase.ENCODING, start);
+        if (statistics != null) {
+            long clauses = cnf.type() == FType.AND ? cnf.numberOfOperands() : cnf.type() == FType.TRUE ? 0 : 1;
+            statistics.addFormulaSize(clauses, cnf.variables().size());
+        }
+    }
+
+    /**
+     * Submits the AC3 check to the executor of this solver, if any. The check runs on a copy of the causal model with
+     * its own formula factory and on a solver instance of its own with a budget derived from the budget of this
+     * solver. The formulas are imported into the formula factory of the copy by the current thread, as neither formula
+     * factories nor the caches of formulas are thread-safe.
+     *
+     * @return the AC3 check; null if AC2 and AC3 are checked sequentially
+     */
+    private ConcurrentAC3Check startConcurrentAC3Check(CausalModel causalModel, Formula phi, Set<Literal> cause,
+                                                       Set<Literal> context, Set<Literal> evaluation,
+                                                       boolean phiOccurred, SolvingStrategy solvingStrategy,
+                                                       SATSolverType satSolverType) {
+        // AC3 is fulfilled trivially for singleton causes or if phi did not occur; nothing to run concurrently
+        if (executor == null || cause.size() < 2 || !phiOccurred) {
+            return null;
+        }
+        CausalModel copy = causalModel.acquireThreadCopy();
+        FormulaFactory g = copy.getFormulaFactory();
+        SATCausalitySolver ac3Solver = new SATCausalitySolver();
+        ac3Solver.statistics = statistics;
+        ac3Solver.budget = new Budget(budget);
+        ac3Solver.corpus = corpus;
+        Formula phiCopy = g.importFormula(phi);
+        Set<Literal> causeCopy = importLiterals(cause, g);
+        Set<Literal> contextCopy = importLiterals(context, g);
+        Set<Literal> evaluationCopy = importLiterals(evaluation, g);
+        ConcurrentAC3Check ac3Check = new ConcurrentAC3Check(causalModel, copy, ac3Solver, () ->
+                ac3Solver.fulfillsAC3(copy, phiCopy, causeCopy, contextCopy, evaluationCopy, true, solvingStrategy,
+                        satSolverType, g));
+        try {
+            executor.execute(ac3Check::runConcurrently);
+        } catch (RejectedExecutionException e) {
+            // AC3 is checked by the current thread once AC2 is decided
+        }
+        return ac3Check;
+    }
+
+    /**
+     * Returns the result of the AC3 check. Without an executor, AC3 is checked now. If AC2 is not fulfilled, the
+     * concurrent AC3 check is cancelled and AC3 is unknown unless it has already been decided. If the executor has not
+     * started the concurrent check yet, AC3 is checked by the current thread.
+     *
+     * @param ac3Check the concurrent AC3 check; null if there is none
+     * @param ac2      true if AC2 is fulfilled
+     * @return the state of AC3
+     */
+    private Tristate checkAC3(ConcurrentAC3Check ac3Check, boolean ac2, CausalModel causalModel, Formula phi,
+                              Set<Literal> cause, Set<Literal> context, Set<Literal> evaluation,
+                              boolean phiOccurred, SolvingStrategy solvingStrategy, SATSolverType satSolverType,
+                              FormulaFactory f) {
+        if (ac3Check != null && (!ac2 || ac3Check.isStarted())) {
+            if (!ac2 && !ac3Check.result.isDone()) {
+                // the cause is no cause regardless of AC3
+                return Tristate.UNDEF;
+            }
+            try {
+                return Tristate.fromBool(ac3Check.result.join());
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+        return Tristate.fromBool(fulfillsAC3(causalModel, phi, cause, context, evaluation, phiOccurred,
+                solvingStrategy, satSolverType, f));
+    }
+
+    private static Set<Literal> importLiterals(Set<Literal> literals, FormulaFactory f) {
+        return literals.stream().map(l -> (Literal) f.importFormula(l)).collect(Collectors.toSet());
+    }
+
+    /**
+     * Sets the executor that checks AC3 concurrently to AC2 in all subsequent checks performed by this solver, see
+     * {@link CausalModel#isCause(Set, Formula, Set, SolvingStrategy, SATSolverType, Budget, Executor)}.
+     *
+     * @param executor the executor; null to check AC2 and AC3 sequentially
+     */
+    void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * An AC3 check that is either run by an executor or, if the executor has not started it by the time its result is
+     * needed, not at all. Whoever claims the check first decides where it runs, such that neither runs it twice.
+     */
+    private static class ConcurrentAC3Check {
+        private final CausalModel causalModel;
+        private final CausalModel copy;
+        private final SATCausalitySolver ac3Solver;
+        private final Supplier<Boolean> check;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        private ConcurrentAC3Check(CausalModel causalModel, CausalModel copy, SATCausalitySolver ac3Solver,
+                                   Supplier<Boolean> check) {
+            this.causalModel = causalModel;
+            this.copy = copy;
+            this.ac3Solver = ac3Solver;
+            this.check = check;
+        }
+
+        /**
+         * Runs the check unless it has been claimed already. Called by the executor.
+         */
+        private void runConcurrently() {
+            if (!claimed.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                result.complete(check.get());
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            } finally {
+                causalModel.releaseThreadCopy(copy);
+            }
+        }
+
+        /**
+         * @return true if the executor has started the check; false if the check is claimed by the caller instead
+         */
+        private boolean isStarted() {
+            if (claimed.compareAndSet(false, true)) {
+                causalModel.releaseThreadCopy(copy);
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Cancels the check, if running, or prevents that it is started.
+         */
+        private void cancel() {
+            if (claimed.compareAndSet(false, true)) {
+                causalModel.releaseThreadCopy(copy);
+            }
+            ac3Solver.budget.cancel();
+        }
+    }
+
+    /**
+     * Sets the corpus to which the SAT instances of all subsequent checks performed by this solver are written.
+     *
+     * @param corpus the corpus; null to use the global corpus, if any
+     */
+    void setCorpus(DimacsCorpus corpus) {
+        this.corpus = corpus;
+    }
+
+    /**
+     * Writes the given SAT instance to the corpus of this solver or the global corpus, if any. The time needed is not
+     * part of the statistics.
+     *
+     * @param causalModel the causal model of the check
+     * @param check       the kind of check the instance belongs to
+     * @param cnf         supplies the instance in CNF; only called if there is a corpus
+     * @throws UncheckedIOException thrown if the instance cannot be written
+     */
+    private void exportInstance(CausalModel causalModel, String check, Supplier<Formula> cnf) {
+        DimacsCorpus corpus = this.corpus != null ? this.corpus : DimacsCorpus.getGlobal();
+        if (corpus != null) {
+            try {
+                corpus.write(causalModel, check, statistics != null ? statistics.getSolvingStrategy() : null,
+                        cnf.get());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Same as {@link SATSolver#sat()}, but collects statistics and respects the budget.
+     *
+     * @param satSolver the SAT solver
+     * @return the result of the SAT solver; never {@link Tristate#UNDEF}
+     * @throws BudgetExhaustedException thrown if the budget is exhausted before the SAT solver finished
+     */
+    private Tristate sat(SATSolver satSolver) {
+        checkBudget();
+        SolverHandler handler = createSolverHandler();
+        long start = System.nanoTime();
+        Tristate result = satSolver.sat(handler);
+        stop(Phase.SAT_SOLVING, start);
+        handler.checkNotAborted();
+        return result;
+    }
+
+    /**
+     * Same as {@link SATSolver#enumerateAllModels()}, but collects statistics and respects the budget.
+     *
+     * @param satSolver the SAT solver
+     * @param f         a formula factory
+     * @return all satisfying assignments
+     * @throws BudgetExhaustedException thrown if the budget is exhausted before all assignments were enumerated
+     */
+    private List<Assignment> enumerateAllModels(SATSolver satSolver, FormulaFactory f) {
+        checkBudget();
+        SolverHandler handler = createSolverHandler();
+        long start = System.nanoTime();
+        List<Assignment> assignments = handler.enumerateAllModels(satSolver, null, f);
+        stop(Phase.MODEL_ENUMERATION, start);
+        handler.checkNotAborted();
+        return assignments;
+    }
+
+    /**
+     * Returns the precompiled SAT encoding of the given causal model. Its creation is part of the encoding phase.
+     *
+     * @param causalModel the causal model
+     * @return the precompiled SAT encoding
+     */
+    private PrecompiledSATEncoding getPrecompiledSATEncoding(CausalModel causalModel) {
+        long start = System.nanoTime();
+        PrecompiledSATEncoding encoding = causalModel.getPrecompiledSATEncoding();
+        stop(Phase.ENCODING, start);
+        return encoding;
+    }
+
     /**
      * Return a SAT solver instance depending on the given type.
      *
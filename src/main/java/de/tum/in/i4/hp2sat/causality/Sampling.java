@@ -0,0 +1,141 @@
+package de.tum.in.i4.hp2sat.causality;
+
+/**
+ * Configures the estimation of the degree of blame by sampling contexts (see {@link CausalModel#estimateBlame}). The
+ * sampling stops as soon as the confidence interval of the estimate is tight enough, the maximum number of samples has
+ * been drawn or the budget is exhausted, whichever comes first.
+ */
+public class Sampling {
+    /**
+     * The number of samples that are drawn at least before the sampling stops early; smaller samples underestimate the
+     * variance too often.
+     */
+    static final int MIN_SAMPLES = 30;
+
+    private int maxSamples = 10000;
+    private double maxHalfWidth = 0;
+    private double confidence = 0.95;
+    private int threads = 1;
+    private long seed = 0;
+    private SolvingStrategy solvingStrategy = SolvingStrategy.SAT_MINIMAL;
+    private Budget budget;
+
+    /**
+     * Creates a configuration that draws 10000 samples on a single thread and computes 95% confidence intervals.
+     */
+    public Sampling() {
+    }
+
+    /**
+     * @param maxSamples the maximum number of sampled contexts; at least 1
+     * @return this configuration
+     * @throws IllegalArgumentException thrown if maxSamples is less than 1
+     */
+    public Sampling withMaxSamples(int maxSamples) {
+        if (maxSamples < 1) {
+            throw new IllegalArgumentException("The maximum number of samples must be positive");
+        }
+        this.maxSamples = maxSamples;
+        return this;
+    }
+
+    /**
+     * @param maxHalfWidth the sampling stops once the half width of the confidence interval is at most this value;
+     *                     must be positive. By default, the sampling does not stop early.
+     * @return this configuration
+     * @throws IllegalArgumentException thrown if maxHalfWidth is not positive
+     */
+    public Sampling withMaxHalfWidth(double maxHalfWidth) {
+        if (!(maxHalfWidth > 0)) {
+            throw new IllegalArgumentException("The maximum half width must be positive");
+        }
+        this.maxHalfWidth = maxHalfWidth;
+        return this;
+    }
+
+    /**
+     * @param confidence the confidence level of the interval, e.g. 0.95; strictly between 0 and 1
+     * @return this configuration
+     * @throws IllegalArgumentException thrown if confidence is not strictly between 0 and 1
+     */
+    public Sampling withConfidence(double confidence) {
+        if (!(confidence > 0 && confidence < 1)) {
+            throw new IllegalArgumentException("The confidence must be strictly between 0 and 1");
+        }
+        this.confidence = confidence;
+        return this;
+    }
+
+    /**
+     * @param threads the number of threads that check the sampled contexts in parallel; each thread works on its own
+     *                copy of the causal model; at least 1
+     * @return this configuration
+     * @throws IllegalArgumentException thrown if threads is less than 1
+     */
+    public Sampling withThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("The number of threads must be positive");
+        }
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * @param seed the seed of the sampled contexts; the i-th sampled context only depends on the seed and i. As
+     *             several threads might finish in different orders, the number of samples can still vary if the
+     *             sampling stops early.
+     * @return this configuration
+     */
+    public Sampling withSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * @param solvingStrategy the strategy used to check each sampled context; should compute a minimal W, as the
+     *                        degree of responsibility is overestimated otherwise
+     * @return this configuration
+     */
+    public Sampling withSolvingStrategy(SolvingStrategy solvingStrategy) {
+        this.solvingStrategy = solvingStrategy;
+        return this;
+    }
+
+    /**
+     * @param budget the budget of the whole estimation; the estimate is computed from the samples checked before it
+     *               is exhausted
+     * @return this configuration
+     */
+    public Sampling withBudget(Budget budget) {
+        this.budget = budget;
+        return this;
+    }
+
+    int getMaxSamples() {
+        return maxSamples;
+    }
+
+    double getMaxHalfWidth() {
+        return maxHalfWidth;
+    }
+
+    double getConfidence() {
+        return confidence;
+    }
+
+    int getThreads() {
+        return threads;
+    }
+
+    long getSeed() {
+        return seed;
+    }
+
+    SolvingStrategy getSolvingStrategy() {
+        return solvingStrategy;
+    }
+
+    Budget getBudget() {
+        return budget;
+    }
+}
@@ -0,0 +1,128 @@
+package de.tum.in.i4.hp2sat.causality;
+
+import org.logicng.datastructures.Assignment;
+import org.logicng.datastructures.Tristate;
+import org.logicng.formulas.FormulaFactory;
+import org.logicng.formulas.Literal;
+import org.logicng.formulas.Variable;
+import org.logicng.handlers.ModelEnumerationHandler;
+import org.logicng.handlers.SATHandler;
+import org.logicng.solvers.SATSolver;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Handler passed to the SAT solvers during a causality check. Counts conflicts and enumerated models in the
+ * statistics of the check and aborts the SAT solver once the budget of the check is exhausted.
+ */
+class SolverHandler implements SATHandler, ModelEnumerationHandler {
+    private final CausalitySolverStatistics statistics;
+    private final Budget budget;
+    private boolean aborted = false;
+    private boolean enumerating = false;
+
+    /**
+     * @param statistics the statistics to be updated; may be null
+     * @param budget     the budget of the check; may be null
+     */
+    SolverHandler(CausalitySolverStatistics statistics, Budget budget) {
+        this.statistics = statistics;
+        this.budget = budget;
+    }
+
+    @Override
+    public boolean detectedConflict() {
+        if (statistics != null) {
+            statistics.incrementConflicts();
+        }
+        if (budget != null && !budget.consumeConflict()) {
+            aborted = true;
+        }
+        return !aborted;
+    }
+
+    @Override
+    public void startedSolving() {
+        if (statistics != null && !enumerating) {
+            statistics.incrementSATCalls();
+        }
+    }
+
+    @Override
+    public void finishedSolving() {
+    }
+
+    @Override
+    public boolean foundModel(Assignment assignment) {
+        if (statistics != null) {
+            statistics.incrementModelsEnumerated();
+        }
+        if (budget != null && !budget.consumeModel()) {
+            aborted = true;
+        }
+        return !aborted;
+    }
+
+    /**
+     * Enumerates all models of the given SAT solver. Without a budget, this is the same as
+     * {@link SATSolver#enumerateAllModels(Collection, ModelEnumerationHandler)}. With a budget, the models are
+     * enumerated by explicit SAT calls and blocking clauses such that the enumeration can also be aborted while the
+     * SAT solver searches for the next model; LogicNG does not pass the handler to these calls. The blocking clauses
+     * remain in the SAT solver.
+     *
+     * @param satSolver the SAT solver
+     * @param variables the variables the models are projected to; null for all variables known by the SAT solver
+     * @param f         a formula factory
+     * @return all models found before the enumeration has been completed or aborted
+     */
+    List<Assignment> enumerateAllModels(SATSolver satSolver, Collection<Variable> variables, FormulaFactory f) {
+        if (budget == null) {
+            return satSolver.enumerateAllModels(variables, this);
+        }
+        return enumerateAllModels(satSolver, variables, f, Collections.emptyList());
+    }
+
+    /**
+     * Enumerates all models of the given SAT solver under the given assumptions by explicit SAT calls and blocking
+     * clauses, as LogicNG's enumeration does not take assumptions. The blocking clauses remain in the SAT solver.
+     *
+     * @param satSolver   the SAT solver
+     * @param variables   the variables the models are projected to; null for all variables known by the SAT solver
+     * @param f           a formula factory
+     * @param assumptions the literals assumed by each SAT call
+     * @return all models found before the enumeration has been completed or aborted
+     */
+    List<Assignment> enumerateAllModels(SATSolver satSolver, Collection<Variable> variables, FormulaFactory f,
+                                        Collection<Literal> assumptions) {
+        List<Assignment> assignments = new ArrayList<>();
+        enumerating = true;
+        try {
+            while (!aborted && satSolver.sat(this, assumptions) == Tristate.TRUE) {
+                Assignment assignment = variables == null ? satSolver.model() : satSolver.model(variables);
+                assignments.add(assignment);
+                if (!foundModel(assignment) || assignment.size() == 0) {
+                    break;
+                }
+                satSolver.add(f.or(assignment.literals().stream().map(Literal::negate)
+                        .collect(Collectors.toList())));
+            }
+        } finally {
+            enumerating = false;
+        }
+        return assignments;
+    }
+
+    /**
+     * Throws a {@link BudgetExhaustedException} if the SAT solver was aborted by this handler, i.e. if its result is
+     * incomplete.
+     */
+    void checkNotAborted() {
+        if (aborted) {
+            throw new BudgetExhaustedException();
+        }
+    }
+}
@@ -2,5 +2,6 @@ package de.tum.in.i4.hp2sat.causality;
 
 public enum SolvingStrategy {
     BRUTE_FORCE, SAT, SAT_MINIMAL, SAT_COMBINED, SAT_COMBINED_MINIMAL, 
-       SAT_OPTIMIZED_AC3,  SAT_OPTIMIZED_AC3_MINIMAL
+       SAT_OPTIMIZED_AC3,  SAT_OPTIMIZED_AC3_MINIMAL, SAT_PRECOMPILED, SAT_PRECOMPILED_MINIMAL,
+       SAT_ANYTIME, BDD
 }
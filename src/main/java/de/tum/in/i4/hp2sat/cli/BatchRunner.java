@@ -0,0 +1,241 @@
+package de.tum.in.i4.hp2sat.cli;
+
+import de.tum.in.i4.hp2sat.causality.Budget;
+import de.tum.in.i4.hp2sat.causality.CausalModel;
+import de.tum.in.i4.hp2sat.causality.CausalModelFile;
+import de.tum.in.i4.hp2sat.causality.CausalModelParser;
+import de.tum.in.i4.hp2sat.causality.CausalitySolverStatistics.Phase;
+import de.tum.in.i4.hp2sat.causality.SATSolverType;
+import de.tum.in.i4.hp2sat.causality.SolvingStrategy;
+import de.tum.in.i4.hp2sat.exceptions.InvalidCausalModelException;
+import org.logicng.formulas.FormulaFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a batch of causality checks from the command line:
+ * <pre>
+ * java -jar hp2sat-1.0-jar-with-dependencies.jar --model model.txt --queries queries.txt [options]
+ * </pre>
+ * The model is either a text file (see {@link CausalModelParser}) or, if its name ends with {@code .hp2s}, a binary
+ * file (see {@link CausalModelFile}). The query file contains one query per line:
+ * <pre>
+ * # [id:] context ; phi ; cause
+ * incident-1: BT_exo, ST_exo ; BS ; ST
+ * incident-2: BT_exo, ~ST_exo ; BS | SH ; BT, ~ST
+ * </pre>
+ * The context and the cause are comma-separated literals, where {@code ~} negates a variable; exogenous variables that
+ * are not part of the context are false. Phi is a formula in the syntax of LogicNG. If the id is omitted, the line
+ * number is used.
+ * <p>
+ * For each query, the result is written as a JSON object per line (default) or as a row of a CSV file. It contains the
+ * ACs, W, the wall-clock time of the check and the time spent in each {@link Phase}. Queries are checked in parallel
+ * by the given number of threads on platform threads or, with {@code --executor virtual}, on virtual threads (see
+ * {@link QueryExecutor}); each check works on a copy of the model, as formula factories are not thread-safe. The
+ * results are written in the order of the queries. Queries that fail, e.g. due to an invalid cause, are reported with
+ * an error and do not stop the batch.
+ * <p>
+ * The exit code is 0 if all queries were checked, 1 if at least one query failed and 2 if the arguments, the model or
+ * the query file are invalid.
+ */
+public class BatchRunner {
+    private static final String USAGE = "Usage: --model <file> --queries <file> [--output <file>] "
+            + "[--format jsonl|csv] [--strategy " + Arrays.toString(SolvingStrategy.values()) + "] "
+            + "[--solver " + Arrays.toString(SATSolverType.values()) + "] [--threads <n>] "
+            + "[--executor platform|virtual] [--timeout <seconds>]";
+
+    private Path modelPath;
+    private Path queriesPath;
+    private Path outputPath;
+    private boolean csv = false;
+    private SolvingStrategy solvingStrategy = SolvingStrategy.SAT;
+    private SATSolverType satSolverType = SATSolverType.MINISAT;
+    private int threads = 1;
+    private boolean virtualThreads = false;
+    private long timeout = 0; // in seconds; 0 if unlimited
+
+    public static void main(String[] args) {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    /**
+     * Runs the batch described by the given arguments.
+     *
+     * @param args the command line arguments
+     * @param out  the stream the results are written to unless an output file is given
+     * @param err  the stream errors are reported to
+     * @return the exit code
+     */
+    static int run(String[] args, PrintStream out, PrintStream err) {
+        BatchRunner batchRunner = new BatchRunner();
+        try {
+            batchRunner.parseArguments(args);
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.println(USAGE);
+            return 2;
+        }
+        try {
+            return batchRunner.run(out, err);
+        } catch (IOException | UncheckedIOException e) {
+            err.println("I/O error: " + e.getMessage());
+            return 2;
+        } catch (InvalidCausalModelException e) {
+            err.println("Invalid causal model: " + e.getMessage());
+            return 2;
+        } catch (InvalidQueryException e) {
+            err.println("Invalid query file: " + e.getMessage());
+            return 2;
+        } catch (ExecutionException e) {
+            // errors of single queries are reported as rows; only errors such as a StackOverflowError get here
+            err.println("Query failed: " + e.getCause());
+            return 2;
+        }
+    }
+
+    private void parseArguments(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value of " + option);
+            }
+            String value = args[++i];
+            try {
+                switch (option) {
+                    case "--model":
+                        modelPath = Paths.get(value);
+                        break;
+                    case "--queries":
+                        queriesPath = Paths.get(value);
+                        break;
+                    case "--output":
+                        outputPath = Paths.get(value);
+                        break;
+                    case "--format":
+                        if (!value.equals("jsonl") && !value.equals("csv")) {
+                            throw new IllegalArgumentException("Unknown format " + value);
+                        }
+                        csv = value.equals("csv");
+                        break;
+                    case "--strategy":
+                        solvingStrategy = SolvingStrategy.valueOf(value.toUpperCase(Locale.ROOT));
+                        break;
+                    case "--solver":
+                        satSolverType = SATSolverType.valueOf(value.toUpperCase(Locale.ROOT));
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(value);
+                        if (threads < 1) {
+                            throw new IllegalArgumentException("The number of threads must be positive");
+                        }
+                        break;
+                    case "--executor":
+                        if (!value.equals("platform") && !value.equals("virtual")) {
+                            throw new IllegalArgumentException("Unknown executor " + value);
+                        }
+                        virtualThreads = value.equals("virtual");
+                        break;
+                    case "--timeout":
+                        timeout = Long.parseLong(value);
+                        if (timeout < 0) {
+                            throw new IllegalArgumentException("The timeout must not be negative");
+                        }
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + option);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid value of " + option + ": " + value);
+            }
+        }
+        if (modelPath == null || queriesPath == null) {
+            throw new IllegalArgumentException("Both --model and --queries are required");
+        }
+    }
+
+    private int run(PrintStream out, PrintStream err)
+            throws IOException, InvalidCausalModelException, InvalidQueryException, ExecutionException {
+        List<Query> queries = readQueries(queriesPath);
+        CausalModel causalModel = loadModel(modelPath);
+        QueryExecutor queryExecutor = virtualThreads ? QueryExecutor.virtualThreads(threads)
+                : QueryExecutor.platformThreads(threads);
+        if (virtualThreads && !queryExecutor.isVirtual()) {
+            err.println(QueryExecutor.NO_VIRTUAL_THREADS);
+        }
+        int failed = 0;
+        try (Writer writer = outputPath != null ? Files.newBufferedWriter(outputPath, StandardCharsets.UTF_8)
+                : new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+            List<Future<Map<String, Object>>> results = new ArrayList<>(queries.size());
+            for (Query query : queries) {
+                results.add(queryExecutor.getExecutorService().submit(() -> queryExecutor.check(causalModel,
+                        queryChecker -> queryChecker.check(query, solvingStrategy, satSolverType,
+                                timeout > 0 ? new Budget().withTimeout(timeout, TimeUnit.SECONDS) : null))));
+            }
+            if (csv) {
+                writer.write(String.join(",", QueryChecker.createRow(null, null).keySet()) + "\n");
+            }
+            for (Future<Map<String, Object>> result : results) {
+                Map<String, Object> row = result.get();
+                if (row.get("error") != null) {
+                    failed++;
+                }
+                writer.write(csv ? QueryChecker.toCSV(row) : QueryChecker.toJSON(row));
+                writer.write('\n');
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        } finally {
+            queryExecutor.shutdownNow();
+        }
+        return failed == 0 ? 0 : 1;
+    }
+
+    /**
+     * Loads a text model file or, if its name ends with {@code .hp2s}, a binary model file.
+     *
+     * @param path the file
+     * @return the causal model with a new formula factory
+     * @throws IOException                 thrown if the file cannot be read
+     * @throws InvalidCausalModelException thrown if the file does not contain a valid causal model
+     */
+    static CausalModel loadModel(Path path) throws IOException, InvalidCausalModelException {
+        FormulaFactory f = new FormulaFactory();
+        return path.getFileName().toString().endsWith(".hp2s") ? CausalModelFile.read(path, f)
+                : CausalModelParser.parse(path, f);
+    }
+
+    private static List<Query> readQueries(Path path) throws IOException, InvalidQueryException {
+        List<Query> queries = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                Query query = Query.parse(line, lineNumber, true);
+                if (query != null) {
+                    queries.add(query);
+                }
+            }
+        }
+        return queries;
+    }
+}
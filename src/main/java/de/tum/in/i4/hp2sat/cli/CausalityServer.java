@@ -0,0 +1,536 @@
+package de.tum.in.i4.hp2sat.cli;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import de.tum.in.i4.hp2sat.causality.Budget;
+import de.tum.in.i4.hp2sat.causality.CausalModel;
+import de.tum.in.i4.hp2sat.causality.CausalitySolverMetrics;
+import de.tum.in.i4.hp2sat.causality.SATSolverType;
+import de.tum.in.i4.hp2sat.causality.SolvingStrategy;
+import de.tum.in.i4.hp2sat.exceptions.InvalidCausalModelException;
+import org.logicng.formulas.FormulaFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An HTTP server that keeps named causal models loaded and answers causality queries on them, e.g. as a causality
+ * service shared by many clients. Models are validated once upon registration; the worker threads keep their own
+ * copies of each model, as formula factories are not thread-safe, so that subsequent queries neither rebuild nor copy
+ * a model. The server can be embedded or started from the command line:
+ * <pre>
+ * java -cp hp2sat-1.0-jar-with-dependencies.jar de.tum.in.i4.hp2sat.cli.CausalityServer --port 8080 \
+ *     --model rockThrowing=rockThrowing.txt [--host address] [--threads n] [--queue n] [--executor platform|virtual] \
+ *     [--timeout seconds]
+ * </pre>
+ * As the endpoints are neither authenticated nor cheap, the command line server only listens on the loopback
+ * interface unless another address is given by {@code --host}, e.g. {@code 0.0.0.0} for all interfaces.
+ * Queries are sent in the text form of {@link BatchRunner}, i.e. {@code [id:] context ; phi ; cause}, and results are
+ * returned as JSON objects with the columns of {@link BatchRunner}. The endpoints are:
+ * <ul>
+ * <li>{@code GET /models}: the names of the registered models as JSON array</li>
+ * <li>{@code POST /models/<name>/isCause}: checks the query in the body</li>
+ * <li>{@code POST /models/<name>/batch}: checks the queries in the body, one per line, and returns a JSON object per
+ * line in the order of the queries</li>
+ * <li>{@code POST /models/<name>/causes}: computes all causes of the query {@code [id:] context ; phi} in the body and
+ * returns a JSON object per cause as soon as it has been found</li>
+ * <li>{@code GET /metrics}: the metrics of {@link CausalitySolverMetrics#getGlobal()} and of the server in the
+ * Prometheus text exposition format</li>
+ * </ul>
+ * The query parameters {@code strategy}, {@code solver}, {@code timeout} (in milliseconds), {@code conflicts} and
+ * {@code models} select the solving strategy, the SAT solver and the {@link Budget} of a request; a budget applies to
+ * the whole request, i.e. to all queries of a batch. The timeout is capped by the maximum timeout of the server.
+ * <p>
+ * Each request is processed as a task of a {@link QueryExecutor}, i.e. by a pool of platform threads of fixed size or
+ * by a virtual thread of its own; in both cases, the causality checks are confined to the given number of solver
+ * threads. At most the given number of further requests wait for a solver thread; any request beyond that is rejected
+ * with status 503 instead of being queued without bound.
+ * Invalid requests are answered with status 400, unknown models with status 404.
+ */
+public class CausalityServer {
+    private static final String USAGE = "Usage: [--host <address>] [--port <n>] [--threads <n>] [--queue <n>] "
+            + "[--executor platform|virtual] [--timeout <seconds>] --model <name>=<file> [--model <name>=<file> ...]";
+    private static final String JSON = "application/json; charset=utf-8";
+    private static final String TEXT = "text/plain; version=0.0.4; charset=utf-8";
+    private static final String[] ENDPOINTS = {"isCause", "batch", "causes"};
+
+    private final HttpServer httpServer;
+    private final QueryExecutor queryExecutor;
+    private final Semaphore permits;
+    private final Map<String, Registration> models = new ConcurrentHashMap<>();
+    private final Set<Budget> activeBudgets = ConcurrentHashMap.newKeySet();
+    private final Map<String, LongAdder> requests = new HashMap<>();
+    private final LongAdder rejectedRequests = new LongAdder();
+    private volatile long maxTimeout = 0; // in milliseconds; 0 if unlimited
+
+    /**
+     * Creates a server that is bound to the given address, but not yet started. Requests are processed by a fixed
+     * pool of platform threads.
+     *
+     * @param address       the address; port 0 selects a free port
+     * @param threads       the number of requests processed in parallel
+     * @param queueCapacity the number of requests that may wait for a thread
+     * @throws IOException thrown if the server cannot be bound to the address
+     */
+    public CausalityServer(InetSocketAddress address, int threads, int queueCapacity) throws IOException {
+        this(address, QueryExecutor.platformThreads(threads), threads + queueCapacity);
+        if (queueCapacity < 0) {
+            throw new IllegalArgumentException("The queue capacity must not be negative");
+        }
+    }
+
+    /**
+     * Creates a server that is bound to the given address, but not yet started. The server takes over the given
+     * executor, i.e. stopping the server shuts it down.
+     *
+     * @param address       the address; port 0 selects a free port
+     * @param queryExecutor the executor that processes the requests, e.g. on virtual threads
+     * @param maxRequests   the number of requests that may be processed or wait for a solver thread at the same time
+     * @throws IOException thrown if the server cannot be bound to the address
+     */
+    public CausalityServer(InetSocketAddress address, QueryExecutor queryExecutor, int maxRequests)
+            throws IOException {
+        if (maxRequests < 1) {
+            throw new IllegalArgumentException("The number of requests must be positive");
+        }
+        this.queryExecutor = queryExecutor;
+        this.permits = new Semaphore(maxRequests);
+        for (String endpoint : ENDPOINTS) {
+            requests.put(endpoint, new LongAdder());
+        }
+        this.httpServer = HttpServer.create(address, 0);
+        // the dispatcher thread only routes requests; they are read and processed by the worker threads
+        this.httpServer.createContext("/", this::handle);
+    }
+
+    public static void main(String[] args) {
+        InetAddress host = InetAddress.getLoopbackAddress();
+        int port = 8080;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int queueCapacity = 64;
+        boolean virtualThreads = false;
+        long timeout = 0;
+        Map<String, Path> modelPaths = new HashMap<>();
+        try {
+            for (int i = 0; i < args.length; i += 2) {
+                if (i + 1 == args.length) {
+                    throw new IllegalArgumentException("Missing value of " + args[i]);
+                }
+                String value = args[i + 1];
+                switch (args[i]) {
+                    case "--host":
+                        host = InetAddress.getByName(value);
+                        break;
+                    case "--port":
+                        port = Integer.parseInt(value);
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(value);
+                        break;
+                    case "--queue":
+                        queueCapacity = Integer.parseInt(value);
+                        break;
+                    case "--executor":
+                        if (!value.equals("platform") && !value.equals("virtual")) {
+                            throw new IllegalArgumentException("Unknown executor " + value);
+                        }
+                        virtualThreads = value.equals("virtual");
+                        break;
+                    case "--timeout":
+                        timeout = Long.parseLong(value);
+                        if (timeout < 0) {
+                            throw new IllegalArgumentException("The timeout must not be negative");
+                        }
+                        break;
+                    case "--model":
+                        int equals = value.indexOf('=');
+                        if (equals <= 0) {
+                            throw new IllegalArgumentException("Expected <name>=<file>: " + value);
+                        }
+                        modelPaths.put(value.substring(0, equals), Paths.get(value.substring(equals + 1)));
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        } catch (UnknownHostException e) {
+            System.err.println("Unknown host: " + e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        try {
+            InetSocketAddress address = new InetSocketAddress(host, port);
+            CausalityServer server;
+            if (virtualThreads) {
+                QueryExecutor queryExecutor = QueryExecutor.virtualThreads(threads);
+                if (!queryExecutor.isVirtual()) {
+                    System.err.println(QueryExecutor.NO_VIRTUAL_THREADS);
+                }
+                server = new CausalityServer(address, queryExecutor, threads + queueCapacity);
+            } else {
+                server = new CausalityServer(address, threads, queueCapacity);
+            }
+            server.setMaxTimeout(timeout, TimeUnit.SECONDS);
+            for (Map.Entry<String, Path> entry : modelPaths.entrySet()) {
+                server.register(entry.getKey(), entry.getValue());
+            }
+            server.start();
+            System.err.println("Listening on " + server.getAddress() + " with models " + server.getModelNames());
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("I/O error: " + e.getMessage());
+            System.exit(2);
+        } catch (InvalidCausalModelException e) {
+            System.err.println("Invalid causal model: " + e.getMessage());
+            System.exit(2);
+        }
+    }
+
+    /**
+     * Registers a causal model under the given name, replacing any model of the same name. The server works on copies
+     * of the model, so the model can still be used by the caller.
+     *
+     * @param name        the name used in the paths of the endpoints
+     * @param causalModel the causal model
+     */
+    public void register(String name, CausalModel causalModel) {
+        if (name.isEmpty() || name.contains("/")) {
+            throw new IllegalArgumentException("Invalid model name " + name);
+        }
+        models.put(name, new Registration(causalModel.copy(new FormulaFactory())));
+    }
+
+    /**
+     * Loads a text model file or, if its name ends with {@code .hp2s}, a binary model file and registers the model
+     * under the given name.
+     *
+     * @param name the name used in the paths of the endpoints
+     * @param path the model file
+     * @throws IOException                 thrown if the file cannot be read
+     * @throws InvalidCausalModelException thrown if the file does not contain a valid causal model
+     */
+    public void register(String name, Path path) throws IOException, InvalidCausalModelException {
+        register(name, BatchRunner.loadModel(path));
+    }
+
+    /**
+     * Removes the model of the given name. Requests on the model that are already being processed are completed.
+     *
+     * @param name the name of the model
+     * @return true if a model was removed
+     */
+    public boolean unregister(String name) {
+        return models.remove(name) != null;
+    }
+
+    public SortedSet<String> getModelNames() {
+        return new TreeSet<>(models.keySet());
+    }
+
+    /**
+     * @param timeout the maximum timeout of a request, also used if a request does not specify one; 0 if unlimited
+     * @param unit    the unit of the timeout
+     */
+    public void setMaxTimeout(long timeout, TimeUnit unit) {
+        this.maxTimeout = unit.toMillis(timeout);
+    }
+
+    public InetSocketAddress getAddress() {
+        return httpServer.getAddress();
+    }
+
+    public void start() {
+        httpServer.start();
+    }
+
+    /**
+     * Stops the server. Requests that are still being processed after the given delay are cancelled.
+     *
+     * @param delay the maximum time in seconds to wait for requests to complete
+     */
+    public void stop(int delay) {
+        try {
+            if (!queryExecutor.shutdown(delay, TimeUnit.SECONDS)) {
+                activeBudgets.forEach(Budget::cancel);
+            }
+        } catch (InterruptedException e) {
+            activeBudgets.forEach(Budget::cancel);
+            Thread.currentThread().interrupt();
+        }
+        httpServer.stop(0);
+        queryExecutor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getPath();
+        if (path.equals("/metrics") || path.equals("/models")) {
+            if (!method.equals("GET")) {
+                respond(exchange, 405, TEXT, "Method not allowed\n");
+            } else if (path.equals("/metrics")) {
+                respond(exchange, 200, TEXT, scrape());
+            } else {
+                StringBuilder json = new StringBuilder("[");
+                for (String name : getModelNames()) {
+                    if (json.length() > 1) {
+                        json.append(',');
+                    }
+                    QueryChecker.appendJSON(json, name);
+                }
+                respond(exchange, 200, JSON, json.append("]\n").toString());
+            }
+            return;
+        }
+
+        // /models/<name>/<endpoint>
+        String[] parts = path.split("/");
+        Registration registration = parts.length == 4 && parts[0].isEmpty() && parts[1].equals("models")
+                ? models.get(parts[2]) : null;
+        String endpoint = parts.length == 4 ? parts[3] : null;
+        if (registration == null || !requests.containsKey(endpoint)) {
+            respond(exchange, 404, TEXT, "Not found\n");
+            return;
+        }
+        if (!method.equals("POST")) {
+            respond(exchange, 405, TEXT, "Method not allowed\n");
+            return;
+        }
+        Options options;
+        try {
+            options = new Options(exchange.getRequestURI().getRawQuery());
+        } catch (IllegalArgumentException e) {
+            respond(exchange, 400, TEXT, e.getMessage() + "\n");
+            return;
+        }
+        requests.get(endpoint).increment();
+        if (!permits.tryAcquire()) {
+            rejectedRequests.increment();
+            respond(exchange, 503, TEXT, "Too many requests\n");
+            return;
+        }
+        try {
+            queryExecutor.getExecutorService().execute(() -> {
+                try {
+                    process(exchange, registration, endpoint, options);
+                } catch (IOException | UncheckedIOException e) {
+                    // the client has closed the connection; there is no one left to report to
+                } catch (InterruptedException e) {
+                    // the server is being stopped
+                } finally {
+                    permits.release();
+                    exchange.close();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // the server is being stopped
+            permits.release();
+            rejectedRequests.increment();
+            respond(exchange, 503, TEXT, "Server is stopping\n");
+        }
+    }
+
+    private void process(HttpExchange exchange, Registration registration, String endpoint, Options options)
+            throws IOException, InterruptedException {
+        CausalModel causalModel = registration.causalModel;
+        List<Query> queries = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(exchange.getRequestBody(),
+                StandardCharsets.UTF_8))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                Query query = Query.parse(line, lineNumber, !endpoint.equals("causes"));
+                if (query != null) {
+                    queries.add(query);
+                }
+            }
+            if (queries.isEmpty() || (queries.size() > 1 && !endpoint.equals("batch"))) {
+                throw new InvalidQueryException(endpoint.equals("batch") ? "Expected at least one query"
+                        : "Expected exactly one query");
+            }
+        } catch (InvalidQueryException e) {
+            respond(exchange, 400, TEXT, e.getMessage() + "\n");
+            return;
+        }
+
+        // the budget starts once the request is processed; the time waiting for a solver thread counts
+        Budget budget = options.createBudget(maxTimeout);
+        activeBudgets.add(budget);
+        try {
+            if (endpoint.equals("isCause")) {
+                Map<String, Object> row = queryExecutor.check(causalModel, queryChecker -> queryChecker.check(
+                        queries.get(0), options.solvingStrategy, options.satSolverType, budget));
+                respond(exchange, row.get("error") == null ? 200 : 400, JSON, QueryChecker.toJSON(row) + "\n");
+                return;
+            }
+            // the rows are streamed, i.e. each is sent as soon as it is available
+            exchange.getResponseHeaders().set("Content-Type", JSON);
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                if (endpoint.equals("batch")) {
+                    // the solver thread is only held during a check, not while its result is sent
+                    for (Query query : queries) {
+                        write(out, queryExecutor.check(causalModel, queryChecker -> queryChecker.check(query,
+                                options.solvingStrategy, options.satSolverType, budget)));
+                    }
+                } else {
+                    queryExecutor.check(causalModel, queryChecker -> {
+                        queryChecker.computeAllCauses(queries.get(0), options.solvingStrategy, budget, row -> {
+                            try {
+                                write(out, row);
+                            } catch (IOException e) {
+                                // stops the search
+                                throw new UncheckedIOException(e);
+                            }
+                        });
+                        return null;
+                    });
+                }
+            }
+        } finally {
+            activeBudgets.remove(budget);
+        }
+    }
+
+    private static void write(OutputStream out, Map<String, Object> row) throws IOException {
+        out.write((QueryChecker.toJSON(row) + "\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, String body)
+            throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * @return the metrics of all causality checks and of this server in the Prometheus text exposition format
+     */
+    private String scrape() {
+        StringBuilder stringBuilder = new StringBuilder(CausalitySolverMetrics.getGlobal().scrape());
+        stringBuilder.append("# TYPE hp2sat_server_requests_total counter\n");
+        for (String endpoint : ENDPOINTS) {
+            stringBuilder.append("hp2sat_server_requests_total{endpoint=\"").append(endpoint).append("\"} ")
+                    .append(requests.get(endpoint).sum()).append('\n');
+        }
+        stringBuilder.append("# TYPE hp2sat_server_rejected_requests_total counter\n")
+                .append("hp2sat_server_rejected_requests_total ").append(rejectedRequests.sum()).append('\n')
+                .append("# TYPE hp2sat_server_active_requests gauge\n")
+                .append("hp2sat_server_active_requests ").append(activeBudgets.size()).append('\n')
+                .append("# TYPE hp2sat_server_models gauge\n")
+                .append("hp2sat_server_models ").append(models.size()).append('\n');
+        return stringBuilder.toString();
+    }
+
+    /**
+     * A registered model. Its copies are created by the {@link QueryExecutor}; re-registering a name yields new copies.
+     */
+    private static class Registration {
+        private final CausalModel causalModel;
+
+        private Registration(CausalModel causalModel) {
+            this.causalModel = causalModel;
+        }
+    }
+
+    /**
+     * The query parameters of a request.
+     */
+    private static class Options {
+        private SolvingStrategy solvingStrategy = SolvingStrategy.SAT;
+        private SATSolverType satSolverType = SATSolverType.MINISAT;
+        private long timeout = 0; // in milliseconds; 0 if unlimited
+        private long maxConflicts = 0; // 0 if unlimited
+        private long maxModels = 0; // 0 if unlimited
+
+        private Options(String query) {
+            if (query == null) {
+                return;
+            }
+            for (String parameter : query.split("&")) {
+                int equals = parameter.indexOf('=');
+                String name = decode(equals >= 0 ? parameter.substring(0, equals) : parameter);
+                String value = equals >= 0 ? decode(parameter.substring(equals + 1)) : "";
+                try {
+                    switch (name) {
+                        case "strategy":
+                            solvingStrategy = SolvingStrategy.valueOf(value.toUpperCase(Locale.ROOT));
+                            break;
+                        case "solver":
+                            satSolverType = SATSolverType.valueOf(value.toUpperCase(Locale.ROOT));
+                            break;
+                        case "timeout":
+                            timeout = Long.parseLong(value);
+                            break;
+                        case "conflicts":
+                            maxConflicts = Long.parseLong(value);
+                            break;
+                        case "models":
+                            maxModels = Long.parseLong(value);
+                            break;
+                        default:
+                            throw new IllegalStateException("Unknown parameter " + name);
+                    }
+                } catch (IllegalStateException e) {
+                    throw new IllegalArgumentException(e.getMessage());
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Invalid value of " + name + ": " + value);
+                }
+            }
+        }
+
+        private Budget createBudget(long maxTimeout) {
+            Budget budget = new Budget();
+            long effectiveTimeout = maxTimeout > 0 && (timeout <= 0 || timeout > maxTimeout) ? maxTimeout : timeout;
+            if (effectiveTimeout > 0) {
+                budget.withTimeout(effectiveTimeout, TimeUnit.MILLISECONDS);
+            }
+            if (maxConflicts > 0) {
+                budget.withConflictLimit(maxConflicts);
+            }
+            if (maxModels > 0) {
+                budget.withModelLimit(maxModels);
+            }
+            return budget;
+        }
+
+        private static String decode(String text) {
+            try {
+                return URLDecoder.decode(text, "UTF-8");
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
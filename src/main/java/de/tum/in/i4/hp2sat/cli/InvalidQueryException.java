@@ -0,0 +1,10 @@
+package de.tum.in.i4.hp2sat.cli;
+
+/**
+ * Thrown if a query cannot be parsed.
+ */
+class InvalidQueryException extends Exception {
+    InvalidQueryException(String message) {
+        super(message);
+    }
+}
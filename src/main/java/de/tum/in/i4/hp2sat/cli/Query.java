@@ -0,0 +1,51 @@
+package de.tum.in.i4.hp2sat.cli;
+
+/**
+ * A causality query in text form, i.e. one line of the form {@code [id:] context ; phi [; cause]}. The context and
+ * the cause are comma-separated literals, where {@code ~} negates a variable; phi is a formula in the syntax of
+ * LogicNG. The parts are only parsed into formulas by {@link QueryChecker}, as this requires the formula factory of
+ * the causal model.
+ */
+class Query {
+    final String id;
+    final int lineNumber;
+    final String context;
+    final String phi;
+    final String cause; // null if omitted
+
+    private Query(String id, int lineNumber, String context, String phi, String cause) {
+        this.id = id;
+        this.lineNumber = lineNumber;
+        this.context = context;
+        this.phi = phi;
+        this.cause = cause;
+    }
+
+    /**
+     * Parses a query. If the id is omitted, the line number is used.
+     *
+     * @param line         the line
+     * @param lineNumber   the number of the line
+     * @param requireCause true if the cause must not be omitted
+     * @return the query; null if the line is empty or a comment
+     * @throws InvalidQueryException thrown if the line is not a query
+     */
+    static Query parse(String line, int lineNumber, boolean requireCause) throws InvalidQueryException {
+        String text = line.trim();
+        if (text.isEmpty() || text.startsWith("#")) {
+            return null;
+        }
+        String id = String.valueOf(lineNumber);
+        int colon = text.indexOf(':');
+        if (colon >= 0) {
+            id = text.substring(0, colon).trim();
+            text = text.substring(colon + 1);
+        }
+        String[] parts = text.split(";", -1);
+        if (parts.length != 3 && (requireCause || parts.length != 2)) {
+            throw new InvalidQueryException("Line " + lineNumber + ": expected '[id:] context ; phi ; cause'"
+                    + (requireCause ? "" : " or '[id:] context ; phi'"));
+        }
+        return new Query(id, lineNumber, parts[0].trim(), parts[1].trim(), parts.length == 3 ? parts[2].trim() : null);
+    }
+}
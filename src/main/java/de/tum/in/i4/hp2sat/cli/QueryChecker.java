@@ -0,0 +1,239 @@
+package de.tum.in.i4.hp2sat.cli;
+
+import de.tum.in.i4.hp2sat.causality.Budget;
+import de.tum.in.i4.hp2sat.causality.CausalModel;
+import de.tum.in.i4.hp2sat.causality.CausalitySolverResult;
+import de.tum.in.i4.hp2sat.causality.CausalitySolverStatistics;
+import de.tum.in.i4.hp2sat.causality.CausalitySolverStatistics.Phase;
+import de.tum.in.i4.hp2sat.causality.SATSolverType;
+import de.tum.in.i4.hp2sat.causality.SolvingStrategy;
+import org.logicng.datastructures.Tristate;
+import org.logicng.formulas.Formula;
+import org.logicng.formulas.FormulaFactory;
+import org.logicng.formulas.Literal;
+import org.logicng.formulas.Variable;
+import org.logicng.io.parsers.ParserException;
+import org.logicng.io.parsers.PropositionalParser;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Checks queries on a causal model and converts the results into rows, i.e. maps from column to value, that are
+ * written as JSON objects or CSV rows. As formula factories are not thread-safe, a checker must only be used by a
+ * single thread; use a checker per thread, each with its own copy of the causal model (see
+ * {@link CausalModel#copy(FormulaFactory)}).
+ */
+class QueryChecker {
+    private final CausalModel causalModel;
+    private final FormulaFactory f;
+    private final PropositionalParser parser;
+
+    /**
+     * @param causalModel the causal model; must not be used by other threads
+     */
+    QueryChecker(CausalModel causalModel) {
+        this.causalModel = causalModel;
+        this.f = causalModel.getFormulaFactory();
+        this.parser = new PropositionalParser(f);
+    }
+
+    /**
+     * Checks whether the cause of the given query is a cause. Failures are reported in the error column.
+     *
+     * @param query           the query
+     * @param solvingStrategy the solving strategy
+     * @param satSolverType   the SAT solver type
+     * @param budget          the budget; null if unlimited
+     * @return the result as row
+     */
+    Map<String, Object> check(Query query, SolvingStrategy solvingStrategy, SATSolverType satSolverType,
+                              Budget budget) {
+        try {
+            if (query.cause == null) {
+                throw new IllegalArgumentException("Missing cause");
+            }
+            Set<Literal> context = parseContext(query.context);
+            Formula phi = parser.parse(query.phi);
+            Set<Literal> cause = parseLiterals(query.cause);
+            long start = System.nanoTime();
+            CausalitySolverResult result = causalModel.isCause(context, phi, cause, solvingStrategy, satSolverType,
+                    budget);
+            Map<String, Object> row = createRow(query, result);
+            putTimes(row, System.nanoTime() - start, result.getStatistics());
+            return row;
+        } catch (Exception e) {
+            return createErrorRow(query, e);
+        }
+    }
+
+    /**
+     * Computes all causes of the phi of the given query in increasing size. Each cause is passed to the given
+     * consumer as soon as it has been found, including its time since the start of the search. A failure is passed as
+     * a row with an error.
+     *
+     * @param query           the query; its cause is ignored
+     * @param solvingStrategy the solving strategy
+     * @param budget          the budget of the whole search; null if unlimited
+     * @param consumer        the consumer of the rows
+     */
+    void computeAllCauses(Query query, SolvingStrategy solvingStrategy, Budget budget,
+                          Consumer<Map<String, Object>> consumer) {
+        try {
+            Set<Literal> context = parseContext(query.context);
+            Formula phi = parser.parse(query.phi);
+            long start = System.nanoTime();
+            try (Stream<CausalitySolverResult> causes = causalModel.streamAllCauses(context, phi, solvingStrategy,
+                    budget)) {
+                causes.forEach(result -> {
+                    Map<String, Object> row = createRow(query, result);
+                    putTimes(row, System.nanoTime() - start, result.getStatistics());
+                    consumer.accept(row);
+                });
+            }
+        } catch (Exception e) {
+            consumer.accept(createErrorRow(query, e));
+        }
+    }
+
+    /**
+     * Parses a context. Exogenous variables that are not part of it are false.
+     *
+     * @param text comma-separated literals
+     * @return the context
+     */
+    private Set<Literal> parseContext(String text) {
+        Set<Literal> context = parseLiterals(text);
+        Set<Variable> variables = context.stream().map(Literal::variable).collect(Collectors.toSet());
+        causalModel.getExogenousVariables().stream().filter(v -> !variables.contains(v))
+                .forEach(v -> context.add(v.negate()));
+        return context;
+    }
+
+    private Set<Literal> parseLiterals(String text) {
+        Set<Literal> literals = new HashSet<>();
+        for (String literal : text.split(",")) {
+            literal = literal.trim();
+            if (!literal.isEmpty()) {
+                literals.add(literal.startsWith("~") ? f.literal(literal.substring(1).trim(), false)
+                        : f.literal(literal, true));
+            }
+        }
+        return literals;
+    }
+
+    /**
+     * @param query  the query; null for the header of a CSV file
+     * @param result the result of the query; null if there is none
+     * @return the columns of a result in the order in which they are written
+     */
+    static Map<String, Object> createRow(Query query, CausalitySolverResult result) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("id", query != null ? query.id : null);
+        row.put("line", query != null ? query.lineNumber : null);
+        row.put("ac1", result != null ? result.isAc1() : null);
+        row.put("ac2", result != null ? toJSONValue(result.getAc2State()) : null);
+        row.put("ac3", result != null ? toJSONValue(result.getAc3State()) : null);
+        row.put("cause", result != null ? toJSONValue(isCause(result)) : null);
+        row.put("cause_literals", result != null ? toString(result.getCause()) : null);
+        row.put("w", result != null && result.getW() != null ? toString(result.getW()) : null);
+        row.put("time_ms", null);
+        for (Phase phase : Phase.values()) {
+            row.put(phase.name().toLowerCase(Locale.ROOT) + "_ms", null);
+        }
+        row.put("error", null);
+        return row;
+    }
+
+    private static Map<String, Object> createErrorRow(Query query, Exception e) {
+        Map<String, Object> row = createRow(query, null);
+        if (e instanceof ParserException) {
+            row.put("error", "Invalid phi: " + e.getMessage());
+        } else {
+            row.put("error", e.getClass().getSimpleName() + (e.getMessage() != null ? ": " + e.getMessage() : ""));
+        }
+        return row;
+    }
+
+    private static void putTimes(Map<String, Object> row, long time, CausalitySolverStatistics statistics) {
+        row.put("time_ms", toMillis(time));
+        if (statistics != null) {
+            for (Phase phase : Phase.values()) {
+                row.put(phase.name().toLowerCase(Locale.ROOT) + "_ms", toMillis(statistics.getTime(phase)));
+            }
+        }
+    }
+
+    private static Tristate isCause(CausalitySolverResult result) {
+        if (!result.isAc1() || result.getAc2State() == Tristate.FALSE || result.getAc3State() == Tristate.FALSE) {
+            return Tristate.FALSE;
+        }
+        return result.isDecided() ? Tristate.TRUE : Tristate.UNDEF;
+    }
+
+    private static Object toJSONValue(Tristate tristate) {
+        return tristate == Tristate.UNDEF ? null : tristate == Tristate.TRUE;
+    }
+
+    private static String toString(Set<Literal> literals) {
+        return literals.stream().sorted().map(Literal::toString).collect(Collectors.joining(" "));
+    }
+
+    private static double toMillis(long nanos) {
+        return Math.round(nanos / 1e3) / 1e3;
+    }
+
+    static String toJSON(Map<String, Object> row) {
+        StringBuilder json = new StringBuilder("{");
+        for (Map.Entry<String, Object> entry : row.entrySet()) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append('"').append(entry.getKey()).append("\":");
+            Object value = entry.getValue();
+            if (value instanceof String) {
+                appendJSON(json, (String) value);
+            } else {
+                json.append(value);
+            }
+        }
+        return json.append('}').toString();
+    }
+
+    /**
+     * Appends the given string as quoted and escaped JSON string.
+     *
+     * @param json   the JSON text
+     * @param string the string
+     */
+    static void appendJSON(StringBuilder json, String string) {
+        json.append('"');
+        for (char c : string.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    static String toCSV(Map<String, Object> row) {
+        return row.values().stream().map(value -> {
+            if (value == null) {
+                return "";
+            }
+            String text = value.toString();
+            return text.contains(",") || text.contains("\"") || text.contains("\n")
+                    ? '"' + text.replace("\"", "\"\"") + '"' : text;
+        }).collect(Collectors.joining(","));
+    }
+}
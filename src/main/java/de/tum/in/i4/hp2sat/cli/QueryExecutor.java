@@ -0,0 +1,145 @@
+package de.tum.in.i4.hp2sat.cli;
+
+import de.tum.in.i4.hp2sat.causality.CausalModel;
+import org.logicng.formulas.FormulaFactory;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Queue;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Runs the queries of {@link BatchRunner} and {@link CausalityServer}. Each query is a task of its own, but the
+ * CPU-heavy part of a query, i.e. the causality check, is confined to a bounded number of solver threads: a task
+ * borrows one of at most that many copies of the causal model for the duration of the check and waits if none is
+ * available. Hence, the light parts of queries such as parsing and writing results can run on many cheap threads
+ * while the number of concurrent checks, and thus of model copies, matches the number of cores.
+ * <p>
+ * With virtual threads ({@link #virtualThreads(int)}), each task runs on a virtual thread of its own, such that
+ * thousands of concurrent, mostly waiting queries are cheap. Virtual threads require Java 21; as HP2SAT targets Java 8,
+ * they are created by {@link VirtualThreads}, of which the multi-release jar contains a Java 21 variant. On older
+ * runtimes, the tasks run on a cached pool of platform threads instead, which callers can detect by
+ * {@link #isVirtual()}. With platform threads ({@link #platformThreads(int)}), tasks run on a fixed pool of
+ * solver threads.
+ */
+public class QueryExecutor {
+    static final String NO_VIRTUAL_THREADS = "Warning: virtual threads require Java 21 and the multi-release jar; "
+            + "queries run on platform threads";
+
+    private final ExecutorService executorService;
+    private final boolean virtual;
+    private final int solverThreads;
+    private final Semaphore solverPermits;
+    // idle copies per causal model; models that are no longer used are dropped by the garbage collector
+    private final Map<CausalModel, Queue<QueryChecker>> queryCheckers =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private QueryExecutor(ExecutorService executorService, boolean virtual, int solverThreads) {
+        this.executorService = executorService;
+        this.virtual = virtual;
+        this.solverThreads = solverThreads;
+        this.solverPermits = new Semaphore(solverThreads);
+    }
+
+    /**
+     * @param threads the number of threads that run tasks and checks
+     * @return an executor whose tasks run on a fixed pool of platform threads
+     */
+    public static QueryExecutor platformThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("The number of threads must be positive");
+        }
+        return new QueryExecutor(Executors.newFixedThreadPool(threads), false, threads);
+    }
+
+    /**
+     * @param solverThreads the maximum number of concurrent causality checks
+     * @return an executor that runs each task on a virtual thread of its own if supported by the runtime; otherwise,
+     * on a cached pool of platform threads
+     */
+    public static QueryExecutor virtualThreads(int solverThreads) {
+        if (solverThreads < 1) {
+            throw new IllegalArgumentException("The number of threads must be positive");
+        }
+        ExecutorService executorService = VirtualThreads.newVirtualThreadPerTaskExecutor();
+        if (executorService == null) {
+            // Java 20 or older
+            return new QueryExecutor(Executors.newCachedThreadPool(), false, solverThreads);
+        }
+        return new QueryExecutor(executorService, true, solverThreads);
+    }
+
+    /**
+     * @return true if tasks run on virtual threads
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * @return the maximum number of concurrent causality checks
+     */
+    public int getSolverThreads() {
+        return solverThreads;
+    }
+
+    /**
+     * Stops accepting tasks and waits for running tasks to complete.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit    the unit of the timeout
+     * @return true if all tasks have completed
+     * @throws InterruptedException thrown if interrupted while waiting
+     */
+    public boolean shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        executorService.shutdown();
+        return executorService.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * Interrupts running tasks and discards waiting ones.
+     */
+    public void shutdownNow() {
+        executorService.shutdownNow();
+    }
+
+    ExecutorService getExecutorService() {
+        return executorService;
+    }
+
+    /**
+     * Runs the given check with a query checker of the given causal model that is used by no other thread meanwhile.
+     * Blocks until one of the solver threads is available.
+     *
+     * @param causalModel the causal model; only copied, never used directly
+     * @param check       the check
+     * @param <T>         the type of the result
+     * @return the result of the check
+     * @throws InterruptedException thrown if interrupted while waiting for a solver thread
+     */
+    <T> T check(CausalModel causalModel, Function<QueryChecker, T> check) throws InterruptedException {
+        solverPermits.acquire();
+        try {
+            // there are at most as many copies of a causal model as solver threads
+            Queue<QueryChecker> idle = queryCheckers.computeIfAbsent(causalModel,
+                    m -> new ConcurrentLinkedQueue<>());
+            QueryChecker queryChecker = idle.poll();
+            if (queryChecker == null) {
+                queryChecker = new QueryChecker(causalModel.copy(new FormulaFactory()));
+            }
+            try {
+                return check.apply(queryChecker);
+            } finally {
+                idle.offer(queryChecker);
+            }
+        } finally {
+            solverPermits.release();
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package de.tum.in.i4.hp2sat.cli;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Creates executors that run each task on a virtual thread of its own. This is the variant for Java 8 to 20, which
+ * have no virtual threads. The variant for Java 21 and newer is compiled from {@code src/main/java21} into
+ * {@code META-INF/versions/21} of the multi-release jar and replaces this class on these runtimes.
+ */
+final class VirtualThreads {
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return an executor that starts a new virtual thread for each task; null if the runtime does not support
+     * virtual threads
+     */
+    static ExecutorService newVirtualThreadPerTaskExecutor() {
+        return null;
+    }
+}
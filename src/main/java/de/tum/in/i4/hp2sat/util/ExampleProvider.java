@@ -363,14 +363,14 @@ public class ExampleProvider {
         String stealDecrypted = "SD";
         String stealMasterKey = "SMK";
 
-        // will be set later on
-        Equation DK_GlobalEquation = new Equation(f.variable(decryptTheKey), f.falsum());
-        Equation SD_GlobalEquation = new Equation(f.variable(stealDecrypted), f.falsum());
+        // will be extended later on
+        Formula DK_GlobalFormula = f.falsum();
+        Formula SD_GlobalFormula = f.falsum();
         Equation SMK_Equation = new Equation(f.variable(stealMasterKey), f.or(f.variable(decryptTheKey),
                 f.variable(stealDecrypted)));
 
         Set<Variable> exogenousVariables = new HashSet<>();
-        Set<Equation> equations = new HashSet<>(Arrays.asList(DK_GlobalEquation, SD_GlobalEquation, SMK_Equation));
+        Set<Equation> equations = new HashSet<>(Collections.singletonList(SMK_Equation));
 
         for (int i = 1; i <= users; i++) {
             for (String s : Arrays.asList(fromScript, fromNetwork, fromFile, fromDB, access, attachDebugger)) {
@@ -393,21 +393,22 @@ public class ExampleProvider {
                     f.or(f.variable(fromFile + "_U" + i), f.variable(fromDB + "_U" + i)));
             Equation KMS_Equation = new Equation(KMS,
                     f.and(f.variable(access + "_U" + i), f.variable(attachDebugger + "_U" + i)));
-            Equation DK_Equation = new Equation(DK, f.and(GP, GK));
-            Equation SD_Equation = new Equation(SD, KMS);
-            equations.addAll(Arrays.asList(GP_Equation, GK_Equation, KMS_Equation, DK_Equation, SD_Equation));
-
+            Formula DK_Formula = f.and(GP, GK);
+            Formula SD_Formula = KMS;
 
             for (int k = i - 1; k >= 1; k--) {
-                DK_Equation.setFormula(f.and(DK_Equation.getFormula(),
-                        f.not(f.variable(decryptTheKey + "_U" + k))));
-                SD_Equation.setFormula(f.and(SD_Equation.getFormula(),
-                        f.not(f.variable(stealDecrypted + "_U" + k))));
+                DK_Formula = f.and(DK_Formula, f.not(f.variable(decryptTheKey + "_U" + k)));
+                SD_Formula = f.and(SD_Formula, f.not(f.variable(stealDecrypted + "_U" + k)));
             }
+            Equation DK_Equation = new Equation(DK, DK_Formula);
+            Equation SD_Equation = new Equation(SD, SD_Formula);
+            equations.addAll(Arrays.asList(GP_Equation, GK_Equation, KMS_Equation, DK_Equation, SD_Equation));
 
-            DK_GlobalEquation.setFormula(f.or(DK_GlobalEquation.getFormula(), DK));
-            SD_GlobalEquation.setFormula(f.or(SD_GlobalEquation.getFormula(), SD));
+            DK_GlobalFormula = f.or(DK_GlobalFormula, DK);
+            SD_GlobalFormula = f.or(SD_GlobalFormula, SD);
         }
+        equations.add(new Equation(f.variable(decryptTheKey), DK_GlobalFormula));
+        equations.add(new Equation(f.variable(stealDecrypted), SD_GlobalFormula));
 
         CausalModel causalModel = new CausalModel("StealMasterKey_" + users + "Users", equations,
                 exogenousVariables, f);
@@ -626,16 +627,12 @@ public class ExampleProvider {
         CausalModel dummy = ExampleProvider.dummy();
         FormulaFactory f = dummy.getFormulaFactory();
         CausalModel binaryTree = generateBinaryTreeBenchmarkModel(11, f);
-        Equation equationA = dummy.getVariableEquationMap().get(f.variable("A"));
-        equationA.setFormula(f.variable("0")); // 0 is the root node
-        dummy.getExogenousVariables().remove(f.variable("A_exo"));
-
-        Set<Equation> equations = new HashSet<>(dummy.getEquationsSorted());
-        equations.addAll(binaryTree.getEquationsSorted());
-        Set<Variable> exogenousVariables = dummy.getExogenousVariables();
-        exogenousVariables.addAll(binaryTree.getExogenousVariables());
-        CausalModel dummyCombinedWithBinaryTree = new CausalModel("DummyCombinedWithBinaryTree", equations,
-                exogenousVariables, f);
+        CausalModel dummyCombinedWithBinaryTree = dummy.toBuilder("DummyCombinedWithBinaryTree")
+                .replaceEquation(f.variable("A"), f.variable("0")) // 0 is the root node
+                .removeExogenousVariable(f.variable("A_exo"))
+                .addEquations(binaryTree.getEquationsSorted())
+                .addExogenousVariables(binaryTree.getExogenousVariables())
+                .build();
 
         return dummyCombinedWithBinaryTree;
     }
@@ -0,0 +1,20 @@
+package de.tum.in.i4.hp2sat.cli;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates executors that run each task on a virtual thread of its own. This is the variant for Java 21 and newer that
+ * is packaged into {@code META-INF/versions/21} of the multi-release jar.
+ */
+final class VirtualThreads {
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return an executor that starts a new virtual thread for each task
+     */
+    static ExecutorService newVirtualThreadPerTaskExecutor() {
+        return Executors.newVirtualThreadPerTaskExecutor();
+    }
+}
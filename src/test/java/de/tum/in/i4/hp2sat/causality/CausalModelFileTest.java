@@ -0,0 +1,92 @@
+package de.tum.in.i4.hp2sat.causality;
+
+import de.tum.in.i4.hp2sat.util.ExampleProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.logicng.formulas.Formula;
+import org.logicng.formulas.FormulaFactory;
+import org.logicng.formulas.Literal;
+import org.logicng.formulas.Variable;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+public class CausalModelFileTest {
+    private Path path;
+
+    @Before
+    public void setUp() throws IOException {
+        path = Files.createTempFile("causalModel", ".hp2s");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    @Test
+    public void Should_LoadSameCausalModel_When_WrittenToFile() throws Exception {
+        for (CausalModel causalModel : Arrays.asList(ExampleProvider.billySuzy(), ExampleProvider.forestFire(true),
+                ExampleProvider.stealMasterKey(), ExampleProvider.dummyXNOR(),
+                ExampleProvider.generateBinaryTreeBenchmarkModel(5))) {
+            CausalModelFile.write(causalModel, path);
+            CausalModel causalModelLoaded = CausalModelFile.read(path, causalModel.getFormulaFactory());
+            assertEquals(causalModel.getName(), causalModelLoaded.getName());
+            assertEquals(causalModel.getExogenousVariables(), causalModelLoaded.getExogenousVariables());
+            assertEquals(causalModel.getVariables(), causalModelLoaded.getVariables());
+            for (Equation equation : causalModel.getEquationsSorted()) {
+                Formula formulaLoaded = causalModelLoaded.getVariableEquationMap().get(equation.getVariable())
+                        .getFormula();
+                // n-ary operators might be flattened, hence the formulas are compared semantically
+                assertEquals(causalModel.getName(), causalModel.getFormulaFactory().verum(), causalModel
+                        .getFormulaFactory().equivalence(equation.getFormula(), formulaLoaded).cnf());
+            }
+            for (Variable variable : causalModel.getVariables()) {
+                Set<Variable> sources = new HashSet<>(Arrays.asList(variable));
+                assertEquals(causalModel.getReachabilityIndex().getForwardCone(sources),
+                        causalModelLoaded.getReachabilityIndex().getForwardCone(sources));
+            }
+        }
+    }
+
+    @Test
+    public void Should_ReturnSameResult_When_LoadedIntoOtherFormulaFactory() throws Exception {
+        CausalModel causalModel = ExampleProvider.billySuzy();
+        CausalModelFile.write(causalModel, path);
+        FormulaFactory f = new FormulaFactory();
+        CausalModel causalModelLoaded = CausalModelFile.read(path, f);
+        Set<Literal> context = new HashSet<>(Arrays.asList(f.variable("BT_exo"), f.variable("ST_exo")));
+        List<Set<Literal>> causesExpected = Arrays.asList(new HashSet<>(Arrays.asList(f.variable("ST"))),
+                new HashSet<>(Arrays.asList(f.variable("SH"))), new HashSet<>(Arrays.asList(f.variable("BS"))));
+        assertEquals(new HashSet<>(causesExpected), causalModelLoaded.streamAllCauses(context, f.variable("BS"),
+                SolvingStrategy.SAT, null).map(CausalitySolverResult::getCause).collect(Collectors.toSet()));
+    }
+
+    @Test(expected = IOException.class)
+    public void Should_ThrowException_When_FileCorrupt() throws Exception {
+        CausalModelFile.write(ExampleProvider.billySuzy(), path);
+        byte[] bytes = Files.readAllBytes(path);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(path, bytes);
+        CausalModelFile.read(path, new FormulaFactory());
+    }
+
+    @Test(expected = IOException.class)
+    public void Should_ThrowException_When_FileLargerThan2GB() throws Exception {
+        // a sparse file, i.e. nothing is written to disk
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.setLength(Integer.MAX_VALUE + 1L);
+        }
+        CausalModelFile.read(path, new FormulaFactory());
+    }
+}
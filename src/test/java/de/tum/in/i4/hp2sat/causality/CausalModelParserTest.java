@@ -0,0 +1,117 @@
+package de.tum.in.i4.hp2sat.causality;
+
+import de.tum.in.i4.hp2sat.exceptions.InvalidCausalModelException;
+import de.tum.in.i4.hp2sat.util.ExampleProvider;
+import org.junit.Test;
+import org.logicng.formulas.Formula;
+import org.logicng.formulas.FormulaFactory;
+import org.logicng.formulas.Literal;
+import org.logicng.formulas.Variable;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CausalModelParserTest {
+
+    @Test
+    public void Should_ParseSameCausalModel_When_EquationsPrinted() throws Exception {
+        for (CausalModel causalModel : Arrays.asList(ExampleProvider.billySuzy(), ExampleProvider.forestFire(true),
+                ExampleProvider.stealMasterKey(), ExampleProvider.dummyXNOR(),
+                ExampleProvider.generateBinaryTreeBenchmarkModel(5))) {
+            FormulaFactory f = causalModel.getFormulaFactory();
+            // reverse the topological order such that the parser has to sort the equations
+            StringBuilder text = new StringBuilder("# " + causalModel.getName() + "\n\n");
+            for (int i = causalModel.getEquationsSorted().size() - 1; i >= 0; i--) {
+                text.append(causalModel.getEquationsSorted().get(i)).append("  # equation ").append(i).append('\n');
+            }
+            CausalModel causalModelParsed =
+                    CausalModelParser.parse(causalModel.getName(), new StringReader(text.toString()), f);
+            assertEquals(causalModel.getExogenousVariables(), causalModelParsed.getExogenousVariables());
+            assertEquals(causalModel.getVariableEquationMap().keySet(),
+                    causalModelParsed.getVariableEquationMap().keySet());
+            for (Equation equation : causalModel.getEquationsSorted()) {
+                Formula formulaParsed = causalModelParsed.getVariableEquationMap().get(equation.getVariable())
+                        .getFormula();
+                assertEquals(f.verum(), f.equivalence(equation.getFormula(), formulaParsed).cnf());
+            }
+            for (Variable variable : causalModel.getVariables()) {
+                Set<Variable> sources = Collections.singleton(variable);
+                assertEquals(causalModel.getReachabilityIndex().toVariables(
+                        causalModel.getReachabilityIndex().getBackwardCone(sources)),
+                        causalModelParsed.getReachabilityIndex().toVariables(
+                                causalModelParsed.getReachabilityIndex().getBackwardCone(sources)));
+            }
+        }
+    }
+
+    @Test
+    public void Should_ReturnSameCauses_When_ParsedModelChecked() throws Exception {
+        FormulaFactory f = new FormulaFactory();
+        CausalModel causalModel = CausalModelParser.parse("RockThrowing", new StringReader(
+                "BS = SH | BH\nBH = BT & ~SH\nSH = ST\nST = ST_exo\nBT = BT_exo\n"), f);
+        Set<Literal> context = new HashSet<>(Arrays.asList(f.variable("BT_exo"), f.variable("ST_exo")));
+        assertEquals(new HashSet<>(Arrays.asList(f.variable("BT_exo"), f.variable("ST_exo"))),
+                causalModel.getExogenousVariables());
+        assertEquals(causalModel.getEquationsSorted().size() - 1, causalModel.getEquationsSorted().stream()
+                .map(Equation::getVariable).collect(Collectors.toList()).indexOf(f.variable("BS")));
+        CausalitySolverResult causalitySolverResult = causalModel.isCause(context, f.variable("BS"),
+                Collections.singleton(f.variable("ST")), SolvingStrategy.SAT);
+        assertTrue(causalitySolverResult.isAc1() && causalitySolverResult.isAc2() && causalitySolverResult.isAc3());
+    }
+
+    @Test
+    public void Should_ParseOperatorsWithLogicNGPrecedence() throws Exception {
+        FormulaFactory f = new FormulaFactory();
+        CausalModel causalModel = CausalModelParser.parse("Precedence", new StringReader(
+                "X = ~A | B & C => D <=> $true\nY = (A | B) & ~(C <=> $false)\n"), f);
+        Variable A = f.variable("A"), B = f.variable("B"), C = f.variable("C"), D = f.variable("D");
+        assertEquals(f.equivalence(f.implication(f.or(A.negate(), f.and(B, C)), D), f.verum()),
+                causalModel.getVariableEquationMap().get(f.variable("X")).getFormula());
+        assertEquals(f.and(f.or(A, B), f.not(f.equivalence(C, f.falsum()))),
+                causalModel.getVariableEquationMap().get(f.variable("Y")).getFormula());
+    }
+
+    @Test
+    public void Should_ParseLongChain_When_LinesStreamed() throws Exception {
+        int n = 100000;
+        StringBuilder text = new StringBuilder();
+        for (int i = n - 1; i > 0; i--) {
+            text.append('V').append(i).append(" = ~V").append(i - 1).append('\n');
+        }
+        FormulaFactory f = new FormulaFactory();
+        CausalModel causalModel = CausalModelParser.parse("Chain", new StringReader(text.toString()), f);
+        assertEquals(Collections.singleton(f.variable("V0")), causalModel.getExogenousVariables());
+        assertEquals(n - 1, causalModel.getEquationsSorted().size());
+        assertEquals(f.variable("V1"), causalModel.getEquationsSorted().get(0).getVariable());
+        assertEquals(n, causalModel.getReachabilityIndex().getForwardCone(
+                Collections.singleton(f.variable("V0"))).cardinality());
+    }
+
+    @Test
+    public void Should_ReportLineNumber_When_ModelInvalid() throws Exception {
+        assertError("A = B\n\nA = C\n", "Line 3, column 1: Variable A is already defined in line 1");
+        assertError("A = B &\n", "Line 1, column 8: Unexpected end of line");
+        assertError("# comment\nA = (B | C\n", "Line 2, column 11: Expected ')'");
+        assertError("A = B C\n", "Line 1, column 7: Unexpected 'C'");
+        assertError("A => B\n", "Line 1, column 3: Expected '='");
+        assertError("A = _dummy\n", "Line 1, column 5: Variable name _dummy is reserved");
+        assertError("A = X\nB = A | C\nC = B\nD = C\n", "Line 2: variable B is part of a cyclic dependency");
+    }
+
+    private void assertError(String text, String message) throws Exception {
+        try {
+            CausalModelParser.parse("Invalid", new StringReader(text), new FormulaFactory());
+            fail("Expected exception for " + text);
+        } catch (InvalidCausalModelException e) {
+            assertEquals(message, e.getMessage());
+        }
+    }
+}
@@ -2,6 +2,7 @@ package de.tum.in.i4.hp2sat.causality;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.logicng.datastructures.Tristate;
 import org.logicng.formulas.Formula;
 import org.logicng.formulas.FormulaFactory;
 import org.logicng.formulas.Literal;
@@ -18,13 +19,31 @@ import de.tum.in.i4.hp2sat.exceptions.InvalidCauseException;
 import de.tum.in.i4.hp2sat.exceptions.InvalidContextException;
 import de.tum.in.i4.hp2sat.exceptions.InvalidPhiException;
 import de.tum.in.i4.hp2sat.util.ExampleProvider;
+import de.tum.in.i4.hp2sat.util.Util;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
 import java.util.Set;
+import java.util.TreeSet;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class CausalModelTest {
     FormulaFactory f;
@@ -215,4 +234,749 @@ public class CausalModelTest {
         Formula phi = f.variable("BS");
         billySuzy.isCause(context, phi, cause, SolvingStrategy.BRUTE_FORCE);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void Should_CreateSameCausalModel_When_UsingBuilder() throws Exception {
+        CausalModel billySuzy = ExampleProvider.billySuzy();
+        CausalModel.Builder builder = CausalModel.builder("BillySuzy", billySuzy.getFormulaFactory());
+        billySuzy.getExogenousVariables().forEach(builder::addExogenousVariable);
+        billySuzy.getEquationsSorted().forEach(e -> builder.addEquation(e.getVariable(), e.getFormula()));
+        CausalModel billySuzyBuilt = builder.build();
+
+        assertEquals(billySuzy.getExogenousVariables(), billySuzyBuilt.getExogenousVariables());
+        assertEquals(billySuzy.getVariableEquationMap().keySet(), billySuzyBuilt.getVariableEquationMap().keySet());
+        FormulaFactory f = billySuzy.getFormulaFactory();
+        Set<Literal> context = new HashSet<>(Arrays.asList(
+                f.literal("BT_exo", true), f.literal("ST_exo", true)));
+        Set<Literal> cause = new HashSet<>(Collections.singletonList(f.variable("ST")));
+        Formula phi = f.variable("BS");
+        assertEquals(billySuzy.isCause(context, phi, cause, SolvingStrategy.BRUTE_FORCE),
+                billySuzyBuilt.isCause(context, phi, cause, SolvingStrategy.BRUTE_FORCE));
+    }
+
+    @Test(expected = InvalidCausalModelException.class)
+    public void Should_ThrowException_When_BuilderDefinesSameVariableTwice() throws InvalidCausalModelException {
+        Variable a = f.variable("a");
+        Variable bExo = f.variable("b");
+        Variable cExo = f.variable("c");
+
+        CausalModel.builder(null, f)
+                .addEquation(a, bExo)
+                .addEquation(a, cExo)
+                .addExogenousVariable(bExo)
+                .addExogenousVariable(cExo)
+                .build();
+    }
+
+    @Test
+    public void Should_NotChangeOriginalCausalModel_When_DerivingModifiedCausalModel() throws Exception {
+        CausalModel billySuzy = ExampleProvider.billySuzy();
+        FormulaFactory f = billySuzy.getFormulaFactory();
+        Formula originalFormula = billySuzy.getVariableEquationMap().get(f.variable("BH")).getFormula();
+        CausalModel billySuzyModified = billySuzy.toBuilder()
+                .replaceEquation(f.variable("BH"), f.variable("BT"))
+                .build();
+
+        assertEquals(originalFormula, billySuzy.getVariableEquationMap().get(f.variable("BH")).getFormula());
+        assertEquals(f.variable("BT"), billySuzyModified.getVariableEquationMap().get(f.variable("BH"))
+                .getFormula());
+    }
+
+    @Test
+    public void Should_NotBeAffectedByPassedCollections_When_ChangedAfterCreation() throws Exception {
+        Variable a = f.variable("a");
+        Variable b = f.variable("b");
+        Variable cExo = f.variable("c");
+
+        Equation equationA = new Equation(a, b);
+        Set<Equation> equations = new HashSet<>(Arrays.asList(equationA, new Equation(b, cExo)));
+        Set<Variable> exogenousVariables = new HashSet<>(Collections.singletonList(cExo));
+        CausalModel causalModel = new CausalModel(null, equations, exogenousVariables, f);
+
+        equationA.setFormula(cExo);
+        exogenousVariables.add(f.variable("d"));
+        assertEquals(b, causalModel.getVariableEquationMap().get(a).getFormula());
+        assertEquals(Collections.singleton(cExo), causalModel.getExogenousVariables());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void Should_ThrowException_When_ModifyingExogenousVariablesOfCausalModel() throws Exception {
+        CausalModel billySuzy = ExampleProvider.billySuzy();
+        billySuzy.getExogenousVariables().remove(f.variable("BT_exo"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void Should_ThrowException_When_ModifyingEquationOfCausalModel() throws Exception {
+        CausalModel billySuzy = ExampleProvider.billySuzy();
+        FormulaFactory f = billySuzy.getFormulaFactory();
+        billySuzy.getVariableEquationMap().get(f.variable("BH")).setFormula(f.verum());
+    }
+
+    @Test
+    public void Should_NotMixUpQueries_When_PrecompiledEncodingReusedForSeveralPhis() throws Exception {
+        CausalModel billySuzy = ExampleProvider.billySuzy();
+        FormulaFactory f = billySuzy.getFormulaFactory();
+        Set<Literal> context = new HashSet<>(Arrays.asList(f.variable("BT_exo"), f.variable("ST_exo")));
+        Set<Literal> causeST = Collections.singleton(f.variable("ST"));
+        Set<Literal> causeBT = Collections.singleton(f.variable("BT"));
+        CausalitySolverResult causalitySolverResultBS = new CausalitySolverResult(true, true, true, causeST,
+                Collections.singleton(f.literal("BH", false)));
+
+        // the SAT solver of the encoding keeps not(phi) of each phi, guarded by an activation literal
+        SolvingStrategy solvingStrategy = SolvingStrategy.SAT_PRECOMPILED_MINIMAL;
+        assertEquals(causalitySolverResultBS, billySuzy.isCause(context, f.variable("BS"), causeST,
+                solvingStrategy));
+        assertEquals(new CausalitySolverResult(true, true, true, causeST, Collections.emptySet()),
+                billySuzy.isCause(context, f.variable("SH"), causeST, solvingStrategy));
+        assertEquals(new CausalitySolverResult(true, false, true, causeBT, null),
+                billySuzy.isCause(context, f.variable("BS"), causeBT, solvingStrategy));
+        assertEquals(new CausalitySolverResult(true, false, true, causeBT, null),
+                billySuzy.isCause(context, f.not(f.variable("BH")), causeBT, solvingStrategy));
+        assertEquals(causalitySolverResultBS, billySuzy.isCause(context, f.variable("BS"), causeST,
+                solvingStrategy));
+    }
+
+    @Test
+    public void Should_ReturnUnknownACs_When_BudgetCancelled() throws Exception {
+        CausalModel billySuzy = ExampleProvider.billySuzy();
+        Set<Literal> context = new HashSet<>(Arrays.asList(
+                f.literal("BT_exo", true), f.literal("ST_exo", true)));
+        Set<Literal> cause = new HashSet<>(Collections.singletonList(f.variable("ST")));
+        Formula phi = f.variable("BS");
+        Budget budget = new Budget();
+        budget.cancel();
+        for (SolvingStrategy solvingStrategy : SolvingStrategy.values()) {
+            CausalitySolverResult causalitySolverResult = billySuzy.isCause(context, phi, cause, solvingStrategy,
+                    budget);
+            assertTrue(causalitySolverResult.isAc1());
+            assertEquals(Tristate.UNDEF, causalitySolverResult.getAc2State());
+            assertEquals(Tristate.UNDEF, causalitySolverResult.getAc3State());
+            assertFalse(causalitySolverResult.isDecided());
+        }
+    }
+
+    @Test
+    public void Should_ReturnUnknownAC2_When_ModelLimitExceeded() throws Exception {
+        CausalModel billySuzy = ExampleProvider.billySuzy();
+        Set<Literal> context = new HashSet<>(Arrays.asList(
+                f.literal("BT_exo", true), f.literal("ST_exo", true)));
+        Set<Literal> cause = new HashSet<>(Collections.singletonList(f.variable("ST")));
+        Formula phi = f.variable("BS");
+        for (SolvingStrategy solvingStrategy : Arrays.asList(SolvingStrategy.BRUTE_FORCE,
+                SolvingStrategy.SAT_MINIMAL, SolvingStrategy.SAT_PRECOMPILED_MINIMAL)) {
+            CausalitySolverResult causalitySolverResult = billySuzy.isCause(context, phi, cause, solvingStrategy,
+                    new Budget().withModelLimit(0));
+            assertEquals(Tristate.UNDEF, causalitySolverResult.getAc2State());
+            assertFalse(causalitySolverResult.isAc2());
+        }
+    }
+
+    @Test
+    public void Should_ReturnSameACs_When_BudgetSufficient() throws Exception {
+        CausalModel billySuzy = ExampleProvider.billySuzy();
+        Set<Literal> context = new HashSet<>(Arrays.asList(
+                f.literal("BT_exo", true), f.literal("ST_exo", true)));
+        Formula phi = f.variable("BS");
+        for (Set<Literal> cause : Arrays.<Set<Literal>>asList(
+                new HashSet<>(Collections.singletonList(f.variable("ST"))),
+                new HashSet<>(Arrays.asList(f.variable("ST"), f.variable("BT"))))) {
+            for (SolvingStrategy solvingStrategy : SolvingStrategy.values()) {
+                CausalitySolverResult causalitySolverResultExpected = billySuzy.isCause(context, phi, cause,
+                        solvingStrategy);
+                CausalitySolverResult causalitySolverResultActual = billySuzy.isCause(context, phi, cause,
+                        solvingStrategy, new Budget().withTimeout(1, TimeUnit.MINUTES).withConflictLimit(100000)
+                                .withModelLimit(100000));
+                assertTrue(causalitySolverResultActual.isDecided());
+                assertEquals(Arrays.asList(causalitySolverResultExpected.isAc1(),
+                        causalitySolverResultExpected.isAc2(), causalitySolverResultExpected.isAc3()),
+                        Arrays.asList(causalitySolverResultActual.isAc1(), causalitySolverResultActual.isAc2(),
+                                causalitySolverResultActual.isAc3()));
+            }
+        }
+    }
+
+    @Test
+    public void Should_ReturnMinimalW_When_AnytimeSearchFinished() throws Exception {
+        CausalModel billySuzy = ExampleProvider.billySuzy();
+        Set<Literal> context = new HashSet<>(Arrays.asList(
+                f.literal("BT_exo", true), f.literal("ST_exo", true)));
+        Set<Literal> cause = new HashSet<>(Collections.singletonList(f.variable("ST")));
+        Formula phi = f.variable("BS");
+
+        CausalitySolverResult causalitySolverResultSAT = billySuzy.isCause(context, phi, cause, SolvingStrategy.SAT);
+        assertEquals(new HashSet<>(Arrays.asList(f.variable("BT"), f.literal("BH", false))),
+                causalitySolverResultSAT.getW());
+        assertFalse(causalitySolverResultSAT.isWMinimal());
+        assertEquals(1, causalitySolverResultSAT.getWSizeLowerBound());
+
+        for (SATSolverType satSolverType : SATSolverType.values()) {
+            CausalitySolverResult causalitySolverResultAnytime = billySuzy.isCause(context, phi, cause,
+                    SolvingStrategy.SAT_ANYTIME, satSolverType);
+            assertEquals(new CausalitySolverResult(true, true, true, cause,
+                    new HashSet<>(Collections.singletonList(f.literal("BH", false)))), causalitySolverResultAnytime);
+            assertTrue(causalitySolverResultAnytime.isWMinimal());
+            assertEquals(1, causalitySolverResultAnytime.getWSizeLowerBound());
+        }
+    }
+
+    @Test
+    public void Should_ReplaceUnaffectedVariablesByValue_When_ModelSliced() throws Exception {
+        CausalModel billySuzy = ExampleProvider.billySuzy();
+        Set<Literal> billySuzyContext = new HashSet<>(Arrays.asList(
+                f.literal("BT_exo", true), f.literal("ST_exo", true)));
+        Set<Literal> cause = new HashSet<>(Collections.singletonList(f.variable("ST")));
+        // BT is not affected by ST and therefore replaced by its value
+        CausalModel billySuzySliced = billySuzy.slice(billySuzyContext, f.variable("BS"), cause);
+        assertEquals(new HashSet<>(Arrays.asList(f.variable("ST"), f.variable("SH"), f.variable("BH"),
+                f.variable("BS"))), billySuzySliced.getVariableEquationMap().keySet());
+        assertEquals(f.not(f.variable("SH")), billySuzySliced.getVariableEquationMap().get(f.variable("BH"))
+                .getFormula());
+        assertEquals(new CausalitySolverResult(true, true, true, cause, Collections.singleton(f.literal("BH", false))),
+                billySuzySliced.isCause(billySuzyContext, f.variable("BS"), cause, SolvingStrategy.SAT_MINIMAL));
+    }
+
+    @Test
+    public void Should_CollapseBuffers_When_NotInCauseOrPhi() throws Exception {
+        CausalModel dummy2 = ExampleProvider.dummy2();
+        FormulaFactory f = dummy2.getFormulaFactory();
+        CollapsedCausalModel dummy2Collapsed = dummy2.collapseChains(f.variable("X"),
+                new HashSet<>(Collections.singletonList(f.variable("B1"))));
+        // A1 and D1 are only read by their buffers A2 and D2
+        Map<Variable, Literal> collapsedVariablesExpected = new HashMap<>();
+        collapsedVariablesExpected.put(f.variable("A1"), f.variable("A2"));
+        collapsedVariablesExpected.put(f.variable("D1"), f.variable("D2"));
+        assertEquals(collapsedVariablesExpected, dummy2Collapsed.getCollapsedVariables());
+        assertEquals(f.and(f.variable("A_exo"), f.variable("B1")),
+                dummy2Collapsed.getCausalModel().getVariableEquationMap().get(f.variable("A2")).getFormula());
+
+        // variables of phi and the cause are kept
+        CollapsedCausalModel dummy2CollapsedA1 = dummy2.collapseChains(f.variable("X"),
+                new HashSet<>(Collections.singletonList(f.variable("A1"))));
+        assertEquals(Collections.singleton(f.variable("D1")), dummy2CollapsedA1.getCollapsedVariables().keySet());
+    }
+
+    @Test
+    public void Should_TranslateWToOriginalVariables_When_ChainsCollapsed() throws Exception {
+        FormulaFactory f = new FormulaFactory();
+        Variable V = f.variable("V");
+        Variable A = f.variable("A");
+        Variable B = f.variable("B");
+        Variable C = f.variable("C");
+        Variable D = f.variable("D");
+        Variable X = f.variable("X");
+        // the chain A, B, C is collapsed into C; C takes over X if D is false
+        Set<Equation> equations = new HashSet<>(Arrays.asList(new Equation(A, D), new Equation(B, f.not(A)),
+                new Equation(C, B), new Equation(D, V), new Equation(X, f.or(D, C))));
+        CausalModel causalModel = new CausalModel("chain", equations, Collections.singleton(V), f);
+        Set<Literal> cause = Collections.singleton(D);
+        CollapsedCausalModel causalModelCollapsed = causalModel.collapseChains(X, cause);
+
+        Map<Variable, Literal> collapsedVariablesExpected = new HashMap<>();
+        collapsedVariablesExpected.put(A, C.negate());
+        collapsedVariablesExpected.put(B, C);
+        assertEquals(collapsedVariablesExpected, causalModelCollapsed.getCollapsedVariables());
+        assertEquals(f.not(D), causalModelCollapsed.getCausalModel().getVariableEquationMap().get(C).getFormula());
+
+        // C is replaced by A, the head of the chain, with the value negated by the inverter
+        assertEquals(new HashSet<>(Arrays.asList(A, D)),
+                causalModelCollapsed.translateW(new HashSet<>(Arrays.asList(C.negate(), D))));
+        assertEquals(Collections.singleton(A.negate()), causalModelCollapsed.translateW(Collections.singleton(C)));
+        assertNull(causalModelCollapsed.translateW(null));
+
+        Set<Literal> context = Collections.singleton(V);
+        CausalitySolverResult causalitySolverResultCollapsed = causalModelCollapsed.getCausalModel()
+                .isCause(context, X, cause, SolvingStrategy.SAT_MINIMAL);
+        assertEquals(Collections.singleton(C.negate()), causalitySolverResultCollapsed.getW());
+        CausalitySolverResult causalitySolverResult = causalModelCollapsed.translate(causalitySolverResultCollapsed);
+        assertEquals(new CausalitySolverResult(true, true, true, cause, Collections.singleton(A)),
+                causalitySolverResult);
+        assertTrue(causalitySolverResult.isWMinimal());
+        // keeping A at its original value is a valid W in the original model
+        Set<Equation> equationsIntervened = new HashSet<>(Arrays.asList(new Equation(A, f.verum()),
+                new Equation(B, f.not(A)), new Equation(C, B), new Equation(D, f.falsum()),
+                new Equation(X, f.or(D, C))));
+        CausalModel causalModelIntervened = new CausalModel("chain_intervened", equationsIntervened,
+                Collections.singleton(V), f);
+        assertTrue(CausalitySolver.evaluateEquations(causalModelIntervened, context).contains(X.negate()));
+    }
+
+    @Test
+    public void Should_ReturnResultOfEachContext_When_BDDUsedForSeveralContexts() throws Exception {
+        CausalModel billySuzy = ExampleProvider.billySuzy();
+        FormulaFactory f = billySuzy.getFormulaFactory();
+        Formula phi = f.variable("BS");
+        Set<Literal> contextBoth = new HashSet<>(Arrays.asList(f.variable("BT_exo"), f.variable("ST_exo")));
+        Set<Literal> contextBilly = new HashSet<>(Arrays.asList(f.variable("BT_exo"), f.literal("ST_exo", false)));
+        Set<Literal> causeST = Collections.singleton(f.variable("ST"));
+        Set<Literal> causeBT = Collections.singleton(f.variable("BT"));
+        CausalitySolverResult causalitySolverResultBoth = new CausalitySolverResult(true, true, true, causeST,
+                Collections.singleton(f.literal("BH", false)));
+        CausalitySolverResult causalitySolverResultBilly = new CausalitySolverResult(true, true, true, causeBT,
+                Collections.emptySet());
+
+        // all contexts share the BDD of the causal model; each context has its own relation
+        assertEquals(causalitySolverResultBoth, billySuzy.isCause(contextBoth, phi, causeST, SolvingStrategy.BDD));
+        assertEquals(causalitySolverResultBilly, billySuzy.isCause(contextBilly, phi, causeBT, SolvingStrategy.BDD));
+        assertEquals(new CausalitySolverResult(true, false, true, causeBT, null),
+                billySuzy.isCause(contextBoth, phi, causeBT, SolvingStrategy.BDD));
+        assertEquals(causalitySolverResultBoth, billySuzy.isCause(contextBoth, phi, causeST, SolvingStrategy.BDD));
+    }
+
+    @Test
+    public void Should_KeepNodesBelowLimit_When_ManyContextsQueriedOnBDD() throws Exception {
+        // a chain of XORs, such that each context yields a different BDD
+        CausalModel.Builder builder = CausalModel.builder("XORChain", f);
+        for (int i = 0; i < 10; i++) {
+            Variable x = f.variable("X" + i);
+            builder.addExogenousVariable(x);
+            builder.addEquation(f.variable("V" + i), i == 0 ? x
+                    : f.or(f.and(f.variable("V" + (i - 1)), x), f.and(f.variable("V" + (i - 1)).negate(), x.negate())));
+        }
+        CausalModel causalModel = builder.build();
+        List<Variable> exogenousVariables = new ArrayList<>(new TreeSet<>(causalModel.getExogenousVariables()));
+        BDDEncoding unlimited = new BDDEncoding(causalModel);
+        BDDEncoding limited = new BDDEncoding(causalModel, 2000);
+        int maxUsedNodes = 0;
+        for (int i = 0; i < (1 << exogenousVariables.size()); i++) {
+            Set<Literal> context = new HashSet<>();
+            for (int j = 0; j < exogenousVariables.size(); j++) {
+                context.add((i & (1 << j)) != 0 ? exogenousVariables.get(j) : exogenousVariables.get(j).negate());
+            }
+            Set<Literal> evaluation = causalModel.evaluate(context);
+            Formula notPhi = evaluation.contains(f.variable("V9")) ? f.variable("V9").negate() : f.variable("V9");
+            Set<Literal> cause = Collections.singleton(evaluation.contains(f.variable("V4")) ? f.variable("V4")
+                    : f.variable("V4").negate());
+            Set<Variable> w = limited.findMinimalW(context, notPhi, cause, null);
+            // V9 only depends on V4 via V5 to V8, which follow their equations; hence, W is empty
+            assertEquals(Collections.emptySet(), w);
+            assertEquals(unlimited.findMinimalW(context, notPhi, cause, null), w);
+            maxUsedNodes = Math.max(maxUsedNodes, limited.getUsedNodeCount());
+        }
+        // the kernel is replaced once the limit is exceeded; a single query adds only few nodes
+        assertTrue(maxUsedNodes + " of " + unlimited.getUsedNodeCount(),
+                maxUsedNodes < 2000 + 500 && unlimited.getUsedNodeCount() > 2 * (2000 + 500));
+    }
+
+    @Test(expected = BudgetExhaustedException.class)
+    public void Should_StopCompilation_When_BudgetCancelledBeforeBDDCompiled() throws Exception {
+        CausalModel billySuzy = ExampleProvider.billySuzy();
+        FormulaFactory f = billySuzy.getFormulaFactory();
+        Set<Literal> context = new HashSet<>(Arrays.asList(f.variable("BT_exo"), f.variable("ST_exo")));
+        Budget budget = new Budget();
+        budget.cancel();
+        new BDDEncoding(billySuzy).findMinimalW(context, f.variable("BS").negate(),
+                Collections.singleton(f.variable("ST")), budget);
+    }
+
+    @Test
+    public void Should_ReturnExpectedBlame_When_BlameComputedOverAllContexts() throws Exception {
+        CausalModel billySuzy = ExampleProvider.billySuzy();
+        FormulaFactory f = billySuzy.getFormulaFactory();
+        Map<Variable, Double> priors = new HashMap<>();
+        priors.put(f.variable("BT_exo"), 0.25);
+        priors.put(f.variable("ST_exo"), 0.8);
+
+        // ST is a cause whenever Suzy throws; W = {!BH} is needed if Billy throws, too
+        BlameResult blameResultST = billySuzy.computeBlame(priors, f.variable("BS"),
+                Collections.singleton(f.variable("ST")));
+        assertEquals(0.8, blameResultST.getProbability(), 1e-9);
+        assertEquals(2, blameResultST.getWSizeDistribution().size());
+        assertEquals(0.8 * 0.75, blameResultST.getWSizeDistribution().get(0), 1e-9);
+        assertEquals(0.8 * 0.25, blameResultST.getWSizeDistribution().get(1), 1e-9);
+        assertEquals(0.8 * 0.75 + 0.8 * 0.25 / 2, blameResultST.getBlame().get(f.variable("ST")), 1e-9);
+
+        // BT is a cause only if Suzy does not throw
+        BlameResult blameResultBT = billySuzy.computeBlame(priors, f.variable("BS"),
+                Collections.singleton(f.variable("BT")));
+        assertEquals(Collections.singleton(0), blameResultBT.getWSizeDistribution().keySet());
+        assertEquals(0.25 * 0.2, blameResultBT.getProbability(), 1e-9);
+        assertEquals(0.25 * 0.2, blameResultBT.getBlame().get(f.variable("BT")), 1e-9);
+
+        // a cause that is never an actual cause has no blame
+        BlameResult blameResultNotST = billySuzy.computeBlame(priors, f.variable("BS"),
+                Collections.singleton(f.literal("ST", false)));
+        assertEquals(Collections.emptyMap(), blameResultNotST.getWSizeDistribution());
+        assertEquals(0, blameResultNotST.getBlame().get(f.literal("ST", false)), 1e-9);
+    }
+
+    @Test(expected = InvalidContextException.class)
+    public void Should_ThrowException_When_PriorMissingForExogenousVariable() throws Exception {
+        CausalModel causalModel = ExampleProvider.billySuzy();
+        FormulaFactory f = causalModel.getFormulaFactory();
+        Map<Variable, Double> priors = new HashMap<>();
+        priors.put(f.variable("BT_exo"), 0.5);
+        causalModel.computeBlame(priors, f.variable("BS"), Collections.singleton(f.variable("BT")));
+    }
+
+    @Test
+    public void Should_EstimateBlameWithinConfidenceInterval_When_ContextsSampledInParallel() throws Exception {
+        CausalModel causalModel = ExampleProvider.forestFire(true);
+        FormulaFactory f = causalModel.getFormulaFactory();
+        Map<Variable, Double> priors = new HashMap<>();
+        causalModel.getExogenousVariables().forEach(v -> priors.put(v, 0.6));
+        Formula phi = f.variable("FF");
+        Set<Literal> cause = Collections.singleton(f.variable("L"));
+        double blameExpected = causalModel.computeBlame(priors, phi, cause).getBlame().get(f.variable("L"));
+
+        BlameEstimate blameEstimate = causalModel.estimateBlame(priors, phi, cause,
+                new Sampling().withThreads(4).withSeed(42).withMaxSamples(20000).withMaxHalfWidth(0.01));
+        assertTrue(blameEstimate.toString(), blameEstimate.isConverged());
+        assertTrue(blameEstimate.toString(), blameEstimate.getSamples() < 20000);
+        assertEquals(blameEstimate.toString(), blameExpected, blameEstimate.getBlame(),
+                3 * blameEstimate.getHalfWidth());
+    }
+
+    @Test
+    public void Should_StopAfterMaxSamples_When_SampledOnSingleThread() throws Exception {
+        CausalModel causalModel = ExampleProvider.billySuzy();
+        FormulaFactory f = causalModel.getFormulaFactory();
+        Map<Variable, Double> priors = new HashMap<>();
+        causalModel.getExogenousVariables().forEach(v -> priors.put(v, 1D));
+        BlameEstimate blameEstimate = causalModel.estimateBlame(priors, f.variable("BS"),
+                Collections.singleton(f.variable("BT")), new Sampling().withMaxSamples(50));
+        assertEquals(50, blameEstimate.getSamples());
+        assertFalse(blameEstimate.isConverged());
+        assertEquals(causalModel.computeBlame(priors, f.variable("BS"), Collections.singleton(f.variable("BT")))
+                .getBlame().get(f.variable("BT")), blameEstimate.getBlame(), 1e-9);
+        assertEquals(0, blameEstimate.getHalfWidth(), 1e-9);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void Should_ThrowException_When_ConfidenceIsOne() {
+        new Sampling().withConfidence(1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void Should_ThrowException_When_ConfidenceIsGreaterThanOne() {
+        new Sampling().withConfidence(1.5);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void Should_ThrowException_When_ConfidenceIsZero() {
+        new Sampling().withConfidence(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void Should_ThrowException_When_MaxSamplesIsZero() {
+        new Sampling().withMaxSamples(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void Should_ThrowException_When_ThreadsIsZero() {
+        new Sampling().withThreads(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void Should_ThrowException_When_MaxHalfWidthIsZero() {
+        new Sampling().withMaxHalfWidth(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void Should_ThrowException_When_MaxHalfWidthIsNaN() {
+        new Sampling().withMaxHalfWidth(Double.NaN);
+    }
+
+    @Test
+    public void Should_ReturnMostResponsibleCauses_When_TopKCausesRequested() throws Exception {
+        CausalModel forestFire = ExampleProvider.forestFire(true);
+        FormulaFactory f = forestFire.getFormulaFactory();
+        Set<Literal> context = new HashSet<>(Arrays.asList(f.variable("L_exo"), f.variable("MD_exo")));
+        Formula phi = f.variable("FF");
+        for (SolvingStrategy solvingStrategy : Arrays.asList(SolvingStrategy.SAT_MINIMAL, SolvingStrategy.BDD)) {
+            // FF is trivially a cause with responsibility 1; L and MD are only a cause together
+            List<CausalitySolverResult> causalitySolverResults = forestFire.getMostResponsibleCauses(context, phi, 2,
+                    solvingStrategy);
+            assertEquals(Arrays.asList(Collections.singleton(f.variable("FF")),
+                    new HashSet<>(Arrays.asList(f.variable("L"), f.variable("MD")))),
+                    causalitySolverResults.stream().map(CausalitySolverResult::getCause).collect(Collectors.toList()));
+            assertEquals(1, causalitySolverResults.get(0).getResponsibility().get(f.variable("FF")), 1e-9);
+            assertEquals(0.5, causalitySolverResults.get(1).getResponsibility().get(f.variable("L")), 1e-9);
+
+            assertEquals(1, forestFire.getMostResponsibleCauses(context, phi, 1, solvingStrategy).size());
+            // there are only two causes
+            assertEquals(causalitySolverResults, forestFire.getMostResponsibleCauses(context, phi, 3,
+                    solvingStrategy));
+        }
+    }
+
+    @Test
+    public void Should_StreamAllCausesInIncreasingSize_When_StreamConsumed() throws Exception {
+        CausalModel causalModel = ExampleProvider.dummy();
+        FormulaFactory f = causalModel.getFormulaFactory();
+        Set<Literal> context = causalModel.getExogenousVariables().stream().map(v -> (Literal) v)
+                .collect(Collectors.toSet());
+        List<Equation> equationsSorted = causalModel.getEquationsSorted();
+        Formula phi = equationsSorted.get(equationsSorted.size() - 1).getVariable();
+        Set<Literal> evaluation = CausalitySolver.evaluateEquations(causalModel, context);
+        phi = evaluation.contains(phi) ? phi : f.not(phi);
+
+        List<CausalitySolverResult> causes = causalModel.streamAllCauses(context, phi, SolvingStrategy.SAT, null)
+                .collect(Collectors.toList());
+        // oracle: check each subset of the actual world by brute force; AC3 ensures that only minimal causes remain
+        Set<Literal> endogenousLiterals = evaluation.stream()
+                .filter(l -> causalModel.getVariableEquationMap().containsKey(l.variable()))
+                .collect(Collectors.toSet());
+        Set<Set<Literal>> causesExpected = new HashSet<>();
+        for (Set<Literal> cause : new Util<Literal>().generatePowerSet(endogenousLiterals)) {
+            if (cause.isEmpty()) {
+                continue;
+            }
+            CausalitySolverResult result = causalModel.isCause(context, phi, cause, SolvingStrategy.BRUTE_FORCE);
+            if (result.isAc1() && result.isAc2() && result.isAc3()) {
+                causesExpected.add(cause);
+            }
+        }
+        assertFalse(causesExpected.isEmpty());
+        assertEquals(causesExpected, causes.stream().map(CausalitySolverResult::getCause)
+                .collect(Collectors.toSet()));
+        assertEquals(causesExpected.size(), causes.size());
+        for (int i = 1; i < causes.size(); i++) {
+            assertTrue(causes.get(i - 1).getCause().size() <= causes.get(i).getCause().size());
+        }
+        assertEquals(causes.subList(0, 1), causalModel.streamAllCauses(context, phi, SolvingStrategy.SAT, null)
+                .limit(1).collect(Collectors.toList()));
+
+        Budget budget = new Budget();
+        budget.cancel();
+        assertEquals(0, causalModel.streamAllCauses(context, phi, SolvingStrategy.SAT, budget).count());
+    }
+
+    @Test(timeout = 10000)
+    public void Should_PruneLiteralsOutsideBackwardConeOfPhi_When_AllCausesComputed() throws Exception {
+        CausalModel billySuzy = ExampleProvider.billySuzy();
+        FormulaFactory f = billySuzy.getFormulaFactory();
+        CausalModel.Builder builder = billySuzy.toBuilder("BillySuzyWithUnrelatedVariables");
+        // 40 variables that do not affect BS; without pruning, 2^40 combinations would have to be considered
+        for (int i = 0; i < 40; i++) {
+            builder.addEquation(f.variable("U" + i), i == 0 ? f.variable("BT_exo") : f.variable("U" + (i - 1)));
+        }
+        CausalModel causalModel = builder.build();
+        Set<Literal> context = new HashSet<>(Arrays.asList(f.variable("BT_exo"), f.variable("ST_exo")));
+        Formula phi = f.variable("BS");
+        // W might contain the unrelated variables, hence only the causes are compared
+        assertEquals(new SATCausalitySolver().getAllCauses(billySuzy, context, phi, SolvingStrategy.SAT, f).stream()
+                        .map(CausalitySolverResult::getCause).collect(Collectors.toSet()),
+                new SATCausalitySolver().getAllCauses(causalModel, context, phi, SolvingStrategy.SAT, f).stream()
+                        .map(CausalitySolverResult::getCause).collect(Collectors.toSet()));
+    }
+
+    @Test(timeout = 10000)
+    public void Should_CompleteFutureWithResultOfSyncCheck_When_CheckedAsync() throws Exception {
+        CausalModel billySuzy = ExampleProvider.billySuzy();
+        FormulaFactory f = billySuzy.getFormulaFactory();
+        Set<Literal> context = new HashSet<>(Arrays.asList(f.variable("BT_exo"), f.variable("ST_exo")));
+        Formula phi = f.variable("BS");
+        Set<Literal> cause = new HashSet<>(Collections.singletonList(f.variable("ST")));
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            CausalitySolverResult expected = billySuzy.isCause(context, phi, cause, SolvingStrategy.SAT_MINIMAL);
+            CausalitySolverResult actual = billySuzy.isCauseAsync(context, phi, cause, SolvingStrategy.SAT_MINIMAL,
+                    executorService).get();
+            assertEquals(expected, actual);
+
+            CompletableFuture<CausalitySolverResult> future = billySuzy.isCauseAsync(context, phi,
+                    new HashSet<>(Collections.singletonList(f.variable("XY"))), SolvingStrategy.SAT, executorService);
+            try {
+                future.get();
+                fail();
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof InvalidCauseException);
+            }
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void Should_CancelBudget_When_FutureCancelled() throws Exception {
+        CausalModel billySuzy = ExampleProvider.billySuzy();
+        FormulaFactory f = billySuzy.getFormulaFactory();
+        Set<Literal> context = new HashSet<>(Arrays.asList(f.variable("BT_exo"), f.variable("ST_exo")));
+        Set<Literal> cause = new HashSet<>(Collections.singletonList(f.variable("ST")));
+        List<Runnable> tasks = new ArrayList<>();
+        Budget budget = new Budget();
+        CompletableFuture<CausalitySolverResult> future = billySuzy.isCauseAsync(context, f.variable("BS"), cause,
+                SolvingStrategy.SAT, SATSolverType.MINISAT, budget, tasks::add);
+        assertEquals(1, tasks.size());
+        assertTrue(future.cancel(true));
+        // the budget aborts the SAT solver of a running check
+        assertTrue(budget.isCancelled());
+        // a check that has not started yet is skipped
+        tasks.get(0).run();
+        assertTrue(future.isCancelled());
+    }
+
+    @Test(timeout = 30000)
+    public void Should_ReturnSameResultAsSequentialCheck_When_AC2AndAC3CheckedConcurrently() throws Exception {
+        CausalModel billySuzy = ExampleProvider.billySuzy();
+        FormulaFactory f = billySuzy.getFormulaFactory();
+        Set<Literal> context = new HashSet<>(Arrays.asList(f.variable("BT_exo"), f.variable("ST_exo")));
+        Formula phi = f.variable("BS");
+        List<Set<Literal>> causes = Arrays.asList(
+                new HashSet<>(Arrays.asList(f.variable("ST"), f.variable("BT"))),
+                new HashSet<>(Arrays.asList(f.variable("ST"), f.variable("SH"))),
+                new HashSet<>(Arrays.asList(f.variable("BT"), f.literal("BH", false))),
+                new HashSet<>(Collections.singletonList(f.variable("ST"))));
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        // a single thread that also runs the caller must not deadlock
+        ExecutorService singleThreadExecutor = Executors.newSingleThreadExecutor();
+        try {
+            for (SolvingStrategy solvingStrategy : Arrays.asList(SolvingStrategy.SAT, SolvingStrategy.SAT_MINIMAL,
+                    SolvingStrategy.SAT_OPTIMIZED_AC3, SolvingStrategy.SAT_PRECOMPILED_MINIMAL,
+                    SolvingStrategy.SAT_ANYTIME)) {
+                for (Set<Literal> cause : causes) {
+                    CausalitySolverResult expected = billySuzy.isCause(context, phi, cause, solvingStrategy,
+                            SATSolverType.MINISAT);
+                    for (CausalitySolverResult actual : Arrays.asList(
+                            billySuzy.isCause(context, phi, cause, solvingStrategy, SATSolverType.MINISAT, null,
+                                    executorService),
+                            billySuzy.isCause(context, phi, cause, solvingStrategy, SATSolverType.MINISAT, null,
+                                    Runnable::run),
+                            billySuzy.isCauseAsync(context, phi, cause, solvingStrategy, SATSolverType.MINISAT, null,
+                                    singleThreadExecutor).get())) {
+                        String message = solvingStrategy + " " + cause;
+                        assertEquals(message, expected.getAc2State(), actual.getAc2State());
+                        assertEquals(message, expected.getW(), actual.getW());
+                        // AC3 might not have been decided if AC2 is not fulfilled
+                        if (expected.getAc2State() == Tristate.TRUE || actual.getAc3State() != Tristate.UNDEF) {
+                            assertEquals(message, expected.getAc3State(), actual.getAc3State());
+                        }
+                    }
+                }
+            }
+        } finally {
+            executorService.shutdown();
+            singleThreadExecutor.shutdown();
+        }
+    }
+
+    @Test
+    public void Should_CreateSameCausalModelAsFromScratch_When_DerivedIncrementally() throws Exception {
+        Random random = new Random(42);
+        List<Variable> variables = new ArrayList<>();
+        CausalModel.Builder builder = CausalModel.builder("Random", f);
+        for (int i = 0; i < 3; i++) {
+            variables.add(f.variable("X" + i));
+            builder.addExogenousVariable(variables.get(i));
+        }
+        for (int i = 0; i < 30; i++) {
+            Variable variable = f.variable("V" + i);
+            builder.addEquation(variable, randomFormula(random, variables));
+            variables.add(variable);
+        }
+        CausalModel causalModel = builder.build();
+
+        int invalid = 0;
+        for (int round = 0; round < 200; round++) {
+            builder = causalModel.toBuilder();
+            Set<Equation> equations = new HashSet<>(causalModel.getVariableEquationMap().values());
+            Set<Variable> exogenousVariables = new HashSet<>(causalModel.getExogenousVariables());
+            switch (round % 4) {
+                case 0:
+                    // a new exogenous variable that is read by an existing equation
+                    Variable exogenousVariable = f.variable("Y" + round);
+                    builder.addExogenousVariable(exogenousVariable);
+                    exogenousVariables.add(exogenousVariable);
+                case 1:
+                    // an equation with new dependencies, which may close a cycle
+                    Variable variable = randomEndogenousVariable(random, causalModel);
+                    Formula formula = randomFormula(random, variables);
+                    builder.replaceEquation(variable, formula);
+                    equations.remove(causalModel.getVariableEquationMap().get(variable));
+                    equations.add(new Equation(variable, formula));
+                    break;
+                case 2:
+                    // a new equation
+                    Variable newVariable = f.variable("W" + round);
+                    Formula newFormula = randomFormula(random, variables);
+                    builder.addEquation(newVariable, newFormula);
+                    equations.add(new Equation(newVariable, newFormula));
+                    break;
+                default:
+                    // a removed equation, which is only valid if it is not read anymore
+                    Variable removedVariable = randomEndogenousVariable(random, causalModel);
+                    builder.removeEquation(removedVariable);
+                    equations.remove(causalModel.getVariableEquationMap().get(removedVariable));
+            }
+
+            // the validation of the constructor does not terminate on cycles that do not contain the first variable
+            CausalModel fromScratch = isValid(equations, exogenousVariables)
+                    ? new CausalModel("Random", equations, exogenousVariables, f) : null;
+            CausalModel derived;
+            try {
+                derived = builder.build();
+            } catch (InvalidCausalModelException e) {
+                assertEquals(null, fromScratch);
+                invalid++;
+                continue;
+            }
+            assertTrue(fromScratch != null);
+            assertEquals(fromScratch.getExogenousVariables(), derived.getExogenousVariables());
+            assertEquals(fromScratch.getVariableEquationMap().keySet(), derived.getVariableEquationMap().keySet());
+            for (Equation equation : derived.getEquationsSorted()) {
+                assertEquals(fromScratch.getVariableEquationMap().get(equation.getVariable()).getFormula(),
+                        equation.getFormula());
+                // the ids are still a topological order
+                for (Variable input : equation.getFormula().variables()) {
+                    assertTrue(derived.getVariableId(input) < derived.getVariableId(equation.getVariable()));
+                }
+            }
+            // the patched reachability index equals one that is created from the equations
+            ReachabilityIndex expected = new ReachabilityIndex(derived);
+            for (Variable variable : derived.getVariables()) {
+                Set<Variable> source = Collections.singleton(variable);
+                assertEquals(expected.getForwardCone(source), derived.getReachabilityIndex().getForwardCone(source));
+                assertEquals(expected.getBackwardCone(source),
+                        derived.getReachabilityIndex().getBackwardCone(source));
+            }
+            causalModel = derived;
+            variables = new ArrayList<>(derived.getVariables());
+        }
+        // both valid and invalid changes have been tested
+        assertTrue(invalid > 0 && invalid < 150);
+    }
+
+    private boolean isValid(Set<Equation> equations, Set<Variable> exogenousVariables) {
+        Map<Variable, Formula> formulas = equations.stream()
+                .collect(Collectors.toMap(Equation::getVariable, Equation::getFormula));
+        if (formulas.values().stream().flatMap(formula -> formula.variables().stream())
+                .anyMatch(v -> !formulas.containsKey(v) && !exogenousVariables.contains(v))) {
+            return false;
+        }
+        // remove variables whose inputs are all removed until a fixpoint is reached; the rest is part of a cycle
+        Set<Variable> remaining = new HashSet<>(formulas.keySet());
+        boolean removed = true;
+        while (removed) {
+            removed = remaining.removeIf(v -> formulas.get(v).variables().stream().noneMatch(remaining::contains));
+        }
+        return remaining.isEmpty();
+    }
+
+    private Variable randomEndogenousVariable(Random random, CausalModel causalModel) {
+        List<Equation> equations = causalModel.getEquationsSorted();
+        return equations.get(random.nextInt(equations.size())).getVariable();
+    }
+
+    private Formula randomFormula(Random random, List<Variable> variables) {
+        List<Formula> operands = new ArrayList<>();
+        for (int i = 0; i < 1 + random.nextInt(3); i++) {
+            Variable variable = variables.get(random.nextInt(variables.size()));
+            operands.add(random.nextBoolean() ? variable : variable.negate());
+        }
+        return random.nextBoolean() ? f.and(operands) : f.or(operands);
+    }
+
+    @Test(expected = InvalidCausalModelException.class)
+    public void Should_ThrowException_When_DerivedCausalModelHasCycle() throws Exception {
+        CausalModel billySuzy = ExampleProvider.billySuzy();
+        FormulaFactory f = billySuzy.getFormulaFactory();
+        billySuzy.toBuilder().replaceEquation(f.variable("ST"), f.variable("BS")).build();
+    }
+
+    @Test(expected = InvalidCausalModelException.class)
+    public void Should_ThrowException_When_RemovedEquationIsStillReferred() throws Exception {
+        CausalModel billySuzy = ExampleProvider.billySuzy();
+        FormulaFactory f = billySuzy.getFormulaFactory();
+        billySuzy.toBuilder().removeEquation(f.variable("SH")).build();
+    }
+}
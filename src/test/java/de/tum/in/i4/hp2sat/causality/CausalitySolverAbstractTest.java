@@ -10,13 +10,20 @@ import de.tum.in.i4.hp2sat.causality.CausalModel;
 import de.tum.in.i4.hp2sat.causality.CausalitySolver;
 import de.tum.in.i4.hp2sat.exceptions.InvalidCausalModelException;
 import de.tum.in.i4.hp2sat.util.ExampleProvider;
+import de.tum.in.i4.hp2sat.util.Util;
 
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 public class CausalitySolverAbstractTest {
     @Test
@@ -141,4 +148,126 @@ public class CausalitySolverAbstractTest {
         Set<Variable> wVariablesActual = CausalitySolver.getMinimalWVariables(dummy, phi, cause, f);
         assertEquals(wVariablesExpected, wVariablesActual);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void Should_ReturnSameEvaluationAsEvaluateEquations_When_EvaluationCached()
+            throws InvalidCausalModelException {
+        CausalModel billySuzyExtended = ExampleProvider.billySuzyExtended();
+        FormulaFactory f = billySuzyExtended.getFormulaFactory();
+        EvaluationCache evaluationCache = billySuzyExtended.getEvaluationCache();
+        Set<Variable> exogenousVariables = billySuzyExtended.getExogenousVariables();
+        for (Set<Variable> positiveVariables : new Util<Variable>().generatePowerSet(exogenousVariables)) {
+            Set<Literal> context = exogenousVariables.stream()
+                    .map(v -> positiveVariables.contains(v) ? v : v.negate()).collect(Collectors.toSet());
+            Set<Literal> evaluationExpected = CausalitySolver.evaluateEquations(billySuzyExtended, context);
+            // first call evaluates the equations, second one is served from the cache
+            assertEquals(evaluationExpected, evaluationCache.evaluate(context));
+            assertEquals(evaluationExpected, evaluationCache.evaluate(context));
+        }
+        assertEquals(1 << exogenousVariables.size(), evaluationCache.size());
+    }
+
+    @Test
+    public void Should_ReturnDifferenceOfEvaluations_When_ChangesEvaluated() throws Exception {
+        CausalModel billySuzyExtended = ExampleProvider.billySuzyExtended();
+        Set<Variable> exogenousVariables = billySuzyExtended.getExogenousVariables();
+        List<Set<Literal>> contexts = new Util<Variable>().generatePowerSet(exogenousVariables).stream()
+                .map(positiveVariables -> exogenousVariables.stream()
+                        .map(v -> positiveVariables.contains(v) ? v : v.negate()).collect(Collectors.toSet()))
+                .collect(Collectors.toList());
+        for (Set<Literal> previousContext : contexts) {
+            Set<Literal> previousEvaluation = billySuzyExtended.evaluate(previousContext);
+            for (Set<Literal> context : contexts) {
+                Set<Literal> changedContext = new HashSet<>(context);
+                changedContext.removeAll(previousContext);
+                Set<Literal> changesExpected = new HashSet<>(billySuzyExtended.evaluate(context));
+                changesExpected.removeAll(previousEvaluation);
+                changesExpected.removeAll(changedContext);
+                assertEquals(changesExpected, billySuzyExtended.evaluateChanges(previousEvaluation, changedContext));
+            }
+        }
+    }
+
+    @Test
+    public void Should_CollectStatistics_When_CausalityChecked() throws Exception {
+        CausalModel billySuzy = ExampleProvider.billySuzy();
+        FormulaFactory f = billySuzy.getFormulaFactory();
+        Set<Literal> context = new HashSet<>(Arrays.asList(
+                f.literal("BT_exo", true), f.literal("ST_exo", true)));
+        Set<Literal> cause = new HashSet<>(Collections.singletonList(f.variable("ST")));
+        Formula phi = f.variable("BS");
+        String queries = "hp2sat_queries_total{strategy=\"SAT_MINIMAL\"}";
+        long queriesBefore = CausalitySolverMetrics.getGlobal().snapshot().get(queries);
+
+        CausalitySolverStatistics statisticsSAT = billySuzy.isCause(context, phi, cause, SolvingStrategy.SAT_MINIMAL)
+                .getStatistics();
+        assertNotNull(statisticsSAT);
+        assertEquals(SolvingStrategy.SAT_MINIMAL, statisticsSAT.getSolvingStrategy());
+        assertTrue(statisticsSAT.getTotalTime() > 0);
+        assertTrue(statisticsSAT.getTime(CausalitySolverStatistics.Phase.MODEL_COPYING) > 0);
+        assertTrue(statisticsSAT.getTime(CausalitySolverStatistics.Phase.CNF_CONVERSION) > 0);
+        assertTrue(statisticsSAT.getClauses() > 0);
+        assertTrue(statisticsSAT.getVariables() > 0);
+        assertTrue(statisticsSAT.getModelsEnumerated() > 0);
+        assertEquals(1, statisticsSAT.getSATCalls());
+        assertEquals(queriesBefore + 1, (long) CausalitySolverMetrics.getGlobal().snapshot().get(queries));
+        assertTrue(CausalitySolverMetrics.getGlobal().scrape().contains(queries + " " + (queriesBefore + 1)));
+
+        CausalitySolverStatistics statisticsBruteForce = billySuzy.isCause(context, phi, cause,
+                SolvingStrategy.BRUTE_FORCE).getStatistics();
+        assertNotNull(statisticsBruteForce);
+        assertTrue(statisticsBruteForce.getTime(CausalitySolverStatistics.Phase.EVALUATION) > 0);
+        assertEquals(0, statisticsBruteForce.getClauses());
+        assertEquals(0, statisticsBruteForce.getSATCalls());
+
+        assertNull(new CausalitySolverResult(true, true, true, cause, null).getStatistics());
+    }
+
+    @Test
+    public void Should_ReturnSameConesAsGraphTraversal_When_ReachabilityIndexUsed() throws Exception {
+        for (CausalModel causalModel : Arrays.asList(ExampleProvider.billySuzy(), ExampleProvider.dummy(),
+                ExampleProvider.stealMasterKey(), ExampleProvider.generateBinaryTreeBenchmarkModel(4))) {
+            // with and without the transitive closure
+            for (ReachabilityIndex reachabilityIndex : Arrays.asList(new ReachabilityIndex(causalModel),
+                    new ReachabilityIndex(causalModel, 0))) {
+                for (Variable variable : causalModel.getVariables()) {
+                    Set<Variable> forwardConeExpected = new HashSet<>();
+                    causalModel.getGraph().getNode(variable.name()).getDepthFirstIterator(true)
+                            .forEachRemaining(n -> forwardConeExpected.add(causalModel.getFormulaFactory()
+                                    .variable(n.getId())));
+                    Set<Variable> backwardConeExpected = new HashSet<>();
+                    causalModel.getGraphReversed().getNode(variable.name()).getDepthFirstIterator(true)
+                            .forEachRemaining(n -> backwardConeExpected.add(causalModel.getFormulaFactory()
+                                    .variable(n.getId())));
+                    Set<Variable> sources = Collections.singleton(variable);
+                    assertEquals(forwardConeExpected,
+                            reachabilityIndex.toVariables(reachabilityIndex.getForwardCone(sources)));
+                    assertEquals(backwardConeExpected,
+                            reachabilityIndex.toVariables(reachabilityIndex.getBackwardCone(sources)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void Should_ReturnIntersectionOfCones_When_ChopComputed() throws Exception {
+        for (CausalModel causalModel : Arrays.asList(ExampleProvider.billySuzy(), ExampleProvider.benchmarkModel(),
+                ExampleProvider.stealMasterKey(), ExampleProvider.dummyCombinedWithBinaryTree())) {
+            List<Variable> variables = causalModel.getVariables();
+            // with the transitive closure and with interval labels
+            for (ReachabilityIndex reachabilityIndex : Arrays.asList(new ReachabilityIndex(causalModel),
+                    new ReachabilityIndex(causalModel, 0))) {
+                for (int i = 0; i < variables.size(); i++) {
+                    List<Variable> sources = Arrays.asList(variables.get(i), variables.get(i / 2));
+                    for (int j = 0; j < variables.size(); j++) {
+                        List<Variable> targets = Arrays.asList(variables.get(j),
+                                variables.get(j * 7 % variables.size()));
+                        BitSet chopExpected = reachabilityIndex.getForwardCone(sources);
+                        chopExpected.and(reachabilityIndex.getBackwardCone(targets));
+                        assertEquals(chopExpected, reachabilityIndex.getChop(sources, targets));
+                    }
+                }
+            }
+        }
+    }
+}
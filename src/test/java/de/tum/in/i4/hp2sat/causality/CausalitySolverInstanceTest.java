@@ -26,18 +26,22 @@ import java.util.stream.Collectors;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 
 public class CausalitySolverInstanceTest {
     BruteForceCausalitySolver bruteForceCausalitySolver;
     SATCausalitySolver SATCausalitySolver;
+    BDDCausalitySolver bddCausalitySolver;
     List<SolvingStrategy> solvingStrategies = Arrays.asList(SolvingStrategy.BRUTE_FORCE, SolvingStrategy.SAT,
-            SolvingStrategy.SAT_MINIMAL, SolvingStrategy.SAT_COMBINED);
+            SolvingStrategy.SAT_MINIMAL, SolvingStrategy.SAT_COMBINED, SolvingStrategy.SAT_PRECOMPILED_MINIMAL,
+            SolvingStrategy.SAT_ANYTIME, SolvingStrategy.BDD);
     List<SATSolverType> satSolverTypes = Arrays.asList(SATSolverType.MINISAT, SATSolverType.GLUCOSE, SATSolverType.MINICARD, SATSolverType.CLEANLING);
 
     @Before
     public void setUp() throws Exception {
         bruteForceCausalitySolver = new BruteForceCausalitySolver();
         SATCausalitySolver = new SATCausalitySolver();
+        bddCausalitySolver = new BDDCausalitySolver();
     }
 
     private void testSolve(CausalModel causalModel, Set<Literal> context, Formula phi, Set<Literal> cause,
@@ -53,6 +57,7 @@ public class CausalitySolverInstanceTest {
                            Map<SolvingStrategy, Set<CausalitySolverResult>> causalitySolverResultsExpected,
                            SolvingStrategy... excludedStrategies) throws
             Exception {
+        causalitySolverResultsExpected = withMinimalWExpectations(causalitySolverResultsExpected);
         for (SolvingStrategy solvingStrategy : solvingStrategies) {
             if (Arrays.asList(excludedStrategies).contains(solvingStrategy)) {
                 continue;
@@ -61,8 +66,8 @@ public class CausalitySolverInstanceTest {
             if (solvingStrategy == SolvingStrategy.BRUTE_FORCE) {
                 causalitySolverResultActual =
                         bruteForceCausalitySolver.solve(causalModel, context, phi, cause, solvingStrategy);
-            } else if (Arrays.asList(SolvingStrategy.SAT, SolvingStrategy.SAT_MINIMAL, SolvingStrategy.SAT_COMBINED)
-                    .contains(solvingStrategy)) {
+            } else if (Arrays.asList(SolvingStrategy.SAT, SolvingStrategy.SAT_MINIMAL, SolvingStrategy.SAT_COMBINED,
+                    SolvingStrategy.SAT_PRECOMPILED_MINIMAL, SolvingStrategy.SAT_ANYTIME).contains(solvingStrategy)) {
                 for (SATSolverType satSolverType : satSolverTypes) {
                     causalitySolverResultActual = SATCausalitySolver.solve(causalModel, context, phi, cause,
                             solvingStrategy, satSolverType);
@@ -74,12 +79,63 @@ public class CausalitySolverInstanceTest {
 
                 causalitySolverResultActual =
                         SATCausalitySolver.solve(causalModel, context, phi, cause, solvingStrategy);
+            } else if (solvingStrategy == SolvingStrategy.BDD) {
+                causalitySolverResultActual =
+                        bddCausalitySolver.solve(causalModel, context, phi, cause, solvingStrategy);
             }
             Matcher[] matchers = causalitySolverResultsExpected.get
                     (solvingStrategy).stream().map(CoreMatchers::is).toArray(Matcher[]::new);
             assertThat("Error for " + solvingStrategy, causalitySolverResultActual,
                     CoreMatchers.anyOf(matchers));
         }
+
+        /*
+         * SAT_PRECOMPILED returns a non-minimal W just like SAT, but the W depends on the model found by the SAT
+         * solver. Therefore, we only compare the ACs. */
+        if (!Arrays.asList(excludedStrategies).contains(SolvingStrategy.SAT)) {
+            CausalitySolverResult causalitySolverResultSAT = causalitySolverResultsExpected.get(SolvingStrategy.SAT)
+                    .iterator().next();
+            for (SATSolverType satSolverType : satSolverTypes) {
+                CausalitySolverResult causalitySolverResultActual = SATCausalitySolver.solve(causalModel, context,
+                        phi, cause, SolvingStrategy.SAT_PRECOMPILED, satSolverType);
+                assertEquals("Error for " + SolvingStrategy.SAT_PRECOMPILED + "/" + satSolverType,
+                        Arrays.asList(causalitySolverResultSAT.isAc1(), causalitySolverResultSAT.isAc2(),
+                                causalitySolverResultSAT.isAc3()),
+                        Arrays.asList(causalitySolverResultActual.isAc1(), causalitySolverResultActual.isAc2(),
+                                causalitySolverResultActual.isAc3()));
+            }
+        }
+
+        if (!Arrays.asList(excludedStrategies).contains(SolvingStrategy.SAT_MINIMAL)) {
+            testOptimizedModels(causalModel, context, phi, cause,
+                    causalitySolverResultsExpected.get(SolvingStrategy.SAT_MINIMAL));
+        }
+    }
+
+    /**
+     * Slicing the causal model or collapsing its chains must neither change the ACs nor the size of a minimal W.
+     */
+    private void testOptimizedModels(CausalModel causalModel, Set<Literal> context, Formula phi, Set<Literal> cause,
+                                     Set<CausalitySolverResult> causalitySolverResultsExpected) throws Exception {
+        Set<List<Object>> acsAndWSizesExpected = causalitySolverResultsExpected.stream().map(this::getACsAndWSize)
+                .collect(Collectors.toSet());
+        CausalModel causalModelSliced = causalModel.slice(context, phi, cause);
+        CausalitySolverResult causalitySolverResultSliced = SATCausalitySolver.solve(causalModelSliced, context, phi,
+                cause, SolvingStrategy.SAT_MINIMAL);
+        assertTrue("Error for sliced model: " + causalitySolverResultSliced,
+                acsAndWSizesExpected.contains(getACsAndWSize(causalitySolverResultSliced)));
+
+        CollapsedCausalModel causalModelCollapsed = causalModel.collapseChains(phi, cause);
+        CausalitySolverResult causalitySolverResultCollapsed = causalModelCollapsed.translate(SATCausalitySolver
+                .solve(causalModelCollapsed.getCausalModel(), context, phi, cause, SolvingStrategy.SAT_MINIMAL));
+        assertTrue("Error for collapsed model: " + causalitySolverResultCollapsed,
+                acsAndWSizesExpected.contains(getACsAndWSize(causalitySolverResultCollapsed)));
+    }
+
+    private List<Object> getACsAndWSize(CausalitySolverResult causalitySolverResult) {
+        return Arrays.asList(causalitySolverResult.isAc1(), causalitySolverResult.isAc2(),
+                causalitySolverResult.isAc3(),
+                causalitySolverResult.getW() == null ? null : causalitySolverResult.getW().size());
     }
 
     private void testGetAllCauses(CausalModel causalModel, Set<Literal> context, Formula phi,
@@ -93,21 +149,62 @@ public class CausalitySolverInstanceTest {
     private void testGetAllCauses(CausalModel causalModel, Set<Literal> context, Formula phi,
                                   Map<SolvingStrategy, Set<CausalitySolverResult>> causalitySolverResultsExpected)
             throws Exception {
+        causalitySolverResultsExpected = withMinimalWExpectations(causalitySolverResultsExpected);
         for (SolvingStrategy solvingStrategy : solvingStrategies) {
             Set<CausalitySolverResult> causalitySolverResultsActual = null;
             if (solvingStrategy == SolvingStrategy.BRUTE_FORCE) {
                 causalitySolverResultsActual =
                         bruteForceCausalitySolver.getAllCauses(causalModel, context, phi, solvingStrategy,
                                 causalModel.getFormulaFactory());
-            } else if (Arrays.asList(SolvingStrategy.SAT, SolvingStrategy.SAT_MINIMAL, SolvingStrategy.SAT_COMBINED)
-                    .contains(solvingStrategy)) {
+            } else if (Arrays.asList(SolvingStrategy.SAT, SolvingStrategy.SAT_MINIMAL, SolvingStrategy.SAT_COMBINED,
+                    SolvingStrategy.SAT_PRECOMPILED_MINIMAL, SolvingStrategy.SAT_ANYTIME).contains(solvingStrategy)) {
                 causalitySolverResultsActual =
                         SATCausalitySolver.getAllCauses(causalModel, context, phi, solvingStrategy,
                                 causalModel.getFormulaFactory());
+            } else if (solvingStrategy == SolvingStrategy.BDD) {
+                causalitySolverResultsActual =
+                        bddCausalitySolver.getAllCauses(causalModel, context, phi, solvingStrategy,
+                                causalModel.getFormulaFactory());
             }
             assertEquals("Error for " + solvingStrategy, causalitySolverResultsExpected.get(solvingStrategy),
                     causalitySolverResultsActual);
         }
+
+        testMostResponsibleCauses(causalModel, context, phi,
+                causalitySolverResultsExpected.get(SolvingStrategy.SAT_MINIMAL));
+    }
+
+    /**
+     * The k most responsible causes must have the k highest degrees of responsibility of all causes.
+     */
+    private void testMostResponsibleCauses(CausalModel causalModel, Set<Literal> context, Formula phi,
+                                           Set<CausalitySolverResult> causalitySolverResultsExpected)
+            throws Exception {
+        List<Double> responsibilitiesExpected = causalitySolverResultsExpected.stream()
+                .map(r -> r.getResponsibility().values().iterator().next())
+                .sorted(Collections.reverseOrder()).collect(Collectors.toList());
+        for (int k = 1; k <= 3; k++) {
+            for (SolvingStrategy solvingStrategy : Arrays.asList(SolvingStrategy.SAT_MINIMAL, SolvingStrategy.BDD)) {
+                List<Double> responsibilitiesActual = causalModel.getMostResponsibleCauses(context, phi, k,
+                        solvingStrategy).stream().map(r -> r.getResponsibility().values().iterator().next())
+                        .collect(Collectors.toList());
+                assertEquals("Error for " + solvingStrategy + "/" + k,
+                        responsibilitiesExpected.subList(0, Math.min(k, responsibilitiesExpected.size())),
+                        responsibilitiesActual);
+            }
+        }
+    }
+
+    /**
+     * SAT_PRECOMPILED_MINIMAL, SAT_ANYTIME and BDD compute a minimal W just like SAT_MINIMAL; hence, the same results
+     * are expected if not specified otherwise.
+     */
+    private <T> Map<SolvingStrategy, T> withMinimalWExpectations(Map<SolvingStrategy, T> expected) {
+        Map<SolvingStrategy, T> expectedNew = new HashMap<>(expected);
+        expectedNew.putIfAbsent(SolvingStrategy.SAT_PRECOMPILED_MINIMAL, expected.get(SolvingStrategy.SAT_MINIMAL));
+        expectedNew.putIfAbsent(SolvingStrategy.SAT_ANYTIME, expected.get(SolvingStrategy.SAT_MINIMAL));
+        expectedNew.putIfAbsent(SolvingStrategy.BDD, expected.get(SolvingStrategy.SAT_MINIMAL));
+        return expectedNew;
     }
 
     // #################################################################################################################
@@ -0,0 +1,139 @@
+package de.tum.in.i4.hp2sat.causality;
+
+import de.tum.in.i4.hp2sat.util.ExampleProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.logicng.datastructures.Tristate;
+import org.logicng.formulas.Formula;
+import org.logicng.formulas.FormulaFactory;
+import org.logicng.formulas.Literal;
+import org.logicng.solvers.MiniSat;
+import org.logicng.solvers.SATSolver;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DimacsCorpusTest {
+    private FormulaFactory f;
+    private CausalModel billySuzy;
+    private Set<Literal> context;
+    private Path directory;
+
+    @Before
+    public void setUp() throws Exception {
+        billySuzy = ExampleProvider.billySuzy();
+        f = billySuzy.getFormulaFactory();
+        context = new HashSet<>(Arrays.asList(f.variable("BT_exo"), f.variable("ST_exo")));
+        directory = Files.createTempDirectory("dimacs");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        DimacsCorpus.setGlobal(null);
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Collections.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Test
+    public void Should_ExportAC2Instance_When_CauseChecked() throws Exception {
+        for (SolvingStrategy solvingStrategy : Arrays.asList(SolvingStrategy.SAT, SolvingStrategy.SAT_MINIMAL,
+                SolvingStrategy.SAT_PRECOMPILED)) {
+            List<Path> files = billySuzy.exportSATQueries(context, f.variable("BS"),
+                    Collections.singleton(f.variable("ST")), solvingStrategy, directory.resolve(solvingStrategy.name()));
+            assertEquals(1, files.size());
+            assertTrue(files.get(0).getFileName().toString().endsWith("_BillySuzy_ac2.cnf"));
+            assertEquals(Tristate.TRUE, solveDimacs(files.get(0)));
+
+            // BT is not a cause as Suzy's rock hits first
+            files = billySuzy.exportSATQueries(context, f.variable("BS"), Collections.singleton(f.variable("BT")),
+                    solvingStrategy, directory.resolve(solvingStrategy.name() + "_BT"));
+            assertEquals(1, files.size());
+            assertEquals(Tristate.FALSE, solveDimacs(files.get(0)));
+        }
+    }
+
+    @Test
+    public void Should_ExportSatisfiableAC3Instance_When_AC3Violated() throws Exception {
+        // AC2 holds for the empty W, hence only AC3 requires a SAT solver
+        Set<Literal> cause = new HashSet<>(Arrays.asList(f.variable("ST"), f.variable("BT")));
+        List<Path> files = billySuzy.exportSATQueries(context, f.variable("BS"), cause,
+                SolvingStrategy.SAT_OPTIMIZED_AC3, directory);
+        assertEquals(1, files.size());
+        assertTrue(files.get(0).getFileName().toString().endsWith("_ac3.cnf"));
+        // the instance is satisfiable as ST alone fulfills AC2, i.e. AC3 is violated
+        assertFalse(billySuzy.isCause(context, f.variable("BS"), cause, SolvingStrategy.SAT_OPTIMIZED_AC3).isAc3());
+        assertEquals(Tristate.TRUE, solveDimacs(files.get(0)));
+    }
+
+    @Test
+    public void Should_WriteInstancesOfAllChecks_When_CorpusModeEnabled() throws Exception {
+        DimacsCorpus corpus = new DimacsCorpus(directory.resolve("corpus"));
+        DimacsCorpus.setGlobal(corpus);
+        Set<Literal> cause = new HashSet<>(Arrays.asList(f.variable("ST"), f.variable("BT")));
+        for (SolvingStrategy solvingStrategy : SolvingStrategy.values()) {
+            billySuzy.isCause(context, f.variable("BS"), Collections.singleton(f.variable("ST")), solvingStrategy);
+            billySuzy.isCause(context, f.variable("BS"), cause, solvingStrategy);
+        }
+        long instanceCount = corpus.getInstanceCount();
+        DimacsCorpus.setGlobal(null);
+        billySuzy.isCause(context, f.variable("BS"), Collections.singleton(f.variable("ST")), SolvingStrategy.SAT);
+
+        assertEquals(instanceCount, corpus.getInstanceCount());
+        // BRUTE_FORCE and BDD do not use a SAT solver
+        assertTrue(corpus.getInstanceCount() >= SolvingStrategy.values().length - 2);
+        try (Stream<Path> files = Files.list(corpus.getDirectory())) {
+            assertEquals(corpus.getInstanceCount(), files.count());
+        }
+    }
+
+    /**
+     * Parses the given DIMACS file using the variable names in its header and solves it.
+     */
+    private Tristate solveDimacs(Path path) throws IOException {
+        FormulaFactory f = new FormulaFactory();
+        Map<Integer, String> names = new HashMap<>();
+        SATSolver satSolver = MiniSat.miniSat(f);
+        int variables = -1;
+        int clauses = -1;
+        int clausesRead = 0;
+        for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            String[] tokens = line.split(" ");
+            if (line.startsWith("c var ")) {
+                names.put(Integer.parseInt(tokens[2]), tokens[3]);
+            } else if (line.startsWith("p cnf ")) {
+                variables = Integer.parseInt(tokens[2]);
+                clauses = Integer.parseInt(tokens[3]);
+            } else if (!line.startsWith("c")) {
+                List<Formula> literals = new ArrayList<>();
+                for (String token : tokens) {
+                    int id = Integer.parseInt(token);
+                    if (id != 0) {
+                        literals.add(f.literal(names.get(Math.abs(id)), id > 0));
+                    }
+                }
+                satSolver.add(f.or(literals));
+                clausesRead++;
+            }
+        }
+        assertEquals(names.size(), variables);
+        assertEquals(clauses, clausesRead);
+        return satSolver.sat();
+    }
+}
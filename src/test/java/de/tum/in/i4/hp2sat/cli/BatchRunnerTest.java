@@ -0,0 +1,128 @@
+package de.tum.in.i4.hp2sat.cli;
+
+import de.tum.in.i4.hp2sat.causality.CausalModelFile;
+import de.tum.in.i4.hp2sat.util.ExampleProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BatchRunnerTest {
+    private Path model;
+    private Path queries;
+    private Path output;
+    private ByteArrayOutputStream err;
+
+    @Before
+    public void setUp() throws IOException {
+        model = Files.createTempFile("model", ".txt");
+        queries = Files.createTempFile("queries", ".txt");
+        output = Files.createTempFile("results", ".jsonl");
+        err = new ByteArrayOutputStream();
+        Files.write(model, Arrays.asList("BT = BT_exo", "ST = ST_exo", "SH = ST", "BH = BT & ~SH", "BS = SH | BH"),
+                StandardCharsets.UTF_8);
+        Files.write(queries, Arrays.asList("# id: context ; phi ; cause", "st: BT_exo, ST_exo ; BS ; ST",
+                "bt: BT_exo, ST_exo ; BS ; BT", "", "BT_exo ; BS | SH ; BT", "invalid: BT_exo ; BS ; XY"),
+                StandardCharsets.UTF_8);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(model);
+        Files.deleteIfExists(queries);
+        Files.deleteIfExists(output);
+    }
+
+    @Test
+    public void Should_WriteJSONLinesInOrderOfQueries_When_QueriesCheckedInParallel() throws Exception {
+        int exitCode = BatchRunner.run(new String[]{"--model", model.toString(), "--queries", queries.toString(),
+                "--output", output.toString(), "--strategy", "sat_minimal", "--threads", "3"}, System.out,
+                new PrintStream(err));
+        // the last query fails as XY is not a variable of the model
+        assertEquals(1, exitCode);
+        List<String> lines = Files.readAllLines(output, StandardCharsets.UTF_8);
+        assertEquals(4, lines.size());
+        assertTrue(lines.get(0), lines.get(0).startsWith(
+                "{\"id\":\"st\",\"line\":2,\"ac1\":true,\"ac2\":true,\"ac3\":true,\"cause\":true,"
+                        + "\"cause_literals\":\"ST\",\"w\":\"~BH\",\"time_ms\":"));
+        assertTrue(lines.get(0), lines.get(0).contains("\"sat_solving_ms\":"));
+        assertTrue(lines.get(0), lines.get(0).endsWith("\"error\":null}"));
+        assertTrue(lines.get(1), lines.get(1).startsWith(
+                "{\"id\":\"bt\",\"line\":3,\"ac1\":true,\"ac2\":false,\"ac3\":true,\"cause\":false,"
+                        + "\"cause_literals\":\"BT\",\"w\":null,"));
+        // ST_exo is false if omitted, hence BT is a cause
+        assertTrue(lines.get(2), lines.get(2).startsWith(
+                "{\"id\":\"5\",\"line\":5,\"ac1\":true,\"ac2\":true,\"ac3\":true,\"cause\":true,"));
+        assertTrue(lines.get(3), lines.get(3).startsWith("{\"id\":\"invalid\",\"line\":6,\"ac1\":null,"));
+        assertTrue(lines.get(3), lines.get(3).endsWith("\"error\":\"InvalidCauseException\"}"));
+    }
+
+    @Test
+    public void Should_WriteCSV_When_BinaryModelLoaded() throws Exception {
+        Path binaryModel = Files.createTempFile("model", ".hp2s");
+        try {
+            CausalModelFile.write(ExampleProvider.billySuzy(), binaryModel);
+            Files.write(queries, Arrays.asList("st: BT_exo, ST_exo ; BS ; ST", "both: BT_exo, ST_exo ; BS ; ST, BT"),
+                    StandardCharsets.UTF_8);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            int exitCode = BatchRunner.run(new String[]{"--model", binaryModel.toString(), "--queries",
+                    queries.toString(), "--format", "csv", "--solver", "glucose"}, new PrintStream(out),
+                    new PrintStream(err));
+            assertEquals(0, exitCode);
+            String[] lines = new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n");
+            assertEquals(3, lines.length);
+            assertEquals("id,line,ac1,ac2,ac3,cause,cause_literals,w,time_ms,evaluation_ms,model_copying_ms,"
+                    + "encoding_ms,cnf_conversion_ms,sat_solving_ms,model_enumeration_ms,bdd_operations_ms,"
+                    + "error", lines[0]);
+            assertTrue(lines[1], lines[1].startsWith("st,1,true,true,true,true,ST,"));
+            assertTrue(lines[2], lines[2].startsWith("both,2,true,true,false,false,BT ST,,"));
+        } finally {
+            Files.deleteIfExists(binaryModel);
+        }
+    }
+
+    @Test
+    public void Should_WarnAboutPlatformThreads_When_VirtualThreadsNotSupported() throws Exception {
+        QueryExecutor queryExecutor = QueryExecutor.virtualThreads(1);
+        boolean virtual = queryExecutor.isVirtual();
+        queryExecutor.shutdownNow();
+        int exitCode = BatchRunner.run(new String[]{"--model", model.toString(), "--queries", queries.toString(),
+                "--output", output.toString(), "--executor", "virtual", "--threads", "2"}, System.out,
+                new PrintStream(err));
+        assertEquals(1, exitCode);
+        assertEquals(4, Files.readAllLines(output, StandardCharsets.UTF_8).size());
+        assertEquals(!virtual, new String(err.toByteArray(), StandardCharsets.UTF_8)
+                .contains(QueryExecutor.NO_VIRTUAL_THREADS));
+    }
+
+    @Test
+    public void Should_ReturnUsageError_When_ArgumentsOrFilesInvalid() throws Exception {
+        PrintStream errStream = new PrintStream(err);
+        assertEquals(2, BatchRunner.run(new String[]{"--model", model.toString()}, System.out, errStream));
+        assertEquals(2, BatchRunner.run(new String[]{"--model", model.toString(), "--queries", queries.toString(),
+                "--strategy", "UNKNOWN"}, System.out, errStream));
+        assertEquals(2, BatchRunner.run(new String[]{"--model", model.toString(), "--queries", queries.toString(),
+                "--timeout", "-1"}, System.out, errStream));
+        assertTrue(new String(err.toByteArray(), StandardCharsets.UTF_8)
+                .contains("The timeout must not be negative"));
+        Files.write(queries, Arrays.asList("BT_exo ; BS"), StandardCharsets.UTF_8);
+        assertEquals(2, BatchRunner.run(new String[]{"--model", model.toString(), "--queries", queries.toString()},
+                System.out, errStream));
+        assertTrue(new String(err.toByteArray(), StandardCharsets.UTF_8)
+                .contains("Invalid query file: Line 1: expected '[id:] context ; phi ; cause'"));
+        Files.write(model, Arrays.asList("A = B", "B = A"), StandardCharsets.UTF_8);
+        assertEquals(2, BatchRunner.run(new String[]{"--model", model.toString(), "--queries", queries.toString()},
+                System.out, errStream));
+    }
+}
@@ -0,0 +1,121 @@
+package de.tum.in.i4.hp2sat.cli;
+
+import de.tum.in.i4.hp2sat.util.ExampleProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CausalityServerTest {
+    private CausalityServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new CausalityServer(new InetSocketAddress("localhost", 0), 2, 4);
+        server.register("billySuzy", ExampleProvider.billySuzy());
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void Should_AnswerQueries_When_ModelRegistered() throws Exception {
+        Response response = request("GET", "/models", null);
+        assertEquals(200, response.status);
+        assertEquals("[\"billySuzy\"]\n", response.body);
+
+        response = request("POST", "/models/billySuzy/isCause?strategy=sat_minimal", "st: BT_exo, ST_exo ; BS ; ST");
+        assertEquals(200, response.status);
+        assertTrue(response.body, response.body.startsWith("{\"id\":\"st\",\"line\":1,\"ac1\":true,\"ac2\":true,"
+                + "\"ac3\":true,\"cause\":true,\"cause_literals\":\"ST\",\"w\":\"~BH\","));
+
+        response = request("POST", "/models/billySuzy/batch?solver=glucose",
+                "# id: context ; phi ; cause\nst: BT_exo, ST_exo ; BS ; ST\nbt: BT_exo, ST_exo ; BS ; BT\n");
+        assertEquals(200, response.status);
+        String[] lines = response.body.split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0], lines[0].startsWith("{\"id\":\"st\",\"line\":2,\"ac1\":true,\"ac2\":true,\"ac3\":true,"));
+        assertTrue(lines[1], lines[1].startsWith("{\"id\":\"bt\",\"line\":3,\"ac1\":true,\"ac2\":false,"));
+
+        response = request("POST", "/models/billySuzy/causes", "BT_exo, ST_exo ; BS");
+        assertEquals(200, response.status);
+        lines = response.body.split("\n");
+        // the causes are returned in increasing size, starting with phi itself
+        assertTrue(lines[0], lines[0].contains("\"cause\":true,\"cause_literals\":\"BS\","));
+        assertTrue(response.body, response.body.contains("\"cause\":true,\"cause_literals\":\"ST\","));
+        for (String line : lines) {
+            assertTrue(line, line.endsWith("\"error\":null}"));
+        }
+    }
+
+    @Test
+    public void Should_RejectRequest_When_RequestInvalid() throws Exception {
+        assertEquals(404, request("POST", "/models/unknown/isCause", "BT_exo ; BS ; BT").status);
+        assertEquals(404, request("POST", "/models/billySuzy/unknown", "BT_exo ; BS ; BT").status);
+        assertEquals(405, request("GET", "/models/billySuzy/isCause", null).status);
+        assertEquals(400, request("POST", "/models/billySuzy/isCause?strategy=unknown", "BT_exo ; BS ; BT").status);
+        assertEquals(400, request("POST", "/models/billySuzy/isCause", "BT_exo ; BS").status);
+        assertEquals(400, request("POST", "/models/billySuzy/isCause", "BT_exo ; BS ; BT\nST_exo ; BS ; ST").status);
+        Response response = request("POST", "/models/billySuzy/isCause", "BT_exo ; BS ; XY");
+        assertEquals(400, response.status);
+        assertTrue(response.body, response.body.endsWith("\"error\":\"InvalidCauseException\"}\n"));
+
+        assertTrue(server.unregister("billySuzy"));
+        assertEquals(404, request("POST", "/models/billySuzy/isCause", "BT_exo ; BS ; BT").status);
+    }
+
+    @Test
+    public void Should_ExposeMetrics_When_QueriesAnswered() throws Exception {
+        request("POST", "/models/billySuzy/isCause", "BT_exo, ST_exo ; BS ; ST");
+        Response response = request("GET", "/metrics", null);
+        assertEquals(200, response.status);
+        assertTrue(response.body, response.body.contains("# TYPE hp2sat_queries_total counter\n"));
+        assertTrue(response.body, response.body.contains("hp2sat_server_requests_total{endpoint=\"isCause\"} 1\n"));
+        assertTrue(response.body, response.body.contains("hp2sat_server_rejected_requests_total 0\n"));
+        assertTrue(response.body, response.body.contains("hp2sat_server_models 1\n"));
+    }
+
+    private Response request(String method, String path, String body) throws IOException {
+        URL url = new URL("http", "localhost", server.getAddress().getPort(), path);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod(method);
+        if (body != null) {
+            connection.setDoOutput(true);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        Response response = new Response();
+        response.status = connection.getResponseCode();
+        try (InputStream in = response.status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int n;
+            while (in != null && (n = in.read(buffer)) > 0) {
+                bytes.write(buffer, 0, n);
+            }
+            response.body = new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+        }
+        connection.disconnect();
+        return response;
+    }
+
+    private static class Response {
+        private int status;
+        private String body;
+    }
+}
@@ -0,0 +1,77 @@
+package de.tum.in.i4.hp2sat.cli;
+
+import de.tum.in.i4.hp2sat.causality.CausalModel;
+import de.tum.in.i4.hp2sat.util.ExampleProvider;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class QueryExecutorTest {
+    @Test
+    public void Should_RunTasksOnVirtualThreads_When_ExecutorIsVirtual() throws Exception {
+        QueryExecutor queryExecutor = QueryExecutor.virtualThreads(2);
+        try {
+            assertEquals(2, queryExecutor.getSolverThreads());
+            // virtual threads are only provided by the multi-release jar on Java 21+; isVirtual() reports the fallback
+            assertEquals(queryExecutor.isVirtual(), (boolean) queryExecutor.getExecutorService().submit(
+                    QueryExecutorTest::isCurrentThreadVirtual).get());
+        } finally {
+            assertTrue(queryExecutor.shutdown(5, TimeUnit.SECONDS));
+        }
+        assertTrue(!QueryExecutor.platformThreads(1).isVirtual());
+    }
+
+    private static boolean isCurrentThreadVirtual() {
+        try {
+            return (boolean) Thread.class.getMethod("isVirtual").invoke(Thread.currentThread());
+        } catch (ReflectiveOperationException e) {
+            // Java 20 or older
+            return false;
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void Should_ConfineChecksToSolverThreads_When_ManyTasksRunConcurrently() throws Exception {
+        CausalModel causalModel = ExampleProvider.billySuzy();
+        QueryExecutor queryExecutor = QueryExecutor.virtualThreads(3);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        Set<QueryChecker> queryCheckers = Collections.synchronizedSet(
+                Collections.newSetFromMap(new IdentityHashMap<>()));
+        try {
+            List<Future<Object>> futures = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                futures.add(queryExecutor.getExecutorService().submit(() -> queryExecutor.check(causalModel,
+                        queryChecker -> {
+                            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                            queryCheckers.add(queryChecker);
+                            try {
+                                Thread.sleep(5);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                            running.decrementAndGet();
+                            return null;
+                        })));
+            }
+            for (Future<Object> future : futures) {
+                future.get();
+            }
+        } finally {
+            queryExecutor.shutdown(5, TimeUnit.SECONDS);
+        }
+        assertTrue(String.valueOf(maxRunning.get()), maxRunning.get() <= 3);
+        // each check works on a copy of its own, but copies are reused
+        assertTrue(String.valueOf(queryCheckers.size()), queryCheckers.size() <= 3);
+    }
+}